@@ -0,0 +1,81 @@
+package overseer;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finding accounts through the AccountDirectory, against walking the nested maps of the BankInformation with
+ * getAccountInformationByClientId() the way it had to be done before
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AccountDirectoryBenchmark {
+    private static final int ACCOUNTS_PER_CLIENT = 100;
+
+    @Param({"4", "64"})
+    public int clients;
+
+    private ServerData serverData;
+    private UUID[] clientIds;
+    private int next = 0;
+
+    @Setup
+    public void setUp() {
+        this.serverData = new ServerData(this.clients, 0, false);
+        this.clientIds = new UUID[this.clients];
+        for (var i = 0; i < this.clients; i++) {
+            this.clientIds[i] = UUID.randomUUID();
+            var accounts = new HashMap<Integer, AccountInformation>();
+            for (var account = 0; account < ACCOUNTS_PER_CLIENT; account++)
+                accounts.put(account, new AccountInformation(getOwnerId(i, account), account, i % 8, 1000));
+            var bankInformation = new BankInformation();
+            bankInformation.addAccountInformationByClientId(this.clientIds[i], accounts);
+            this.serverData.addBankInformation(bankInformation);
+        }
+    }
+
+    private static String getOwnerId(int client, int account) {
+        return "person-" + client + "-" + account;
+    }
+
+    private int nextClient() {
+        var client = this.next;
+        this.next = client + 1 == this.clients ? 0 : client + 1;
+        return client;
+    }
+
+    @Benchmark
+    public UUID ownerByDirectory() {
+        return this.serverData.getAccountDirectory().getClientIdOfOwner(getOwnerId(nextClient(), 42));
+    }
+
+    @Benchmark
+    public UUID ownerByNestedMaps() {
+        var ownerId = getOwnerId(nextClient(), 42);
+        var bankInformation = this.serverData.getBankInformationHashMap();
+        for (var clientId : bankInformation.getBankInformationHashMap().keySet()) {
+            if (bankInformation.getAccountInformationByClientId(clientId).containsKey(ownerId))
+                return clientId;
+        }
+        return null;
+    }
+
+    @Benchmark
+    public AccountInformation accountById() {
+        return this.serverData.getAccountDirectory().getAccount(this.clientIds[nextClient()], 42);
+    }
+
+    @Benchmark
+    public int accountsOfBank(Blackhole blackhole) {
+        return this.serverData.getAccountDirectory().forEachAccountOfBank(nextClient() % 8,
+                (clientId, accountInformation) -> blackhole.consume(accountInformation));
+    }
+}
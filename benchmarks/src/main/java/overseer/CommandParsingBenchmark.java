@@ -0,0 +1,85 @@
+package overseer;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.net.Socket;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of getting a textual command through ClientSession.readMessageObject() to where it is handled.
+ * The session's writer only hands the written objects to a Blackhole, so nothing but the parsing and the
+ * dispatch is measured
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CommandParsingBenchmark {
+    private ClientSession clientSession;
+    private Messages nextStep;
+    private Messages forwardedTransactionDone;
+    private Messages allClientsConnected;
+    private String transactionFailed;
+    private final CommandReader commandReader = new CommandReader();
+    private Blackhole blackhole;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        this.blackhole = blackhole;
+        var serverData = new ServerData(1, 0, false);
+        var clientId = UUID.randomUUID();
+        var serverId = serverData.getServerId();
+        this.clientSession = new ClientSession(new Socket(), serverData, new ClientWriter() {
+            @Override
+            public void writeObject(Object object) {
+                blackhole.consume(object);
+            }
+
+            @Override
+            public void writeFrame(BroadcastFrame broadcastFrame) {
+                blackhole.consume(broadcastFrame);
+                broadcastFrame.release();
+            }
+
+            @Override
+            public void flush() {
+            }
+        });
+        this.clientSession.processObject(new Messages(Constant.PREFIX_SET_CLIENT_ID + clientId, clientId));
+
+        this.nextStep = new Messages(Constant.PREFIX_NEXT_STEP + 4711, serverId);
+        this.forwardedTransactionDone = new Messages(Constant.PREFIX_TRANSACTION_DONE + UUID.randomUUID(), UUID.randomUUID());
+        this.allClientsConnected = new Messages(Constant.COMMAND_ALL_CLIENTS_CONNECTED +
+                UUID.randomUUID() + "," + UUID.randomUUID() + "," + clientId + ",", serverId);
+        this.transactionFailed = Constant.PREFIX_TRANSACTION_FAILED + "Insufficient funds" + Constant.COMMAND_SPLITTER +
+                Constant.PREFIX_TRANSACTION_ID + UUID.randomUUID();
+    }
+
+    @Benchmark
+    public void nextStep() {
+        this.clientSession.processObject(this.nextStep);
+    }
+
+    @Benchmark
+    public void forwardedTransactionDone() {
+        this.clientSession.processObject(this.forwardedTransactionDone);
+    }
+
+    @Benchmark
+    public void allClientsConnected() {
+        this.clientSession.processObject(this.allClientsConnected);
+    }
+
+    /**
+     * Just the parsing: finding the TransactionId: of a TransactionFailed: message and reading the ID
+     */
+    @Benchmark
+    public UUID readTransactionId() {
+        this.commandReader.reset(this.transactionFailed).next(Command.TRANSACTION_ID);
+        return this.commandReader.getUuidValue();
+    }
+}
@@ -0,0 +1,64 @@
+package overseer;
+
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs a number of SyntheticClients inside this JVM against an Overseer, one thread per client
+ */
+public class LoadGenerator {
+    /**
+     * What every synthetic client does per step
+     */
+    public static class Settings {
+        int transactionsPerStep = 4;
+        int fanOut = 2;                     // how many different clients the transfers are spread over
+        int touristTransactionsPerStep = 0;
+        int computeMicros = 0;              // time the client spends on a step before it sends anything
+        boolean isBinary = false;
+        boolean isBatched = false;
+        int lastStep;                       // the step after which the client is done
+    }
+
+    public static class Counters {
+        final AtomicLong sentTransactions = new AtomicLong(0);
+        final AtomicLong completedTransactions = new AtomicLong(0);
+        final AtomicLong errors = new AtomicLong(0);
+        final AtomicLong firstStepNanos = new AtomicLong(0);    // when the first client was told to take a step
+    }
+
+    private final Settings settings;
+    private final Counters counters = new Counters();
+    private final CountDownLatch finished;
+    private final UUID[] clientIds;
+
+    public LoadGenerator(int clients, Settings settings) {
+        this.settings = settings;
+        this.finished = new CountDownLatch(clients);
+        this.clientIds = new UUID[clients];
+        for (var i = 0; i < clients; i++)
+            this.clientIds[i] = UUID.randomUUID();
+    }
+
+    public Counters getCounters() {
+        return counters;
+    }
+
+    public void start(String host, int port) {
+        for (var i = 0; i < this.clientIds.length; i++) {
+            var client = new SyntheticClient(i, this.clientIds, this.settings, this.counters, this.finished, host, port);
+            var thread = new Thread(client, "Synthetic-client-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * @return true if every client reported its last step in time
+     */
+    public boolean awaitFinished(long timeoutSeconds) throws InterruptedException {
+        return this.finished.await(timeoutSeconds, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,47 @@
+package overseer;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.net.Socket;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filling a client's message queue and draining it the way ClientSession.checkMessageQueue() does
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MessageQueueBenchmark {
+    @Param({"1", "64"})
+    public int batchSize;
+
+    private ConnectedSocket connectedSocket;
+    private Messages message;
+    private final Object[] messageBatch = new Object[64];
+
+    @Setup
+    public void setUp() {
+        var clientId = UUID.randomUUID();
+        this.connectedSocket = new ConnectedSocket(new Socket(), clientId, 0, new ClientRegistry(1), 1,
+                ServerData.DEFAULT_QUEUE_HIGH_WATERMARK, ServerData.DEFAULT_QUEUE_LOW_WATERMARK, 0);
+        this.message = new Messages(Constant.PREFIX_NEXT_STEP + 2, clientId);
+    }
+
+    @Benchmark
+    public void enqueueAndDrain(Blackhole blackhole) {
+        for (var i = 0; i < this.batchSize; i++)
+            this.connectedSocket.addToMessageQueue(this.message);
+        int count;
+        while ((count = this.connectedSocket.drainMessageQueue(this.messageBatch)) > 0) {
+            for (var i = 0; i < count; i++) {
+                blackhole.consume(this.messageBatch[i]);
+                this.messageBatch[i] = null;
+            }
+        }
+    }
+}
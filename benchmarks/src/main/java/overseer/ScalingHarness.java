@@ -0,0 +1,115 @@
+package overseer;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Runs the real Server over loopback against a LoadGenerator for a growing number of clients, and prints the steps
+ * per second, transactions per second and step time percentiles of every run. Each run gets a fresh ServerData on its
+ * own port. The Overseer's own output is silenced unless -verbose is given.
+ *
+ * java -cp benchmarks/target/benchmarks.jar overseer.ScalingHarness -clients 2,10,100,1000 -steps 200 -m nio
+ */
+public class ScalingHarness {
+    private static final long RUN_TIMEOUT_SECONDS = 600;
+
+    public static void main(String[] args) throws InterruptedException {
+        var clientCounts = new int[] { 2, 10, 50, 100, 250, 500, 1000 };
+        var steps = 100;
+        var connectionMode = ConnectionMode.NIO;
+        var lagWindow = 0;
+        var writeLinger = 0;
+        var queueHighWatermark = ServerData.DEFAULT_QUEUE_HIGH_WATERMARK;
+        var queueLowWatermark = ServerData.DEFAULT_QUEUE_LOW_WATERMARK;
+        var portNumber = 4300;
+        var isVerbose = false;
+        var settings = new LoadGenerator.Settings();
+
+        var argumentsList = new ArrayList<>(Arrays.asList(args));
+        for (var i = 0; i < argumentsList.size(); i++) {
+            if (Objects.equals(argumentsList.get(i), "-clients"))
+                clientCounts = Arrays.stream(argumentsList.get(i + 1).split(",")).mapToInt(Integer::parseInt).toArray();
+            if (Objects.equals(argumentsList.get(i), "-steps"))
+                steps = Integer.parseInt(argumentsList.get(i + 1));
+            if (Objects.equals(argumentsList.get(i), Constant.ARG_CONNECTION_MODE))
+                connectionMode = ConnectionMode.fromArgument(argumentsList.get(i + 1));
+            if (Objects.equals(argumentsList.get(i), Constant.ARG_LAG_WINDOW))
+                lagWindow = Integer.parseInt(argumentsList.get(i + 1));
+            if (Objects.equals(argumentsList.get(i), Constant.ARG_QUEUE_HIGH_WATERMARK))
+                queueHighWatermark = Integer.parseInt(argumentsList.get(i + 1));
+            if (Objects.equals(argumentsList.get(i), Constant.ARG_QUEUE_LOW_WATERMARK))
+                queueLowWatermark = Integer.parseInt(argumentsList.get(i + 1));
+            if (Objects.equals(argumentsList.get(i), Constant.ARG_WRITE_LINGER))
+                writeLinger = Integer.parseInt(argumentsList.get(i + 1));
+            if (Objects.equals(argumentsList.get(i), Constant.ARG_PORT_NUMBER))
+                portNumber = Integer.parseInt(argumentsList.get(i + 1));
+            if (Objects.equals(argumentsList.get(i), "-tx"))
+                settings.transactionsPerStep = Integer.parseInt(argumentsList.get(i + 1));
+            if (Objects.equals(argumentsList.get(i), "-fanout"))
+                settings.fanOut = Integer.parseInt(argumentsList.get(i + 1));
+            if (Objects.equals(argumentsList.get(i), "-tourist"))
+                settings.touristTransactionsPerStep = Integer.parseInt(argumentsList.get(i + 1));
+            if (Objects.equals(argumentsList.get(i), "-compute"))
+                settings.computeMicros = Integer.parseInt(argumentsList.get(i + 1));
+            if (Objects.equals(argumentsList.get(i), "-binary"))
+                settings.isBinary = true;
+            if (Objects.equals(argumentsList.get(i), "-batch"))
+                settings.isBatched = true;
+            if (Objects.equals(argumentsList.get(i), "-verbose"))
+                isVerbose = true;
+        }
+
+        // the nio connection mode only takes on clients that speak the binary protocol
+        if (connectionMode == ConnectionMode.NIO)
+            settings.isBinary = true;
+
+        var out = System.out;
+        if (!isVerbose)
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        out.printf("mode=%s steps=%d tx/step=%d fanout=%d tourist/step=%d compute=%dus binary=%s batch=%s lag=%d linger=%dus%n",
+                connectionMode.getArgument(), steps, settings.transactionsPerStep, settings.fanOut,
+                settings.touristTransactionsPerStep, settings.computeMicros, settings.isBinary, settings.isBatched, lagWindow,
+                writeLinger);
+        out.printf("%8s %10s %12s %12s %12s %12s %10s %8s%n", "clients", "steps/s", "tx/s", "p50 step us", "p99 step us",
+                "writes/step", "obj/write", "errors");
+
+        var isComplete = true;
+        for (var run = 0; run < clientCounts.length && isComplete; run++) {
+            var clients = clientCounts[run];
+            var serverData = new ServerData(clients, portNumber + run, false);
+            serverData.setConnectionMode(connectionMode);
+            serverData.setLagWindow(lagWindow);
+            serverData.setQueueWatermarks(queueHighWatermark, queueLowWatermark);
+            serverData.setWriteLingerMicros(writeLinger);
+            serverData.setTotalSteps(steps);
+            settings.lastStep = serverData.getTotalSteps();
+
+            var serverThread = new Thread(() -> new Server().start(serverData), "Overseer-" + clients);
+            serverThread.setDaemon(true);
+            serverThread.start();
+            Thread.sleep(200); // the server socket has to be open before the clients connect
+
+            var loadGenerator = new LoadGenerator(clients, settings);
+            loadGenerator.start("127.0.0.1", portNumber + run);
+            isComplete = loadGenerator.awaitFinished(RUN_TIMEOUT_SECONDS);
+            while (isComplete && !serverData.isPendingTransactionEmpty())
+                Thread.sleep(1);
+            var elapsedNanos = System.nanoTime() - loadGenerator.getCounters().firstStepNanos.get();
+
+            var counters = loadGenerator.getCounters();
+            var metrics = serverData.getMetrics();
+            var stepTime = metrics.getStepTime();
+            var seconds = elapsedNanos / 1e9;
+            var socketWrites = Math.max(1, metrics.getSocketWrites());
+            out.printf("%8d %10.1f %12.1f %12d %12d %12.1f %10.2f %8d%s%n", clients, steps / seconds,
+                    counters.sentTransactions.get() / seconds, stepTime.getP50(), stepTime.getP99(),
+                    (double) socketWrites / steps, (double) metrics.getWrittenObjects() / socketWrites,
+                    counters.errors.get(), isComplete ? "" : "  timed out");
+        }
+        System.exit(isComplete ? 0 : 1);
+    }
+}
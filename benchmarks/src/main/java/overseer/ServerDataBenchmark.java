@@ -0,0 +1,70 @@
+package overseer;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.net.Socket;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client lookups in the ServerData, and a transaction going from pending to completed the way ClientSession
+ * does it on a TransactionDone:
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ServerDataBenchmark {
+    @Param({"4", "256"})
+    public int clients;
+
+    private ServerData serverData;
+    private UUID[] clientIds;
+    private int[] slots;
+    private int next = 0;
+
+    @Setup
+    public void setUp() {
+        this.serverData = new ServerData(this.clients, 0, false);
+        this.clientIds = new UUID[this.clients];
+        this.slots = new int[this.clients];
+        for (var i = 0; i < this.clients; i++) {
+            this.clientIds[i] = UUID.randomUUID();
+            this.slots[i] = this.serverData.addConnectedSocket(new Socket(), this.clientIds[i]);
+        }
+    }
+
+    private int nextClient() {
+        var client = this.next;
+        this.next = client + 1 == this.clients ? 0 : client + 1;
+        return client;
+    }
+
+    @Benchmark
+    public ConnectedSocket socketByClientId() {
+        return this.serverData.getConnectedSocketByClientId(this.clientIds[nextClient()]);
+    }
+
+    @Benchmark
+    public ConnectedSocket socketBySlot() {
+        return this.serverData.getConnectedSocketBySlot(this.slots[nextClient()]);
+    }
+
+    @Benchmark
+    public int stepBySlot() {
+        return this.serverData.getConnectedSocketStepBySlot(this.slots[nextClient()]);
+    }
+
+    @Benchmark
+    public AccountTransaction pendingToCompleted() {
+        var from = nextClient();
+        var accountTransaction = new AccountTransaction(this.clientIds[(from + 1) % this.clients], "person-12", 1,
+                250, this.clientIds[from], 2, "person-7", 1);
+        var transactionId = accountTransaction.getTransactionId();
+        this.serverData.addToPendingTransactions(accountTransaction);
+        this.serverData.completePendingTransaction(transactionId);
+        return this.serverData.getCompletedTransactionById(transactionId);
+    }
+}
@@ -0,0 +1,61 @@
+package overseer;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * How long it takes from the last client's report signalling the StepBarrier until the thread waiting on it
+ * (the Server) is running again. A waiter thread acknowledges every wake-up it sees, the benchmark thread signals
+ * and spins until the acknowledgement comes back
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StepBarrierBenchmark {
+    private StepBarrier stepBarrier;
+    private final AtomicLong acknowledgedVersion = new AtomicLong(-1);
+    private volatile boolean isRunning;
+    private Thread waiterThread;
+
+    @Setup
+    public void setUp() {
+        this.stepBarrier = new StepBarrier();
+        this.isRunning = true;
+        this.waiterThread = new Thread(() -> {
+            try {
+                while (this.isRunning) {
+                    var observedVersion = this.stepBarrier.getVersion();
+                    this.acknowledgedVersion.set(observedVersion);
+                    this.stepBarrier.awaitStateChange(observedVersion, 100);
+                }
+            } catch (InterruptedException ignored) {
+            }
+        }, "StepBarrier-waiter");
+        this.waiterThread.setDaemon(true);
+        this.waiterThread.start();
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        this.isRunning = false;
+        this.waiterThread.interrupt();
+        this.waiterThread.join();
+    }
+
+    @Benchmark
+    public long signalToWakeUp() {
+        var version = this.stepBarrier.getVersion();
+        // the waiter has to be waiting on the current version, or the signal is not measuring a wake-up
+        while (this.acknowledgedVersion.get() != version)
+            Thread.onSpinWait();
+        this.stepBarrier.signalStateChanged();
+        while (this.acknowledgedVersion.get() == version)
+            Thread.onSpinWait();
+        return version;
+    }
+}
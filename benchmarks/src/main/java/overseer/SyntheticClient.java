@@ -0,0 +1,157 @@
+package overseer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A headless stand-in for a Threadneedle client that speaks the Overseer protocol: it identifies itself with
+ * SetClientID:, sends its BankInformation and ClientReady:, and then on every NextStep: spends the configured compute
+ * time, sends its transfers and reports CurrentStep:. Transfers it receives are answered with TransactionDone: and
+ * tourist transactions with TouristTransactionDone:
+ */
+public class SyntheticClient implements Runnable {
+    private static final int ACCOUNTS = 8;
+
+    private final UUID clientId;
+    private final int index;
+    private final UUID[] clientIds;
+    private final LoadGenerator.Settings settings;
+    private final LoadGenerator.Counters counters;
+    private final CountDownLatch finished;
+    private final String host;
+    private final int port;
+    private WireCodec wireCodec = new SerializationCodec();
+    private InputStream inputStream;
+    private OutputStream outputStream;
+    private int nextReceiver = 0;
+
+    public SyntheticClient(int index, UUID[] clientIds, LoadGenerator.Settings settings, LoadGenerator.Counters counters,
+                           CountDownLatch finished, String host, int port) {
+        this.index = index;
+        this.clientId = clientIds[index];
+        this.clientIds = clientIds;
+        this.settings = settings;
+        this.counters = counters;
+        this.finished = finished;
+        this.host = host;
+        this.port = port;
+    }
+
+    @Override
+    public void run() {
+        try (var socket = new Socket(this.host, this.port)) {
+            socket.setTcpNoDelay(true);
+            this.inputStream = new BufferedInputStream(socket.getInputStream());
+            this.outputStream = new BufferedOutputStream(socket.getOutputStream());
+            handshake();
+            while (!socket.isClosed()) {
+                if (!handle(this.wireCodec.read(this.inputStream)))
+                    break;
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            if (this.finished.getCount() > 0)
+                this.counters.errors.incrementAndGet();
+        }
+    }
+
+    private void handshake() throws IOException, ClassNotFoundException {
+        if (this.settings.isBinary) {
+            send(new Messages(Constant.PREFIX_SET_CLIENT_ID + this.clientId + Constant.COMMAND_SPLITTER +
+                    Constant.PREFIX_WIRE_PROTOCOL + BinaryCodec.VERSION, this.clientId));
+            var reply = (Messages) this.wireCodec.read(this.inputStream);
+            if (reply.getMessage().equals(Constant.PREFIX_WIRE_PROTOCOL + BinaryCodec.VERSION))
+                this.wireCodec = new BinaryCodec();
+        } else
+            send(new Messages(Constant.PREFIX_SET_CLIENT_ID + this.clientId, this.clientId));
+
+        var accounts = new HashMap<Integer, AccountInformation>();
+        for (var account = 0; account < ACCOUNTS; account++)
+            accounts.put(account, new AccountInformation(getPersonId(account), account, this.index, 1_000_000));
+        var bankInformation = new BankInformation();
+        bankInformation.addAccountInformationByClientId(this.clientId, accounts);
+        send(bankInformation);
+        send(new Messages(Constant.PREFIX_CLIENT_READY + this.clientId, this.clientId));
+    }
+
+    /**
+     * @return false once the Overseer has ended the simulation
+     */
+    private boolean handle(Object object) throws IOException {
+        if (object instanceof Messages) {
+            var message = ((Messages) object).getMessage();
+            if (message.startsWith(Constant.PREFIX_NEXT_STEP))
+                takeStep(Integer.parseInt(message.substring(Constant.PREFIX_NEXT_STEP.length())));
+            else if (message.startsWith(Constant.PREFIX_TRANSACTION_DONE))
+                this.counters.completedTransactions.incrementAndGet();
+            else if (message.contains(Constant.TERMINATE_CONNECTION))
+                return false;
+        } else if (object instanceof AccountTransaction) {
+            send(new Messages(Constant.PREFIX_TRANSACTION_DONE + ((AccountTransaction) object).getTransactionId(), this.clientId));
+        } else if (object instanceof TransactionBatch) {
+            var acknowledgements = new AcknowledgementBatch(AcknowledgementBatch.TRANSACTION_DONE, this.clientId);
+            for (var accountTransaction : ((TransactionBatch) object).getTransactions())
+                acknowledgements.addTransactionId(accountTransaction.getTransactionId());
+            send(acknowledgements);
+        } else if (object instanceof AcknowledgementBatch) {
+            this.counters.completedTransactions.addAndGet(((AcknowledgementBatch) object).getTransactionIds().size());
+        } else if (object instanceof TouristTransaction) {
+            send(new Messages(Constant.PREFIX_TOURIST_TRANSACTION_DONE + ((TouristTransaction) object).getTransactionId(),
+                    this.clientId));
+        }
+        return true;
+    }
+
+    private void takeStep(int step) throws IOException {
+        this.counters.firstStepNanos.compareAndSet(0, System.nanoTime());
+        if (this.settings.computeMicros > 0)
+            LockSupport.parkNanos(this.settings.computeMicros * 1000L);
+
+        if (this.clientIds.length > 1) {
+            var batch = this.settings.isBatched ? new TransactionBatch(this.clientId, step) : null;
+            for (var i = 0; i < this.settings.transactionsPerStep; i++) {
+                var accountTransaction = new AccountTransaction(nextReceiver(), getPersonId(i % ACCOUNTS), 0, 1,
+                        this.clientId, this.index, getPersonId((i + 1) % ACCOUNTS), step);
+                if (batch != null)
+                    batch.addTransaction(accountTransaction);
+                else
+                    send(accountTransaction);
+            }
+            if (batch != null && !batch.getTransactions().isEmpty())
+                send(batch);
+            for (var i = 0; i < this.settings.touristTransactionsPerStep; i++)
+                send(new TouristTransaction(nextReceiver(), 0, getPersonId(i % ACCOUNTS), 1, step));
+            this.counters.sentTransactions.addAndGet(this.settings.transactionsPerStep);
+        }
+
+        send(new Messages(Constant.PREFIX_CURRENT_STEP + step, this.clientId));
+        if (step == this.settings.lastStep)
+            this.finished.countDown();
+    }
+
+    /**
+     * Spreads the transfers round robin over the fan-out: the next fanOut clients after this one
+     */
+    private UUID nextReceiver() {
+        var fanOut = Math.max(1, Math.min(this.settings.fanOut, this.clientIds.length - 1));
+        var receiver = this.clientIds[(this.index + 1 + this.nextReceiver) % this.clientIds.length];
+        this.nextReceiver = (this.nextReceiver + 1) % fanOut;
+        return receiver;
+    }
+
+    private String getPersonId(int account) {
+        return "person-" + this.index + "-" + account;
+    }
+
+    private void send(Object object) throws IOException {
+        this.outputStream.write(this.wireCodec.encode(object));
+        this.outputStream.flush();
+    }
+}
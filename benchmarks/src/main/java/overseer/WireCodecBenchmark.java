@@ -0,0 +1,84 @@
+package overseer;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What it costs to put the objects that the Overseer sends the most on the wire and to read them back,
+ * with Java serialization and with the binary protocol
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WireCodecBenchmark {
+    @Param({"serialization", "binary"})
+    public String codecName;
+
+    private WireCodec codec;
+    private Messages messages;
+    private AccountTransaction accountTransaction;
+    private BankInformation bankInformation;
+    private byte[] encodedMessages;
+    private byte[] encodedAccountTransaction;
+    private byte[] encodedBankInformation;
+
+    @Setup
+    public void setUp() throws IOException {
+        this.codec = this.codecName.equals("binary") ? new BinaryCodec() : new SerializationCodec();
+        var clientId = UUID.randomUUID();
+        this.messages = new Messages(Constant.PREFIX_TRANSACTION_DONE + UUID.randomUUID(), clientId);
+        this.accountTransaction = new AccountTransaction(UUID.randomUUID(), "person-12", 1, 250,
+                clientId, 2, "person-7", 4711);
+
+        // 10 clients with 20 accounts each
+        this.bankInformation = new BankInformation();
+        for (var client = 0; client < 10; client++) {
+            var accounts = new HashMap<Integer, AccountInformation>();
+            for (var account = 0; account < 20; account++)
+                accounts.put(account, new AccountInformation("person-" + account, account, client, 1000L * account));
+            this.bankInformation.addAccountInformationByClientId(UUID.randomUUID(), accounts);
+        }
+
+        this.encodedMessages = this.codec.encode(this.messages);
+        this.encodedAccountTransaction = this.codec.encode(this.accountTransaction);
+        this.encodedBankInformation = this.codec.encode(this.bankInformation);
+    }
+
+    @Benchmark
+    public byte[] encodeMessages() throws IOException {
+        return this.codec.encode(this.messages);
+    }
+
+    @Benchmark
+    public Object decodeMessages() throws IOException, ClassNotFoundException {
+        return this.codec.decode(ByteBuffer.wrap(this.encodedMessages));
+    }
+
+    @Benchmark
+    public byte[] encodeAccountTransaction() throws IOException {
+        return this.codec.encode(this.accountTransaction);
+    }
+
+    @Benchmark
+    public Object decodeAccountTransaction() throws IOException, ClassNotFoundException {
+        return this.codec.decode(ByteBuffer.wrap(this.encodedAccountTransaction));
+    }
+
+    @Benchmark
+    public byte[] encodeBankInformation() throws IOException {
+        return this.codec.encode(this.bankInformation);
+    }
+
+    @Benchmark
+    public Object decodeBankInformation() throws IOException, ClassNotFoundException {
+        return this.codec.decode(ByteBuffer.wrap(this.encodedBankInformation));
+    }
+}
@@ -0,0 +1,69 @@
+package overseer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+
+/**
+ * Accepts the clients in the thread and virtual connection modes, on its own thread, so that nothing else ever
+ * waits on accept(). Every accepted connection is started right away and does its handshake in parallel with
+ * the others. Once the connection limit has been reached the acceptor waits on the StepBarrier until a client
+ * disconnects. The NIO connection mode accepts on its first selector loop instead.
+ */
+public class Acceptor extends Thread {
+    // how long the acceptor waits at the connection limit at most before it re-checks by itself
+    private static final long RECHECK_TIMEOUT = 100;
+
+    private final ServerSocket serverSocket;
+    private final ServerData serverData;
+    private final HandshakeMonitor handshakeMonitor;
+    private final Logger logger = new Logger();
+    private final Debug debug = new Debug();
+
+    Acceptor(ServerSocket serverSocket, ServerData serverData, HandshakeMonitor handshakeMonitor) {
+        super("Overseer-Acceptor");
+        this.serverSocket = serverSocket;
+        this.serverData = serverData;
+        this.handshakeMonitor = handshakeMonitor;
+        setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!this.serverSocket.isClosed()) {
+                var stepBarrier = this.serverData.getStepBarrier();
+                var observedVersion = stepBarrier.getVersion();
+                if (this.serverData.canAcceptConnection())
+                    acceptConnection();
+                else
+                    stepBarrier.awaitStateChange(observedVersion, RECHECK_TIMEOUT);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void acceptConnection() {
+        if(this.serverData.isDebugEnabled())
+            debug.serverAcceptConnections(this.serverData.getCurrentConnections(), this.serverData.getMaxClients());
+
+        try {
+            var threadneedleSocket = this.serverSocket.accept();
+            ClientSession clientSession;
+            if (this.serverData.getConnectionMode() == ConnectionMode.VIRTUAL) {
+                var connection = new VirtualThreadConnection(threadneedleSocket, this.serverData);
+                clientSession = connection.getClientSession();
+                connection.start();
+            } else {
+                var connection = new ConnectionThread(threadneedleSocket, this.serverData);
+                clientSession = connection.getClientSession();
+                connection.start();
+            }
+            this.serverData.incrementCurrentConnections();
+            this.handshakeMonitor.watch(threadneedleSocket, clientSession);
+        } catch (IOException e) {
+            if (!this.serverSocket.isClosed())
+                logger.logServerError(e);
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package overseer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A server-side index of every account in the BankInformation, kept up to date with each account that the
+ * BankInformationLog sees added, changed or removed. Accounts can be found by owner ID, by bank ID, and by client and
+ * account ID, without walking the nested maps of the BankInformation.
+ *
+ * Every account is a record, with its fields in parallel arrays indexed by the record number. The accounts of an
+ * owner and of a bank are doubly linked lists through the records, and the heads of the lists and the records of the
+ * account IDs are in primitive LongIntMaps. Owner IDs are interned to an int once and then only compared as ints.
+ * Queries hand the visitor the AccountInformation objects that are stored, nothing is copied.
+ */
+public class AccountDirectory {
+    public static final int NOT_FOUND = -1;
+    private static final int NULL_ID = Integer.MIN_VALUE; // stands in for a null bank or account ID
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * Gets every account that a query finds
+     */
+    public interface AccountVisitor {
+        void visit(UUID clientId, AccountInformation accountInformation);
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // client IDs are only turned into an index when an account is added or looked up by its client
+    private final HashMap<UUID, Integer> clientIndexes = new HashMap<>();
+    private final ArrayList<UUID> clientIds = new ArrayList<>();
+
+    // the records
+    private AccountInformation[] accounts = new AccountInformation[INITIAL_CAPACITY];
+    private int[] clientIndexOfRecord = new int[INITIAL_CAPACITY];
+    private int[] ownerOfRecord = new int[INITIAL_CAPACITY];
+    private int[] bankIdOfRecord = new int[INITIAL_CAPACITY];
+    private int[] nextByOwner = new int[INITIAL_CAPACITY];
+    private int[] previousByOwner = new int[INITIAL_CAPACITY];
+    private int[] nextByBank = new int[INITIAL_CAPACITY];
+    private int[] previousByBank = new int[INITIAL_CAPACITY];
+    private int recordCount = 0;  // records that have ever been used, freed ones are handed out again first
+    private int[] freeRecords = new int[16];
+    private int freeRecordCount = 0;
+    private int size = 0;
+
+    // interned owner IDs, the index of an owner ID is its position in ownerIds
+    private String[] ownerIds = new String[INITIAL_CAPACITY];
+    private int[] firstRecordOfOwner = new int[INITIAL_CAPACITY];
+    private int ownerCount = 0;
+    private int[] ownerTable = newTable(INITIAL_CAPACITY * 2); // open addressing, holds owner indexes
+
+    private final LongIntMap firstRecordOfBank = new LongIntMap(64);
+    private final LongIntMap recordOfAccount = new LongIntMap(INITIAL_CAPACITY); // client index << 32 | account ID
+
+    /**
+     * Adds the account, or updates it if the client already has an account with its ID
+     */
+    public void put(UUID clientId, AccountInformation accountInformation) {
+        this.lock.writeLock().lock();
+        try {
+            var clientIndex = getOrAddClientIndex(clientId);
+            var accountKey = getAccountKey(clientIndex, toId(accountInformation.getAccountId()));
+            var owner = accountInformation.getOwnerId() == null ? NOT_FOUND : internOwnerId(accountInformation.getOwnerId());
+            var bankId = toId(accountInformation.getBankId());
+
+            var record = this.recordOfAccount.get(accountKey);
+            if (record == LongIntMap.NO_VALUE) {
+                record = allocateRecord();
+                this.recordOfAccount.put(accountKey, record);
+                this.clientIndexOfRecord[record] = clientIndex;
+                this.size++;
+            } else {
+                unlinkOwner(record);
+                unlinkBank(record);
+            }
+            this.accounts[record] = accountInformation;
+            this.ownerOfRecord[record] = owner;
+            this.bankIdOfRecord[record] = bankId;
+            linkOwner(record);
+            linkBank(record);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(UUID clientId, Integer accountId) {
+        this.lock.writeLock().lock();
+        try {
+            var clientIndex = this.clientIndexes.get(clientId);
+            if (clientIndex == null)
+                return;
+            var record = this.recordOfAccount.remove(getAccountKey(clientIndex, toId(accountId)));
+            if (record == LongIntMap.NO_VALUE)
+                return;
+            unlinkOwner(record);
+            unlinkBank(record);
+            this.accounts[record] = null;
+            freeRecord(record);
+            this.size--;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the client's account with the ID, null if there is none
+     */
+    public AccountInformation getAccount(UUID clientId, Integer accountId) {
+        this.lock.readLock().lock();
+        try {
+            var clientIndex = this.clientIndexes.get(clientId);
+            if (clientIndex == null)
+                return null;
+            var record = this.recordOfAccount.get(getAccountKey(clientIndex, toId(accountId)));
+            return record == LongIntMap.NO_VALUE ? null : this.accounts[record];
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the client that holds the owner's account, the most recently added one if the owner has several.
+     * Null if the owner has no account
+     */
+    public UUID getClientIdOfOwner(String ownerId) {
+        this.lock.readLock().lock();
+        try {
+            var owner = findOwner(ownerId);
+            if (owner == NOT_FOUND || this.firstRecordOfOwner[owner] == NOT_FOUND)
+                return null;
+            return this.clientIds.get(this.clientIndexOfRecord[this.firstRecordOfOwner[owner]]);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the amount of accounts that the owner has
+     */
+    public int forEachAccountOfOwner(String ownerId, AccountVisitor visitor) {
+        this.lock.readLock().lock();
+        try {
+            var owner = findOwner(ownerId);
+            if (owner == NOT_FOUND)
+                return 0;
+            var count = 0;
+            for (var record = this.firstRecordOfOwner[owner]; record != NOT_FOUND; record = this.nextByOwner[record]) {
+                visitor.visit(this.clientIds.get(this.clientIndexOfRecord[record]), this.accounts[record]);
+                count++;
+            }
+            return count;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the amount of accounts at the bank
+     */
+    public int forEachAccountOfBank(Integer bankId, AccountVisitor visitor) {
+        this.lock.readLock().lock();
+        try {
+            var count = 0;
+            // LongIntMap.NO_VALUE and NOT_FOUND are both -1, either one ends the list
+            for (var record = this.firstRecordOfBank.get(toId(bankId)); record != NOT_FOUND; record = this.nextByBank[record]) {
+                visitor.visit(this.clientIds.get(this.clientIndexOfRecord[record]), this.accounts[record]);
+                count++;
+            }
+            return count;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        this.lock.readLock().lock();
+        try {
+            return this.size;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    private int getOrAddClientIndex(UUID clientId) {
+        var clientIndex = this.clientIndexes.get(clientId);
+        if (clientIndex != null)
+            return clientIndex;
+        this.clientIds.add(clientId);
+        this.clientIndexes.put(clientId, this.clientIds.size() - 1);
+        return this.clientIds.size() - 1;
+    }
+
+    private static long getAccountKey(int clientIndex, int accountId) {
+        return ((long) clientIndex << 32) | (accountId & 0xFFFFFFFFL);
+    }
+
+    private static int toId(Integer id) {
+        return id == null ? NULL_ID : id;
+    }
+
+    private int allocateRecord() {
+        if (this.freeRecordCount > 0)
+            return this.freeRecords[--this.freeRecordCount];
+        if (this.recordCount == this.accounts.length)
+            growRecords();
+        return this.recordCount++;
+    }
+
+    private void freeRecord(int record) {
+        if (this.freeRecordCount == this.freeRecords.length)
+            this.freeRecords = Arrays.copyOf(this.freeRecords, this.freeRecords.length * 2);
+        this.freeRecords[this.freeRecordCount++] = record;
+    }
+
+    private void growRecords() {
+        var capacity = this.accounts.length * 2;
+        this.accounts = Arrays.copyOf(this.accounts, capacity);
+        this.clientIndexOfRecord = Arrays.copyOf(this.clientIndexOfRecord, capacity);
+        this.ownerOfRecord = Arrays.copyOf(this.ownerOfRecord, capacity);
+        this.bankIdOfRecord = Arrays.copyOf(this.bankIdOfRecord, capacity);
+        this.nextByOwner = Arrays.copyOf(this.nextByOwner, capacity);
+        this.previousByOwner = Arrays.copyOf(this.previousByOwner, capacity);
+        this.nextByBank = Arrays.copyOf(this.nextByBank, capacity);
+        this.previousByBank = Arrays.copyOf(this.previousByBank, capacity);
+    }
+
+    private void linkOwner(int record) {
+        var owner = this.ownerOfRecord[record];
+        this.previousByOwner[record] = NOT_FOUND;
+        this.nextByOwner[record] = NOT_FOUND;
+        if (owner == NOT_FOUND)
+            return;
+        var first = this.firstRecordOfOwner[owner];
+        this.nextByOwner[record] = first;
+        if (first != NOT_FOUND)
+            this.previousByOwner[first] = record;
+        this.firstRecordOfOwner[owner] = record;
+    }
+
+    private void unlinkOwner(int record) {
+        var owner = this.ownerOfRecord[record];
+        if (owner == NOT_FOUND)
+            return;
+        var previous = this.previousByOwner[record];
+        var next = this.nextByOwner[record];
+        if (previous == NOT_FOUND)
+            this.firstRecordOfOwner[owner] = next;
+        else
+            this.nextByOwner[previous] = next;
+        if (next != NOT_FOUND)
+            this.previousByOwner[next] = previous;
+    }
+
+    private void linkBank(int record) {
+        var bankId = this.bankIdOfRecord[record];
+        var first = this.firstRecordOfBank.get(bankId);
+        this.previousByBank[record] = NOT_FOUND;
+        this.nextByBank[record] = first == LongIntMap.NO_VALUE ? NOT_FOUND : first;
+        if (first != LongIntMap.NO_VALUE)
+            this.previousByBank[first] = record;
+        this.firstRecordOfBank.put(bankId, record);
+    }
+
+    private void unlinkBank(int record) {
+        var bankId = this.bankIdOfRecord[record];
+        var previous = this.previousByBank[record];
+        var next = this.nextByBank[record];
+        if (previous != NOT_FOUND)
+            this.nextByBank[previous] = next;
+        else if (next == NOT_FOUND)
+            this.firstRecordOfBank.remove(bankId);
+        else
+            this.firstRecordOfBank.put(bankId, next);
+        if (next != NOT_FOUND)
+            this.previousByBank[next] = previous;
+    }
+
+    /**
+     * @return the index of the owner ID, NOT_FOUND if it has never been interned
+     */
+    private int findOwner(String ownerId) {
+        if (ownerId == null)
+            return NOT_FOUND;
+        var mask = this.ownerTable.length - 1;
+        for (var slot = hash(ownerId) & mask; ; slot = (slot + 1) & mask) {
+            var owner = this.ownerTable[slot];
+            if (owner == NOT_FOUND || this.ownerIds[owner].equals(ownerId))
+                return owner;
+        }
+    }
+
+    /**
+     * Owner IDs stay interned once they have been seen, even when their last account is removed
+     * @return the index of the owner ID
+     */
+    private int internOwnerId(String ownerId) {
+        var owner = findOwner(ownerId);
+        if (owner != NOT_FOUND)
+            return owner;
+
+        if (this.ownerCount == this.ownerIds.length) {
+            this.ownerIds = Arrays.copyOf(this.ownerIds, this.ownerCount * 2);
+            this.firstRecordOfOwner = Arrays.copyOf(this.firstRecordOfOwner, this.ownerCount * 2);
+        }
+        owner = this.ownerCount++;
+        this.ownerIds[owner] = ownerId;
+        this.firstRecordOfOwner[owner] = NOT_FOUND;
+
+        // the table stays at most half full
+        if (this.ownerCount * 2 > this.ownerTable.length) {
+            this.ownerTable = newTable(this.ownerTable.length * 2);
+            for (var i = 0; i < this.ownerCount; i++)
+                insertOwner(i);
+        } else
+            insertOwner(owner);
+        return owner;
+    }
+
+    private void insertOwner(int owner) {
+        var mask = this.ownerTable.length - 1;
+        var slot = hash(this.ownerIds[owner]) & mask;
+        while (this.ownerTable[slot] != NOT_FOUND)
+            slot = (slot + 1) & mask;
+        this.ownerTable[slot] = owner;
+    }
+
+    private static int[] newTable(int capacity) {
+        var table = new int[capacity];
+        Arrays.fill(table, NOT_FOUND);
+        return table;
+    }
+
+    private static int hash(String ownerId) {
+        var hash = ownerId.hashCode() * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -3,6 +3,8 @@ package overseer;
 import java.io.Serializable;
 
 public class AccountInformation implements Serializable {
+    // pinned to the value of the original class, Threadneedle has its own copy of it and they have to match
+    private static final long serialVersionUID = -7697900985546426410L;
 
     private String ownerId;
     private Integer accountId;
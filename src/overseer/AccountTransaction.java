@@ -4,6 +4,8 @@ import java.io.Serializable;
 import java.util.UUID;
 
 public class AccountTransaction implements Serializable {
+    // pinned to the value of the original class, Threadneedle has its own copy of it and they have to match
+    private static final long serialVersionUID = 8119898551510720839L;
     UUID transactionId;
 
     UUID clientIdTo;            // The ID of the Threadneedle client connected to Overseer
@@ -18,6 +20,9 @@ public class AccountTransaction implements Serializable {
 
     Integer step;           // at what step does the transaction take place
 
+    // when the transaction arrived at the Overseer, for the round trip metrics. Never sent over the wire
+    transient long arrivalNanos;
+
     public AccountTransaction(
             UUID clientIdTo,
             String peronIdTo,
@@ -28,7 +33,24 @@ public class AccountTransaction implements Serializable {
             String personIdFrom,
             Integer step
     ) {
-        transactionId = UUID.randomUUID();
+        this(TransactionIds.next(), clientIdTo, peronIdTo, bankIdTo, amountTo, clientIdFrom, bankIdFrom, personIdFrom, step);
+    }
+
+    /**
+     * Used when the transaction is decoded from the wire, where it already has its ID
+     */
+    AccountTransaction(
+            UUID transactionId,
+            UUID clientIdTo,
+            String peronIdTo,
+            Integer bankIdTo,
+            long amountTo,
+            UUID clientIdFrom,
+            Integer bankIdFrom,
+            String personIdFrom,
+            Integer step
+    ) {
+        this.transactionId = transactionId;
 
         this.clientIdTo = clientIdTo;
         this.peronIdTo = peronIdTo;
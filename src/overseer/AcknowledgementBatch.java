@@ -0,0 +1,48 @@
+package overseer;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.UUID;
+
+/**
+ * The batched version of the TransactionDone:, TransactionFailed: and RevertTransaction: messages.
+ * The type says which of them it is, and it goes through the same steps as the single message would,
+ * just for all the transaction IDs at once. Batches that the Overseer forwards have the server's ID as their sender.
+ */
+public class AcknowledgementBatch implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final byte TRANSACTION_DONE = 0;    // receiver has deposited the transfers
+    public static final byte TRANSACTION_FAILED = 1;  // receiver could not deposit the transfers
+    public static final byte REVERT_TRANSACTION = 2;  // sender should revert (or has reverted) the withdrawals
+
+    private final byte type;
+    private final UUID sender;
+    private final ArrayList<UUID> transactionIds;
+
+    public AcknowledgementBatch(byte type, UUID sender) {
+        this(type, sender, new ArrayList<>());
+    }
+
+    public AcknowledgementBatch(byte type, UUID sender, ArrayList<UUID> transactionIds) {
+        this.type = type;
+        this.sender = sender;
+        this.transactionIds = transactionIds;
+    }
+
+    public byte getType() {
+        return type;
+    }
+
+    public UUID getSender() {
+        return sender;
+    }
+
+    public ArrayList<UUID> getTransactionIds() {
+        return transactionIds;
+    }
+
+    public void addTransactionId(UUID transactionId) {
+        this.transactionIds.add(transactionId);
+    }
+}
@@ -7,8 +7,21 @@ import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class BankInformation implements Serializable {
+    // pinned to the value of the original class, Threadneedle has its own copy of it and they have to match
+    private static final long serialVersionUID = -8947360635562850635L;
 
     private final ConcurrentHashMap<UUID, HashMap<Integer, AccountInformation>> bankInformationHashMap = new ConcurrentHashMap<>();
+    // goes up with every change the Overseer makes, clients acknowledge it to get deltas. Older copies of the class
+    // just don't read it
+    private volatile long version = 0;
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
 
     public ConcurrentHashMap<UUID, HashMap<Integer, AccountInformation>> getBankInformationHashMap() {
         return bankInformationHashMap;
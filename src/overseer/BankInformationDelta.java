@@ -0,0 +1,65 @@
+package overseer;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.UUID;
+
+/**
+ * What has changed in the BankInformation between two versions: the accounts that were added or changed and the
+ * IDs of the accounts that were removed, per client. Only clients that acknowledge the BankInformation version they
+ * have get these instead of the whole BankInformation. A full snapshot holds every account there is, and replaces
+ * whatever the client had.
+ */
+public class BankInformationDelta implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final long fromVersion;
+    private final long toVersion;
+    private final boolean isFullSnapshot;
+    private final HashMap<UUID, HashMap<Integer, AccountInformation>> changedAccounts;
+    private final HashMap<UUID, ArrayList<Integer>> removedAccounts;
+
+    public BankInformationDelta(long fromVersion, long toVersion, boolean isFullSnapshot) {
+        this(fromVersion, toVersion, isFullSnapshot, new HashMap<>(), new HashMap<>());
+    }
+
+    public BankInformationDelta(long fromVersion, long toVersion, boolean isFullSnapshot,
+                                HashMap<UUID, HashMap<Integer, AccountInformation>> changedAccounts,
+                                HashMap<UUID, ArrayList<Integer>> removedAccounts) {
+        this.fromVersion = fromVersion;
+        this.toVersion = toVersion;
+        this.isFullSnapshot = isFullSnapshot;
+        this.changedAccounts = changedAccounts;
+        this.removedAccounts = removedAccounts;
+    }
+
+    public void addChangedAccount(UUID clientId, AccountInformation accountInformation) {
+        this.changedAccounts.computeIfAbsent(clientId, id -> new HashMap<>())
+                .put(accountInformation.getAccountId(), accountInformation);
+    }
+
+    public void addRemovedAccount(UUID clientId, Integer accountId) {
+        this.removedAccounts.computeIfAbsent(clientId, id -> new ArrayList<>()).add(accountId);
+    }
+
+    public long getFromVersion() {
+        return fromVersion;
+    }
+
+    public long getToVersion() {
+        return toVersion;
+    }
+
+    public boolean isFullSnapshot() {
+        return isFullSnapshot;
+    }
+
+    public HashMap<UUID, HashMap<Integer, AccountInformation>> getChangedAccounts() {
+        return changedAccounts;
+    }
+
+    public HashMap<UUID, ArrayList<Integer>> getRemovedAccounts() {
+        return removedAccounts;
+    }
+}
@@ -0,0 +1,142 @@
+package overseer;
+
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Keeps the version of the server's BankInformation and a log of the account changes that led up to it, so a client
+ * that acknowledged an older version can be sent just what has changed since. Every update that changes anything
+ * is one version. The log only goes back so far, a client that is further behind gets a full snapshot instead.
+ */
+public class BankInformationLog {
+    static final int DEFAULT_CAPACITY = 65536; // account changes that are kept
+
+    private final BankInformation bankInformation;
+    private final AccountDirectory accountDirectory; // gets every change that goes into the log
+    private final int capacity;
+    private final ArrayDeque<Change> changes = new ArrayDeque<>();
+    // the oldest version that a delta can still be made from, older changes have been dropped from the log
+    private long oldestVersion = 0;
+
+    BankInformationLog(BankInformation bankInformation, AccountDirectory accountDirectory, int capacity) {
+        this.bankInformation = bankInformation;
+        this.accountDirectory = accountDirectory;
+        this.capacity = capacity;
+    }
+
+    public long getVersion() {
+        return this.bankInformation.getVersion();
+    }
+
+    /**
+     * Applies the update to the BankInformation and logs the accounts it added, changed or removed. The update
+     * replaces the accounts of every client in it, like BankInformation.addBankInformation() does
+     * @return the version after the update, the same version if nothing changed
+     */
+    public synchronized long update(BankInformation update) {
+        var version = getVersion() + 1;
+        var changeCount = this.changes.size();
+        var current = this.bankInformation.getBankInformationHashMap();
+        for (var entry : update.getBankInformationHashMap().entrySet()) {
+            var clientId = entry.getKey();
+            var oldAccounts = current.getOrDefault(clientId, new HashMap<>());
+            var newAccounts = entry.getValue();
+            for (var account : newAccounts.values()) {
+                if (isChanged(oldAccounts.get(account.getAccountId()), account)) {
+                    this.changes.add(new Change(version, clientId, account.getAccountId(), account));
+                    this.accountDirectory.put(clientId, account);
+                }
+            }
+            for (var accountId : oldAccounts.keySet()) {
+                if (!newAccounts.containsKey(accountId)) {
+                    this.changes.add(new Change(version, clientId, accountId, null));
+                    this.accountDirectory.remove(clientId, accountId);
+                }
+            }
+        }
+
+        // the accounts go in before the version does, so a snapshot never holds an older version than its accounts
+        this.bankInformation.addBankInformation(update);
+        if (this.changes.size() == changeCount)
+            return version - 1;
+        this.bankInformation.setVersion(version);
+        while (this.changes.size() > this.capacity)
+            this.oldestVersion = this.changes.poll().version;
+        return version;
+    }
+
+    /**
+     * Starts the log over at the version of a restored BankInformation, with the restored accounts in it. Clients
+     * that are behind the restored version get a full snapshot
+     */
+    public synchronized void restore(BankInformation restored) {
+        this.changes.clear();
+        this.bankInformation.addBankInformation(restored);
+        restored.getBankInformationHashMap().forEach((clientId, accounts) ->
+                accounts.values().forEach(account -> this.accountDirectory.put(clientId, account)));
+        this.bankInformation.setVersion(restored.getVersion());
+        this.oldestVersion = restored.getVersion();
+    }
+
+    /**
+     * @param version the version that the client has
+     * @return the changes since the version, a full snapshot if the log does not go back that far
+     */
+    public synchronized BankInformationDelta getDeltaSince(long version) {
+        var currentVersion = getVersion();
+        if (version < this.oldestVersion || version > currentVersion)
+            return getFullSnapshot();
+
+        // later changes of the same account replace the earlier ones
+        var latestChanges = new LinkedHashMap<Map.Entry<UUID, Integer>, Change>();
+        var iterator = this.changes.descendingIterator();
+        while (iterator.hasNext()) {
+            var change = iterator.next();
+            if (change.version <= version)
+                break;
+            latestChanges.putIfAbsent(new AbstractMap.SimpleImmutableEntry<>(change.clientId, change.accountId), change);
+        }
+
+        var delta = new BankInformationDelta(version, currentVersion, false);
+        for (var change : latestChanges.values()) {
+            if (change.accountInformation == null)
+                delta.addRemovedAccount(change.clientId, change.accountId);
+            else
+                delta.addChangedAccount(change.clientId, change.accountInformation);
+        }
+        return delta;
+    }
+
+    public synchronized BankInformationDelta getFullSnapshot() {
+        var snapshot = new BankInformationDelta(0, getVersion(), true);
+        this.bankInformation.getBankInformationHashMap().forEach((clientId, accounts) ->
+                snapshot.getChangedAccounts().put(clientId, new HashMap<>(accounts)));
+        return snapshot;
+    }
+
+    private static boolean isChanged(AccountInformation oldAccount, AccountInformation newAccount) {
+        return oldAccount == null ||
+                oldAccount.getCurrentBalance() != newAccount.getCurrentBalance() ||
+                !Objects.equals(oldAccount.getOwnerId(), newAccount.getOwnerId()) ||
+                !Objects.equals(oldAccount.getBankId(), newAccount.getBankId());
+    }
+
+    private static class Change {
+        final long version;
+        final UUID clientId;
+        final Integer accountId;
+        final AccountInformation accountInformation; // null if the account was removed
+
+        Change(long version, UUID clientId, Integer accountId, AccountInformation accountInformation) {
+            this.version = version;
+            this.clientId = clientId;
+            this.accountId = accountId;
+            this.accountInformation = accountInformation;
+        }
+    }
+}
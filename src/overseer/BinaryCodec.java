@@ -0,0 +1,489 @@
+package overseer;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Versioned binary wire protocol, negotiated during the SetClientID handshake.
+ *
+ * Every frame is laid out as [int length][byte opcode][payload], where the length covers the opcode and the payload.
+ * The payload layouts are fixed per opcode:
+ *  - UUIDs are two longs (most significant bits first), a null UUID is written as two zeros
+ *  - Integers are ints, null is written as Integer.MIN_VALUE
+ *  - amounts are raw longs
+ *  - Strings are an int with the amount of UTF-8 bytes followed by the bytes, -1 for null
+ * Any object without a layout of its own is sent as a Java serialized SERIALIZED_OBJECT frame, so nothing
+ * gets lost if the two sides disagree on what has a layout.
+ */
+public class BinaryCodec implements WireCodec {
+    public static final int VERSION = 1;
+
+    static final byte OPCODE_SERIALIZED_OBJECT = 0;
+    static final byte OPCODE_MESSAGES = 1;
+    static final byte OPCODE_ACCOUNT_TRANSACTION = 2;
+    static final byte OPCODE_TOURIST_TRANSACTION = 3;
+    static final byte OPCODE_BANK_INFORMATION = 4;
+    static final byte OPCODE_TRANSACTION_BATCH = 5;
+    static final byte OPCODE_ACKNOWLEDGEMENT_BATCH = 6;
+    static final byte OPCODE_NET_SETTLEMENT = 7;
+    static final byte OPCODE_BANK_INFORMATION_DELTA = 8;
+
+    private static final int LENGTH_PREFIX_SIZE = Integer.BYTES;
+    private static final int MAX_FRAME_LENGTH = 64 * 1024 * 1024; // anything bigger is treated as a corrupt stream
+    private static final int NULL_INTEGER = Integer.MIN_VALUE;
+    private static final int NULL_STRING = -1;
+    // the fewest bytes that an element of a counted list can take up, a count that doesn't fit in the rest of the frame is corrupt
+    private static final int MIN_UUID_SIZE = 2 * Long.BYTES;
+    private static final int MIN_ACCOUNT_TRANSACTION_SIZE = 3 * MIN_UUID_SIZE + Long.BYTES + 5 * Integer.BYTES;
+    private static final int MIN_NET_POSITION_SIZE = 2 * Integer.BYTES + Long.BYTES;
+    private static final int MIN_CLIENT_SIZE = MIN_UUID_SIZE + Integer.BYTES;
+    private static final int MIN_ACCOUNT_SIZE = 3 * Integer.BYTES + Long.BYTES;
+
+    private final SerializationCodec serializationCodec = new SerializationCodec();
+
+    @Override
+    public String getName() {
+        return "binary/" + VERSION;
+    }
+
+    @Override
+    public byte[] encode(Object object) throws IOException {
+        var frame = new FrameBuilder();
+        frame.buffer.putInt(0); // length, filled in at the end
+
+        if (object.getClass() == Messages.class)
+            encodeMessages(frame, (Messages) object);
+        else if (object.getClass() == AccountTransaction.class)
+            encodeAccountTransaction(frame, (AccountTransaction) object);
+        else if (object.getClass() == TouristTransaction.class)
+            encodeTouristTransaction(frame, (TouristTransaction) object);
+        else if (object.getClass() == BankInformation.class)
+            encodeBankInformation(frame, (BankInformation) object);
+        else if (object.getClass() == TransactionBatch.class)
+            encodeTransactionBatch(frame, (TransactionBatch) object);
+        else if (object.getClass() == AcknowledgementBatch.class)
+            encodeAcknowledgementBatch(frame, (AcknowledgementBatch) object);
+        else if (object.getClass() == NetSettlement.class)
+            encodeNetSettlement(frame, (NetSettlement) object);
+        else if (object.getClass() == BankInformationDelta.class)
+            encodeBankInformationDelta(frame, (BankInformationDelta) object);
+        else {
+            var serialized = this.serializationCodec.encode(object);
+            frame.ensureCapacity(1 + serialized.length);
+            frame.buffer.put(OPCODE_SERIALIZED_OBJECT).put(serialized);
+        }
+        return frame.finish();
+    }
+
+    @Override
+    public Object decode(ByteBuffer buffer) throws IOException, ClassNotFoundException {
+        if (buffer.remaining() < LENGTH_PREFIX_SIZE)
+            return null;
+
+        var length = readFrameLength(buffer.getInt(buffer.position()));
+        if (buffer.remaining() < LENGTH_PREFIX_SIZE + length)
+            return null;
+
+        var frameEnd = buffer.position() + LENGTH_PREFIX_SIZE + length;
+        var frame = buffer.duplicate();
+        frame.position(buffer.position() + LENGTH_PREFIX_SIZE).limit(frameEnd);
+        var object = decodePayload(frame);
+        buffer.position(frameEnd);
+        return object;
+    }
+
+    @Override
+    public Object read(InputStream inputStream) throws IOException, ClassNotFoundException {
+        var dataInputStream = new DataInputStream(inputStream);
+        var payload = new byte[readFrameLength(dataInputStream.readInt())];
+        dataInputStream.readFully(payload);
+        return decodePayload(ByteBuffer.wrap(payload));
+    }
+
+    private int readFrameLength(int length) throws StreamCorruptedException {
+        if (length < 1 || length > MAX_FRAME_LENGTH)
+            throw new StreamCorruptedException(String.format("Invalid binary frame length: %s", length));
+        return length;
+    }
+
+    /**
+     * @param payload a buffer holding the opcode and the payload of exactly one frame
+     */
+    private Object decodePayload(ByteBuffer payload) throws IOException, ClassNotFoundException {
+        try {
+            var opcode = payload.get();
+            switch (opcode) {
+                case OPCODE_MESSAGES:
+                    return decodeMessages(payload);
+                case OPCODE_ACCOUNT_TRANSACTION:
+                    return decodeAccountTransaction(payload);
+                case OPCODE_TOURIST_TRANSACTION:
+                    return decodeTouristTransaction(payload);
+                case OPCODE_BANK_INFORMATION:
+                    return decodeBankInformation(payload);
+                case OPCODE_TRANSACTION_BATCH:
+                    return decodeTransactionBatch(payload);
+                case OPCODE_ACKNOWLEDGEMENT_BATCH:
+                    return decodeAcknowledgementBatch(payload);
+                case OPCODE_NET_SETTLEMENT:
+                    return decodeNetSettlement(payload);
+                case OPCODE_BANK_INFORMATION_DELTA:
+                    return decodeBankInformationDelta(payload);
+                case OPCODE_SERIALIZED_OBJECT:
+                    return this.serializationCodec.read(new ByteArrayInputStream(
+                            payload.array(), payload.arrayOffset() + payload.position(), payload.remaining()));
+                default:
+                    throw new StreamCorruptedException(String.format("Unknown binary opcode: %s", opcode));
+            }
+        } catch (BufferUnderflowException e) {
+            throw new StreamCorruptedException("Binary frame is shorter than its layout");
+        }
+    }
+
+    private void encodeMessages(FrameBuilder frame, Messages messages) {
+        frame.putByte(OPCODE_MESSAGES);
+        frame.putUUID(messages.getSender());
+        frame.putString(messages.getMessage());
+    }
+
+    private Messages decodeMessages(ByteBuffer payload) throws StreamCorruptedException {
+        var sender = getUUID(payload);
+        return new Messages(getString(payload), sender);
+    }
+
+    private void encodeAccountTransaction(FrameBuilder frame, AccountTransaction accountTransaction) {
+        frame.putByte(OPCODE_ACCOUNT_TRANSACTION);
+        putAccountTransaction(frame, accountTransaction);
+    }
+
+    private void putAccountTransaction(FrameBuilder frame, AccountTransaction accountTransaction) {
+        frame.putUUID(accountTransaction.getTransactionId());
+        frame.putUUID(accountTransaction.getClientIdTo());
+        frame.putInteger(accountTransaction.getBankIdTo());
+        frame.putString(accountTransaction.getPeronIdTo());
+        frame.putLong(accountTransaction.getAmountTo());
+        frame.putUUID(accountTransaction.getClientIdFrom());
+        frame.putInteger(accountTransaction.getBankIdFrom());
+        frame.putString(accountTransaction.getPersonIdFrom());
+        frame.putInteger(accountTransaction.getStep());
+    }
+
+    private AccountTransaction decodeAccountTransaction(ByteBuffer payload) throws StreamCorruptedException {
+        var transactionId = getUUID(payload);
+        var clientIdTo = getUUID(payload);
+        var bankIdTo = getInteger(payload);
+        var personIdTo = getString(payload);
+        var amountTo = payload.getLong();
+        var clientIdFrom = getUUID(payload);
+        var bankIdFrom = getInteger(payload);
+        var personIdFrom = getString(payload);
+        var step = getInteger(payload);
+        return new AccountTransaction(transactionId, clientIdTo, personIdTo, bankIdTo, amountTo,
+                clientIdFrom, bankIdFrom, personIdFrom, step);
+    }
+
+    /**
+     * [UUID sender][int step][int transactions] followed by the transactions in the AccountTransaction layout
+     */
+    private void encodeTransactionBatch(FrameBuilder frame, TransactionBatch transactionBatch) {
+        frame.putByte(OPCODE_TRANSACTION_BATCH);
+        frame.putUUID(transactionBatch.getSender());
+        frame.putInteger(transactionBatch.getStep());
+        frame.putInt(transactionBatch.getTransactions().size());
+        for (var accountTransaction : transactionBatch.getTransactions())
+            putAccountTransaction(frame, accountTransaction);
+    }
+
+    private TransactionBatch decodeTransactionBatch(ByteBuffer payload) throws StreamCorruptedException {
+        var sender = getUUID(payload);
+        var step = getInteger(payload);
+        var count = getCount(payload, MIN_ACCOUNT_TRANSACTION_SIZE);
+        var transactions = new ArrayList<AccountTransaction>(count);
+        for (var i = 0; i < count; i++)
+            transactions.add(decodeAccountTransaction(payload));
+        return new TransactionBatch(sender, step, transactions);
+    }
+
+    /**
+     * [byte type][UUID sender][int transactions] followed by the transaction IDs
+     */
+    private void encodeAcknowledgementBatch(FrameBuilder frame, AcknowledgementBatch acknowledgementBatch) {
+        frame.putByte(OPCODE_ACKNOWLEDGEMENT_BATCH);
+        frame.putByte(acknowledgementBatch.getType());
+        frame.putUUID(acknowledgementBatch.getSender());
+        frame.putInt(acknowledgementBatch.getTransactionIds().size());
+        for (var transactionId : acknowledgementBatch.getTransactionIds())
+            frame.putUUID(transactionId);
+    }
+
+    private AcknowledgementBatch decodeAcknowledgementBatch(ByteBuffer payload) throws StreamCorruptedException {
+        var type = payload.get();
+        var sender = getUUID(payload);
+        var count = getCount(payload, MIN_UUID_SIZE);
+        var transactionIds = new ArrayList<UUID>(count);
+        for (var i = 0; i < count; i++)
+            transactionIds.add(getUUID(payload));
+        return new AcknowledgementBatch(type, sender, transactionIds);
+    }
+
+    /**
+     * [UUID sender][int step][int positions] then per position [int bankId][String personId][long amount],
+     * followed by [int transactions] and the transaction IDs
+     */
+    private void encodeNetSettlement(FrameBuilder frame, NetSettlement netSettlement) {
+        frame.putByte(OPCODE_NET_SETTLEMENT);
+        frame.putUUID(netSettlement.getSender());
+        frame.putInteger(netSettlement.getStep());
+        frame.putInt(netSettlement.getNetPositions().size());
+        for (var netPosition : netSettlement.getNetPositions()) {
+            frame.putInteger(netPosition.getBankId());
+            frame.putString(netPosition.getPersonId());
+            frame.putLong(netPosition.getAmount());
+        }
+        frame.putInt(netSettlement.getTransactionIds().size());
+        for (var transactionId : netSettlement.getTransactionIds())
+            frame.putUUID(transactionId);
+    }
+
+    private NetSettlement decodeNetSettlement(ByteBuffer payload) throws StreamCorruptedException {
+        var sender = getUUID(payload);
+        var step = getInteger(payload);
+        var positionCount = getCount(payload, MIN_NET_POSITION_SIZE);
+        var netPositions = new ArrayList<NetPosition>(positionCount);
+        for (var i = 0; i < positionCount; i++) {
+            var bankId = getInteger(payload);
+            var personId = getString(payload);
+            netPositions.add(new NetPosition(bankId, personId, payload.getLong()));
+        }
+        var transactionCount = getCount(payload, MIN_UUID_SIZE);
+        var transactionIds = new ArrayList<UUID>(transactionCount);
+        for (var i = 0; i < transactionCount; i++)
+            transactionIds.add(getUUID(payload));
+        return new NetSettlement(sender, step, netPositions, transactionIds);
+    }
+
+    private void encodeTouristTransaction(FrameBuilder frame, TouristTransaction touristTransaction) {
+        frame.putByte(OPCODE_TOURIST_TRANSACTION);
+        frame.putUUID(touristTransaction.getTransactionId());
+        frame.putUUID(touristTransaction.getClientId());
+        frame.putInteger(touristTransaction.getBankId());
+        frame.putString(touristTransaction.getPersonId());
+        frame.putLong(touristTransaction.getAmount());
+        frame.putInteger(touristTransaction.getStep());
+    }
+
+    private TouristTransaction decodeTouristTransaction(ByteBuffer payload) throws StreamCorruptedException {
+        var transactionId = getUUID(payload);
+        var clientId = getUUID(payload);
+        var bankId = getInteger(payload);
+        var personId = getString(payload);
+        var amount = payload.getLong();
+        var step = getInteger(payload);
+        return new TouristTransaction(transactionId, clientId, bankId, personId, amount, step);
+    }
+
+    /**
+     * [int clients] then per client [UUID clientId][int accounts] and per account
+     * [String ownerId][int accountId][int bankId][long currentBalance], followed by [long version].
+     * Frames from before the version was added end after the accounts
+     */
+    private void encodeBankInformation(FrameBuilder frame, BankInformation bankInformation) {
+        frame.putByte(OPCODE_BANK_INFORMATION);
+        // the version is read first, the accounts can only be newer than it
+        var version = bankInformation.getVersion();
+        putAccountsByClientId(frame, bankInformation.getBankInformationHashMap());
+        frame.putLong(version);
+    }
+
+    private BankInformation decodeBankInformation(ByteBuffer payload) throws StreamCorruptedException {
+        var bankInformation = new BankInformation();
+        getAccountsByClientId(payload, bankInformation.getBankInformationHashMap());
+        if (payload.remaining() >= Long.BYTES)
+            bankInformation.setVersion(payload.getLong());
+        return bankInformation;
+    }
+
+    /**
+     * [long fromVersion][long toVersion][byte isFullSnapshot], the changed accounts laid out like the accounts of a
+     * BankInformation, then [int clients] and per client [UUID clientId][int accounts] and the removed account IDs
+     */
+    private void encodeBankInformationDelta(FrameBuilder frame, BankInformationDelta delta) {
+        frame.putByte(OPCODE_BANK_INFORMATION_DELTA);
+        frame.putLong(delta.getFromVersion());
+        frame.putLong(delta.getToVersion());
+        frame.putByte((byte) (delta.isFullSnapshot() ? 1 : 0));
+        putAccountsByClientId(frame, delta.getChangedAccounts());
+        frame.putInt(delta.getRemovedAccounts().size());
+        for (var entry : delta.getRemovedAccounts().entrySet()) {
+            frame.putUUID(entry.getKey());
+            frame.putInt(entry.getValue().size());
+            for (var accountId : entry.getValue())
+                frame.putInteger(accountId);
+        }
+    }
+
+    private BankInformationDelta decodeBankInformationDelta(ByteBuffer payload) throws StreamCorruptedException {
+        var fromVersion = payload.getLong();
+        var toVersion = payload.getLong();
+        var isFullSnapshot = payload.get() == 1;
+        var changedAccounts = new HashMap<UUID, HashMap<Integer, AccountInformation>>();
+        getAccountsByClientId(payload, changedAccounts);
+        var removedAccounts = new HashMap<UUID, ArrayList<Integer>>();
+        var clients = getCount(payload, MIN_CLIENT_SIZE);
+        for (var i = 0; i < clients; i++) {
+            var clientId = getUUID(payload);
+            var accountCount = getCount(payload, Integer.BYTES);
+            var accountIds = new ArrayList<Integer>(accountCount);
+            for (var j = 0; j < accountCount; j++)
+                accountIds.add(getInteger(payload));
+            removedAccounts.put(clientId, accountIds);
+        }
+        return new BankInformationDelta(fromVersion, toVersion, isFullSnapshot, changedAccounts, removedAccounts);
+    }
+
+    /**
+     * [int clients] then per client [UUID clientId][int accounts] and per account
+     * [String ownerId][int accountId][int bankId][long currentBalance]
+     */
+    private void putAccountsByClientId(FrameBuilder frame, Map<UUID, HashMap<Integer, AccountInformation>> accountsByClientId) {
+        // the map can change while it is being written, so the client count is filled in afterwards
+        var countPosition = frame.buffer.position();
+        frame.putInt(0);
+        var clients = 0;
+        for (var entry : accountsByClientId.entrySet()) {
+            var accounts = entry.getValue().values().toArray(new AccountInformation[0]);
+            frame.putUUID(entry.getKey());
+            frame.putInt(accounts.length);
+            for (var account : accounts) {
+                frame.putString(account.getOwnerId());
+                frame.putInteger(account.getAccountId());
+                frame.putInteger(account.getBankId());
+                frame.putLong(account.getCurrentBalance());
+            }
+            clients++;
+        }
+        frame.buffer.putInt(countPosition, clients);
+    }
+
+    private void getAccountsByClientId(ByteBuffer payload, Map<UUID, HashMap<Integer, AccountInformation>> accountsByClientId)
+            throws StreamCorruptedException {
+        var clients = getCount(payload, MIN_CLIENT_SIZE);
+        for (var i = 0; i < clients; i++) {
+            var clientId = getUUID(payload);
+            var accountCount = getCount(payload, MIN_ACCOUNT_SIZE);
+            var accounts = new HashMap<Integer, AccountInformation>();
+            for (var j = 0; j < accountCount; j++) {
+                var ownerId = getString(payload);
+                var accountId = getInteger(payload);
+                var bankId = getInteger(payload);
+                var currentBalance = payload.getLong();
+                accounts.put(accountId, new AccountInformation(ownerId, accountId, bankId, currentBalance));
+            }
+            accountsByClientId.put(clientId, accounts);
+        }
+    }
+
+    private static UUID getUUID(ByteBuffer payload) {
+        var mostSignificantBits = payload.getLong();
+        var leastSignificantBits = payload.getLong();
+        if (mostSignificantBits == 0 && leastSignificantBits == 0)
+            return null;
+        return new UUID(mostSignificantBits, leastSignificantBits);
+    }
+
+    /**
+     * @param minElementSize the fewest bytes that one of the counted elements takes up
+     * @return the count of a list, checked against what is left of the frame before anything is allocated for it
+     */
+    private static int getCount(ByteBuffer payload, int minElementSize) throws StreamCorruptedException {
+        var count = payload.getInt();
+        if (count < 0 || count > payload.remaining() / minElementSize)
+            throw new StreamCorruptedException(String.format("Invalid binary list count: %s", count));
+        return count;
+    }
+
+    private static Integer getInteger(ByteBuffer payload) {
+        var value = payload.getInt();
+        return value == NULL_INTEGER ? null : value;
+    }
+
+    private static String getString(ByteBuffer payload) throws StreamCorruptedException {
+        var length = payload.getInt();
+        if (length == NULL_STRING)
+            return null;
+        if (length < 0 || length > payload.remaining())
+            throw new StreamCorruptedException(String.format("Invalid binary string length: %s", length));
+        var string = new String(payload.array(), payload.arrayOffset() + payload.position(), length, StandardCharsets.UTF_8);
+        payload.position(payload.position() + length);
+        return string;
+    }
+
+    /**
+     * A growing buffer that a single frame gets written into
+     */
+    private static class FrameBuilder {
+        private ByteBuffer buffer = ByteBuffer.allocate(256);
+
+        void ensureCapacity(int bytes) {
+            if (this.buffer.remaining() >= bytes)
+                return;
+            var grownBuffer = ByteBuffer.allocate(Math.max(this.buffer.capacity() * 2, this.buffer.position() + bytes));
+            this.buffer.flip();
+            grownBuffer.put(this.buffer);
+            this.buffer = grownBuffer;
+        }
+
+        void putByte(byte value) {
+            ensureCapacity(Byte.BYTES);
+            this.buffer.put(value);
+        }
+
+        void putInt(int value) {
+            ensureCapacity(Integer.BYTES);
+            this.buffer.putInt(value);
+        }
+
+        void putInteger(Integer value) {
+            putInt(value == null ? NULL_INTEGER : value);
+        }
+
+        void putLong(long value) {
+            ensureCapacity(Long.BYTES);
+            this.buffer.putLong(value);
+        }
+
+        void putUUID(UUID value) {
+            ensureCapacity(2 * Long.BYTES);
+            this.buffer.putLong(value == null ? 0 : value.getMostSignificantBits());
+            this.buffer.putLong(value == null ? 0 : value.getLeastSignificantBits());
+        }
+
+        void putString(String value) {
+            if (value == null) {
+                putInt(NULL_STRING);
+                return;
+            }
+            var bytes = value.getBytes(StandardCharsets.UTF_8);
+            ensureCapacity(Integer.BYTES + bytes.length);
+            this.buffer.putInt(bytes.length).put(bytes);
+        }
+
+        /**
+         * Fills in the length prefix
+         * @return the bytes of the frame
+         */
+        byte[] finish() {
+            this.buffer.putInt(0, this.buffer.position() - LENGTH_PREFIX_SIZE);
+            var frame = new byte[this.buffer.position()];
+            this.buffer.flip();
+            this.buffer.get(frame);
+            return frame;
+        }
+    }
+}
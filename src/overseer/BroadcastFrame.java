@@ -0,0 +1,85 @@
+package overseer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An object that goes out to every client, encoded once per wire codec instead of once per client. The same frame
+ * is put in every client's message queue, and each ClientWriter writes the shared bytes as they are. The frame is
+ * reference counted: the broadcaster holds one reference, every client that the frame is queued for holds one, and
+ * the writers release theirs once the bytes are on the wire. The direct buffers go back to the FrameBufferPool
+ * when the last reference is released.
+ */
+public class BroadcastFrame {
+    private final Object object;
+    private final AtomicInteger referenceCount = new AtomicInteger(1);
+    private final Encoding serialized = new Encoding();
+    private final Encoding binary = new Encoding();
+
+    public BroadcastFrame(Object object) {
+        this.object = object;
+    }
+
+    public Object getObject() {
+        return object;
+    }
+
+    public void retain() {
+        this.referenceCount.incrementAndGet();
+    }
+
+    public void release() {
+        if (this.referenceCount.decrementAndGet() == 0) {
+            this.serialized.free();
+            this.binary.free();
+        }
+    }
+
+    /**
+     * @return the frame as the codec encodes it, the array must not be changed
+     */
+    public byte[] getBytes(WireCodec codec) throws IOException {
+        return getEncoding(codec).getBytes(codec, this.object);
+    }
+
+    /**
+     * @return a read-only view of the frame in a direct buffer, only valid until this reference is released
+     */
+    public ByteBuffer getBuffer(WireCodec codec) throws IOException {
+        return getEncoding(codec).getBuffer(codec, this.object);
+    }
+
+    private Encoding getEncoding(WireCodec codec) {
+        return codec.getClass() == BinaryCodec.class ? this.binary : this.serialized;
+    }
+
+    /**
+     * The frame in one codec, encoded by the first client that needs it
+     */
+    private static class Encoding {
+        private byte[] bytes = null;
+        private ByteBuffer buffer = null;
+
+        synchronized byte[] getBytes(WireCodec codec, Object object) throws IOException {
+            if (this.bytes == null)
+                this.bytes = codec.encode(object);
+            return this.bytes;
+        }
+
+        synchronized ByteBuffer getBuffer(WireCodec codec, Object object) throws IOException {
+            if (this.buffer == null) {
+                var frame = getBytes(codec, object);
+                this.buffer = FrameBufferPool.getInstance().acquire(frame.length).put(frame).flip();
+            }
+            return this.buffer.asReadOnlyBuffer();
+        }
+
+        synchronized void free() {
+            if (this.buffer != null)
+                FrameBufferPool.getInstance().release(this.buffer);
+            this.buffer = null;
+            this.bytes = null;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package overseer;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.UUID;
+
+/**
+ * The state of the ServerData at a step boundary, everything that is needed to pick the simulation up again at that
+ * step. Completed transactions are not part of it, they are replayed from the write-ahead log up to walOffset.
+ *
+ * File layout: [int MAGIC][int VERSION][int step][int totalSteps][long walOffset][int clients][UUID...]
+ * [int pending][AccountTransaction frame...][int pending tourist][TouristTransaction frame...][BankInformation frame],
+ * the frames in the BinaryCodec layout
+ */
+public class Checkpoint {
+    private static final int MAGIC = 0x4F564350; // "OVCP"
+    private static final int VERSION = 1;
+
+    private final int step;
+    private final int totalSteps;
+    private long walOffset;
+    private final ArrayList<UUID> clientIds;
+    private final ArrayList<AccountTransaction> pendingTransactions;
+    private final ArrayList<TouristTransaction> pendingTouristTransactions;
+    private final BankInformation bankInformation;
+
+    public Checkpoint(int step, int totalSteps, ArrayList<UUID> clientIds,
+                      ArrayList<AccountTransaction> pendingTransactions,
+                      ArrayList<TouristTransaction> pendingTouristTransactions, BankInformation bankInformation) {
+        this.step = step;
+        this.totalSteps = totalSteps;
+        this.clientIds = clientIds;
+        this.pendingTransactions = pendingTransactions;
+        this.pendingTouristTransactions = pendingTouristTransactions;
+        this.bankInformation = bankInformation;
+    }
+
+    public int getStep() {
+        return step;
+    }
+
+    public int getTotalSteps() {
+        return totalSteps;
+    }
+
+    public long getWalOffset() {
+        return walOffset;
+    }
+
+    public void setWalOffset(long walOffset) {
+        this.walOffset = walOffset;
+    }
+
+    public ArrayList<UUID> getClientIds() {
+        return clientIds;
+    }
+
+    public ArrayList<AccountTransaction> getPendingTransactions() {
+        return pendingTransactions;
+    }
+
+    public ArrayList<TouristTransaction> getPendingTouristTransactions() {
+        return pendingTouristTransactions;
+    }
+
+    public BankInformation getBankInformation() {
+        return bankInformation;
+    }
+
+    public void writeTo(DataOutputStream outputStream, BinaryCodec binaryCodec) throws IOException {
+        outputStream.writeInt(MAGIC);
+        outputStream.writeInt(VERSION);
+        outputStream.writeInt(this.step);
+        outputStream.writeInt(this.totalSteps);
+        outputStream.writeLong(this.walOffset);
+        outputStream.writeInt(this.clientIds.size());
+        for (var clientId : this.clientIds) {
+            outputStream.writeLong(clientId.getMostSignificantBits());
+            outputStream.writeLong(clientId.getLeastSignificantBits());
+        }
+        outputStream.writeInt(this.pendingTransactions.size());
+        for (var accountTransaction : this.pendingTransactions)
+            outputStream.write(binaryCodec.encode(accountTransaction));
+        outputStream.writeInt(this.pendingTouristTransactions.size());
+        for (var touristTransaction : this.pendingTouristTransactions)
+            outputStream.write(binaryCodec.encode(touristTransaction));
+        outputStream.write(binaryCodec.encode(this.bankInformation));
+    }
+
+    /**
+     * @throws StreamCorruptedException if the file is not a checkpoint of this version
+     */
+    public static Checkpoint readFrom(DataInputStream inputStream, BinaryCodec binaryCodec)
+            throws IOException, ClassNotFoundException {
+        if (inputStream.readInt() != MAGIC || inputStream.readInt() != VERSION)
+            throw new StreamCorruptedException("Not a checkpoint file of version " + VERSION);
+
+        var step = inputStream.readInt();
+        var totalSteps = inputStream.readInt();
+        var walOffset = inputStream.readLong();
+        var clientCount = inputStream.readInt();
+        var clientIds = new ArrayList<UUID>(clientCount);
+        for (var i = 0; i < clientCount; i++)
+            clientIds.add(new UUID(inputStream.readLong(), inputStream.readLong()));
+        var pendingCount = inputStream.readInt();
+        var pendingTransactions = new ArrayList<AccountTransaction>(pendingCount);
+        for (var i = 0; i < pendingCount; i++)
+            pendingTransactions.add((AccountTransaction) binaryCodec.read(inputStream));
+        var touristCount = inputStream.readInt();
+        var pendingTouristTransactions = new ArrayList<TouristTransaction>(touristCount);
+        for (var i = 0; i < touristCount; i++)
+            pendingTouristTransactions.add((TouristTransaction) binaryCodec.read(inputStream));
+        var bankInformation = (BankInformation) binaryCodec.read(inputStream);
+
+        var checkpoint = new Checkpoint(step, totalSteps, clientIds, pendingTransactions,
+                pendingTouristTransactions, bankInformation);
+        checkpoint.setWalOffset(walOffset);
+        return checkpoint;
+    }
+}
@@ -0,0 +1,150 @@
+package overseer;
+
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Gives every client a dense integer slot when it sets its client ID. The per-client state lives in arrays indexed
+ * by the slot, so once a client's slot is known, getting to its socket, message queue or step is a plain array access.
+ * Going from a client ID to a slot is a single hash lookup.
+ * Slots of clients that disconnect are handed out again to the next client that connects.
+ */
+public class ClientRegistry {
+    public static final int NO_SLOT = -1;
+
+    private final ConcurrentHashMap<UUID, Integer> slotsByClientId = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<ConnectedSocket> socketsBySlot;
+    // a slot keeps the ID of its client after it is released, until it is handed out to the next client
+    private final AtomicReferenceArray<UUID> clientIdsBySlot;
+    private final AtomicIntegerArray stepsBySlot;
+    // the last step that each client has been told to take, only used in the bounded lag stepping mode
+    private final AtomicIntegerArray grantedStepsBySlot;
+    // when each client was last told to take a step, only used in the bounded lag stepping mode
+    private final AtomicLongArray grantedNanosBySlot;
+    private final AtomicInteger nextSlot = new AtomicInteger(0);
+    private final ConcurrentLinkedQueue<Integer> releasedSlots = new ConcurrentLinkedQueue<>();
+
+    ClientRegistry(int capacity) {
+        this.socketsBySlot = new AtomicReferenceArray<>(capacity);
+        this.clientIdsBySlot = new AtomicReferenceArray<>(capacity);
+        this.stepsBySlot = new AtomicIntegerArray(capacity);
+        this.grantedStepsBySlot = new AtomicIntegerArray(capacity);
+        this.grantedNanosBySlot = new AtomicLongArray(capacity);
+    }
+
+    /**
+     * @param clientId the ID the client has set
+     * @return a free slot for the client, or the slot it already has if it was registered before it connected
+     * @throws IllegalStateException if all the slots are taken
+     */
+    public int register(UUID clientId) {
+        var registeredSlot = this.slotsByClientId.get(clientId);
+        if (registeredSlot != null)
+            return registeredSlot;
+        var slot = this.releasedSlots.poll();
+        if (slot == null) {
+            slot = this.nextSlot.getAndIncrement();
+            if (slot >= this.socketsBySlot.length()) {
+                this.nextSlot.decrementAndGet();
+                throw new IllegalStateException(String.format("No free client slot for client %s", clientId));
+            }
+        }
+        this.clientIdsBySlot.set(slot, clientId);
+        this.slotsByClientId.put(clientId, slot);
+        return slot;
+    }
+
+    /**
+     * Puts the client's socket in its slot, after which the client can be looked up
+     */
+    public void setConnectedSocket(int slot, ConnectedSocket connectedSocket) {
+        this.socketsBySlot.set(slot, connectedSocket);
+    }
+
+    /**
+     * Frees up the client's slot
+     * @return the socket that was in the slot, null if the client had no slot
+     */
+    public ConnectedSocket release(UUID clientId) {
+        var slot = this.slotsByClientId.remove(clientId);
+        if (slot == null)
+            return null;
+        var connectedSocket = this.socketsBySlot.getAndSet(slot, null);
+        this.releasedSlots.add(slot);
+        return connectedSocket;
+    }
+
+    /**
+     * @return the client's slot, or NO_SLOT if the client is not registered
+     */
+    public int getSlot(UUID clientId) {
+        var slot = this.slotsByClientId.get(clientId);
+        return slot == null ? NO_SLOT : slot;
+    }
+
+    /**
+     * @return the ID of the client that has or last had the slot, null if the slot was never handed out
+     */
+    public UUID getClientId(int slot) {
+        return this.clientIdsBySlot.get(slot);
+    }
+
+    public ConnectedSocket getConnectedSocket(int slot) {
+        var connectedSocket = this.socketsBySlot.get(slot);
+        if (connectedSocket == null)
+            throw new NoSuchElementException(String.format("No socket in client slot %s", slot));
+        return connectedSocket;
+    }
+
+    /**
+     * @return the socket in the slot, null if the slot is free, e.g. because its client has left
+     */
+    public ConnectedSocket findConnectedSocket(int slot) {
+        return this.socketsBySlot.get(slot);
+    }
+
+    public ConnectedSocket getConnectedSocket(UUID clientId) {
+        var slot = getSlot(clientId);
+        if (slot == NO_SLOT)
+            throw new NoSuchElementException(String.format("Socket with Client ID %s not found", clientId));
+        return getConnectedSocket(slot);
+    }
+
+    public int getStep(int slot) {
+        return this.stepsBySlot.get(slot);
+    }
+
+    public void setStep(int slot, int step) {
+        this.stepsBySlot.set(slot, step);
+    }
+
+    public int incrementStep(int slot) {
+        return this.stepsBySlot.incrementAndGet(slot);
+    }
+
+    public int getGrantedStep(int slot) {
+        return this.grantedStepsBySlot.get(slot);
+    }
+
+    public void setGrantedStep(int slot, int step) {
+        this.grantedStepsBySlot.set(slot, step);
+    }
+
+    public long getGrantedNanos(int slot) {
+        return this.grantedNanosBySlot.get(slot);
+    }
+
+    public void setGrantedNanos(int slot, long nanos) {
+        this.grantedNanosBySlot.set(slot, nanos);
+    }
+
+    public int getCapacity() {
+        return this.socketsBySlot.length();
+    }
+}
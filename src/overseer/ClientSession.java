@@ -0,0 +1,722 @@
+package overseer;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.security.InvalidKeyException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.UUID;
+
+/**
+ * The protocol side of a connected Threadneedle client. Incoming objects from the client and objects that other
+ * clients (or the Server) have put in the client's message queue are processed here, no matter which transport
+ * is moving the bytes. Everything that needs to go out to the client is handed to the ClientWriter.
+ */
+public class ClientSession {
+    private static final int MESSAGE_BATCH_SIZE = 64;
+    private static final long NOTHING_UNFLUSHED = -1;
+    private static final long NOT_RESUMING = -1;
+
+    private final Socket threadneedleSocket;
+    private final Logger logger;
+    // There data in serverData is used between Server.java and the ClientSessions
+    private final ServerData serverData;
+    private final ClientWriter clientWriter;
+    private UUID clientId = null;
+    private int clientSlot = ClientRegistry.NO_SLOT; // the client's slot in the ClientRegistry, once the ID is set
+    private ConnectedSocket connectedSocket = null;  // the client's own socket, once the ID is set
+    private boolean isConnected = true;
+    private boolean isConnectionIdSet;
+    private volatile boolean isReady = false; // the client has sent its ClientReady:, which ends the handshake
+    // the objects that a resumed client has received, the ones after them are sent again before the queue is drained
+    private volatile long replayAfter = NOT_RESUMING;
+    // called when something gets added to the client's message queue, so the transport knows it has work to do
+    private Runnable messageListener = null;
+    // called when the client's reads are no longer paused by a full message queue
+    private Runnable readResumeListener = null;
+    // the messages are taken out of the message queue this many at a time
+    private final Object[] messageBatch = new Object[MESSAGE_BATCH_SIZE];
+    // when the oldest write that hasn't been flushed to the client yet was made, guarded by this
+    private long unflushedSinceNanos = NOTHING_UNFLUSHED;
+    // every client starts out speaking Java serialization, the binary protocol has to be asked for in the handshake
+    private volatile WireCodec wireCodec = new SerializationCodec();
+    // reused for every message, processObject() is synchronized
+    private final CommandReader commandReader = new CommandReader();
+    private final Debug debug = new Debug();
+
+    public ClientSession(Socket threadneedleSocket, ServerData serverData, ClientWriter clientWriter) {
+        this.threadneedleSocket = threadneedleSocket;
+        this.serverData = serverData;
+        this.clientWriter = clientWriter;
+        this.logger = new Logger();
+        this.isConnectionIdSet = false;
+    }
+
+    public void setMessageListener(Runnable messageListener) {
+        this.messageListener = messageListener;
+    }
+
+    public void setReadResumeListener(Runnable readResumeListener) {
+        this.readResumeListener = readResumeListener;
+    }
+
+    /**
+     * @return true while a message queue that the client sends to is over its high watermark, the transport
+     * should not read anything from the client until the read resume listener has been called
+     */
+    public boolean isReadPaused() {
+        var connectedSocket = this.connectedSocket;
+        return connectedSocket != null && connectedSocket.isReadPaused();
+    }
+
+    public UUID getClientId() {
+        return clientId;
+    }
+
+    public boolean isConnected() {
+        return isConnected;
+    }
+
+    public boolean isReady() {
+        return isReady;
+    }
+
+    public WireCodec getWireCodec() {
+        return wireCodec;
+    }
+
+    /**
+     * An object has been read from the client's socket. Until the client has identified itself it is processed
+     * right away, after that it goes through the client's message queue like everything else
+     * @param object the object that was read
+     */
+    public void onObjectRead(Object object) {
+        if(!isValidClientId()) {
+            processObject(object);
+            // the handshake replies are waited for by the client, they don't linger
+            flush();
+        }
+
+        else {
+            // a client that sends faster than its own messages are processed is paused by its own queue
+            this.connectedSocket.addToMessageQueue(object, this.connectedSocket);
+        }
+    }
+
+    /**
+     * Checks if there have been any messages added to the client's message queue, and processes them a batch at a time.
+     * Everything that the messages write to the client goes out with a single flush at the end, or once the write
+     * linger time is up if one is set
+     * @return the time in nanoseconds until the writes that are lingering have to be flushed, 0 if there are none.
+     * The transport has to call checkMessageQueue() again by then
+     */
+    public long checkMessageQueue() {
+        if(isValidClientId()) {
+            var client = this.connectedSocket;
+            synchronized (client.getDrainLock()) {
+                if(this.replayAfter != NOT_RESUMING)
+                    replayMissedObjects();
+                int count;
+                // once the client has resumed on another connection, the queue is that connection's to drain
+                while (client.isAttachedTo(this.threadneedleSocket) && (count = client.drainMessageQueue(this.messageBatch)) > 0) {
+                    for (var i = 0; i < count; i++) {
+                        var object = this.messageBatch[i];
+                        this.messageBatch[i] = null;
+                        processObject(object);
+
+                        if(this.serverData.isDebugEnabled())
+                            debug.connectionThreadCheckMessageQueue(this.clientId, object);
+                    }
+                }
+            }
+        }
+        return flushWrites();
+    }
+
+    /**
+     * Tells the resumed client "SessionResumed:[n]", and sends it the objects from the n-th one on again. Done before
+     * the queue is drained, and while the connection that the client had before can't be draining it anymore, so
+     * the objects go out in the order they did the first time
+     */
+    private synchronized void replayMissedObjects() {
+        var receivedObjects = this.replayAfter;
+        this.replayAfter = NOT_RESUMING;
+        var missedObjects = new ArrayList<>();
+        var firstObject = this.connectedSocket.getReplayBuffer().copyMissed(receivedObjects, missedObjects);
+        if(firstObject > receivedObjects)
+            logger.logReplayGap(this.clientId.toString(), receivedObjects, firstObject);
+
+        writeHandshakeReply(new Messages(Constant.PREFIX_SESSION_RESUMED + firstObject, this.serverData.getServerId()));
+        for (var object : missedObjects) {
+            markUnflushed();
+            this.clientWriter.writeObject(object);
+        }
+        logger.logSessionResumed(this.clientId.toString(), firstObject, missedObjects.size());
+    }
+
+    /**
+     * Flushes the writes once the oldest of them has lingered for the write linger time
+     * @return the time in nanoseconds until they have to be flushed, 0 if they have been or there are none
+     */
+    private synchronized long flushWrites() {
+        if(this.unflushedSinceNanos == NOTHING_UNFLUSHED)
+            return 0;
+        var remainingNanos = this.serverData.getWriteLingerNanos() - (System.nanoTime() - this.unflushedSinceNanos);
+        if(remainingNanos > 0)
+            return remainingNanos;
+        flush();
+        return 0;
+    }
+
+    private synchronized void flush() {
+        if(this.unflushedSinceNanos == NOTHING_UNFLUSHED)
+            return;
+        this.unflushedSinceNanos = NOTHING_UNFLUSHED;
+        this.clientWriter.flush();
+    }
+
+    /**
+     * Checks to see what action needs to be taken with the object that is being passed in
+     * @param object The object that is being passed in
+     */
+    public synchronized void processObject(Object object) {
+        if(this.serverData.isDebugEnabled())
+            debug.connectionThreadProcessObject(this.clientId, object);
+        try {
+            if(object.getClass() == Messages.class)
+                readMessageObject((Messages) object);
+
+            else if(object.getClass() == AccountTransaction.class)
+                processAccountTransaction((AccountTransaction) object);
+
+            else if(object.getClass() == BankInformation.class)
+                handleBankInformationObject((BankInformation) object);
+
+            else if(object.getClass() == TouristTransaction.class)
+                processTouristTransaction((TouristTransaction) object);
+
+            else if(object.getClass() == TransactionBatch.class)
+                processTransactionBatch((TransactionBatch) object);
+
+            else if(object.getClass() == AcknowledgementBatch.class)
+                processAcknowledgementBatch((AcknowledgementBatch) object);
+
+            else if(object.getClass() == NetSettlement.class || object.getClass() == BankInformationDelta.class)
+                writeObject(object);
+
+            else if(object.getClass() == BroadcastFrame.class) {
+                var broadcastFrame = (BroadcastFrame) object;
+                recordWrittenObject(broadcastFrame.getObject());
+                markUnflushed();
+                this.clientWriter.writeFrame(broadcastFrame);
+            }
+
+        } catch (IOException | InvalidKeyException e) {
+            System.err.printf("Overseer::serverConnection() - %s%n", e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    private void writeObject(Object object) {
+        recordWrittenObject(object);
+        markUnflushed();
+        this.clientWriter.writeObject(object);
+    }
+
+    /**
+     * Writes a reply to the client's handshake, which isn't counted among the objects that can be sent again
+     */
+    private void writeHandshakeReply(Object object) {
+        markUnflushed();
+        this.clientWriter.writeObject(object);
+    }
+
+    private void recordWrittenObject(Object object) {
+        var replayBuffer = this.connectedSocket == null ? null : this.connectedSocket.getReplayBuffer();
+        if(replayBuffer != null)
+            replayBuffer.add(object);
+    }
+
+    private void markUnflushed() {
+        if(this.unflushedSinceNanos == NOTHING_UNFLUSHED)
+            this.unflushedSinceNanos = System.nanoTime();
+        this.serverData.getMetrics().recordWrittenObject();
+    }
+
+    private void processTouristTransaction(TouristTransaction touristTransaction) {
+        if(touristTransaction.getClientId().equals(this.clientId)) {
+            if(this.serverData.addPendingTouristTransaction(touristTransaction))
+                writeObject(touristTransaction);
+            else
+                logger.logDuplicateTransaction(this.clientId.toString(), touristTransaction.getTransactionId().toString());
+        }
+        else {
+            var clientSocket = this.serverData.getConnectedSockets().get(touristTransaction.getClientId());
+            if(clientSocket == null)
+                logger.logErrorSocketNotInSocketList(touristTransaction.getClientId().toString());
+            else
+                clientSocket.addToMessageQueue(touristTransaction, this.connectedSocket);
+        }
+    }
+
+    /**
+     * Very trying and fragile function, could need to looking into in the future. But here the BankInformation
+     * object gets updated in the ServerData class, and it gets sent to the connected client. Once everyone is ready,
+     * the clients that acknowledge BankInformation versions get a delta with the changes instead
+     * @param bankInformation The incoming object with the BankInformation data
+     */
+    private void handleBankInformationObject(BankInformation bankInformation) {
+        if(this.serverData.getReadyClients() >= this.serverData.getConnectionLimit()) {
+            this.serverData.addBankInformation(bankInformation);
+            if(!isBankInformationVersioned())
+                writeObject(bankInformation);
+            this.serverData.syncBankInformation();
+        }
+        else
+          this.serverData.addBankInformation(bankInformation);
+    }
+
+    /**
+     * A client opts in to BankInformation deltas by sending "BankInformationVersion:[version]" with the version of
+     * the BankInformation it has, 0 if it has none, and sends it again whenever it has applied a delta. If the
+     * client is behind and the simulation information has gone out, it is sent the changes since its version
+     * @param version the acknowledged version
+     */
+    private void acknowledgeBankInformationVersion(long version) {
+        var client = this.serverData.getConnectedSocketBySlot(this.clientSlot);
+        client.setAcknowledgedBankInformationVersion(version);
+        if(this.serverData.getHasSimulationStarted())
+            this.serverData.syncBankInformation(client);
+    }
+
+    private boolean isBankInformationVersioned() {
+        return this.serverData.getConnectedSocketBySlot(this.clientSlot).getAcknowledgedBankInformationVersion()
+                != ConnectedSocket.NOT_VERSIONED;
+    }
+
+    /**
+     * Incoming PersonTransaction object to the client means that the Threadneedle instance is sending
+     * a pending deposit request, so the transaction is stored to the server and then the object is sent
+     * to the ClientTo. It is only stored by the session of its sender, the receiver's session just writes it out
+     * @param accountTransaction transaction details
+     */
+    private void processAccountTransaction(AccountTransaction accountTransaction) {
+        if(this.serverData.isDebugEnabled())
+            debug.connectionThreadProcessAccountTransaction(this.clientId, accountTransaction);
+
+        // the transfer is settled with the rest of its step, the receiver only ever sees the net result
+        if(this.serverData.isNetSettlementEnabled() && this.clientId.equals(accountTransaction.getClientIdFrom())) {
+            addToNettingLedger(accountTransaction);
+            return;
+        }
+
+        var isSender = this.clientId.equals(accountTransaction.getClientIdFrom());
+        // a transaction that is pending already has been forwarded, e.g. the client has sent it again after resuming
+        if(isSender && !this.serverData.addToPendingTransactions(accountTransaction)) {
+            logger.logDuplicateTransaction(this.clientId.toString(), accountTransaction.getTransactionId().toString());
+            return;
+        }
+
+        // a transfer to the client itself is written out right away instead of going around its message queue again
+        if(this.clientId.equals(accountTransaction.getClientIdTo()))
+            writeObject(accountTransaction);
+        else if(isSender && !addToClientMessageQueueAtStep(accountTransaction.getClientIdTo(),
+                accountTransaction.getStep(), accountTransaction))
+            this.serverData.revertPendingTransaction(accountTransaction.getTransactionId());
+    }
+
+    /**
+     * A batch from the client itself holds its transactions for the step, they are stored as pending and forwarded
+     * to the receiving clients as one batch per receiver. A batch from anyone else is forwarded to the client
+     * @param transactionBatch the transactions
+     */
+    private void processTransactionBatch(TransactionBatch transactionBatch) {
+        if(!this.clientId.equals(transactionBatch.getSender())) {
+            writeObject(transactionBatch);
+            return;
+        }
+
+        if(this.serverData.isNetSettlementEnabled()) {
+            transactionBatch.getTransactions().forEach(this::addToNettingLedger);
+            return;
+        }
+
+        var batchesByClientId = new HashMap<UUID, TransactionBatch>();
+        for (var accountTransaction : transactionBatch.getTransactions()) {
+            if(!this.serverData.addToPendingTransactions(accountTransaction)) {
+                logger.logDuplicateTransaction(this.clientId.toString(), accountTransaction.getTransactionId().toString());
+                continue;
+            }
+            batchesByClientId.computeIfAbsent(accountTransaction.getClientIdTo(),
+                    clientIdTo -> new TransactionBatch(this.serverData.getServerId(), transactionBatch.getStep()))
+                    .addTransaction(accountTransaction);
+        }
+        batchesByClientId.forEach((clientIdTo, batch) -> {
+            if(!addToClientMessageQueueAtStep(clientIdTo, transactionBatch.getStep(), batch))
+                batch.getTransactions().forEach(accountTransaction ->
+                        this.serverData.revertPendingTransaction(accountTransaction.getTransactionId()));
+        });
+    }
+
+    private void addToNettingLedger(AccountTransaction accountTransaction) {
+        this.serverData.addToNettingLedger(accountTransaction, this.serverData.getConnectedSocketStepBySlot(this.clientSlot));
+    }
+
+    /**
+     * Does for a whole batch what readMessageObject() does for a single TransactionDone:, TransactionFailed: or
+     * RevertTransaction: message from the client. The acknowledgements that the senders of the transactions need
+     * are grouped into one batch per sender, with the server's ID as the sender of the batch
+     * @param acknowledgementBatch the acknowledgements
+     */
+    private void processAcknowledgementBatch(AcknowledgementBatch acknowledgementBatch) {
+        if(!this.clientId.equals(acknowledgementBatch.getSender())) {
+            writeObject(acknowledgementBatch);
+            return;
+        }
+
+        // a failed transfer gets reverted by its sender, everything else ends up as done
+        var forwardedType = acknowledgementBatch.getType() == AcknowledgementBatch.TRANSACTION_FAILED
+                ? AcknowledgementBatch.REVERT_TRANSACTION
+                : AcknowledgementBatch.TRANSACTION_DONE;
+        var batchesBySlot = new HashMap<Integer, AcknowledgementBatch>();
+        var revertedTransactionIds = new ArrayList<UUID>();
+        for (var transactionId : acknowledgementBatch.getTransactionIds()) {
+            var senderSlot = forwardedType == AcknowledgementBatch.TRANSACTION_DONE
+                    ? this.serverData.markPendingTransactionSettling(transactionId)
+                    : this.serverData.markPendingTransactionReverting(transactionId);
+            if(senderSlot == ClientRegistry.NO_SLOT) {
+                logger.logUnknownTransaction(this.clientId.toString(), transactionId.toString());
+                continue;
+            }
+            batchesBySlot.computeIfAbsent(senderSlot,
+                    slot -> new AcknowledgementBatch(forwardedType, this.serverData.getServerId()))
+                    .addTransactionId(transactionId);
+
+            if(forwardedType == AcknowledgementBatch.TRANSACTION_DONE)
+                this.serverData.completePendingTransaction(transactionId);
+            else
+                revertedTransactionIds.add(transactionId);
+        }
+        batchesBySlot.forEach(this::addToClientMessageQueue);
+        // the reverts are queued before the transactions are removed, so the senders have them before the step can end
+        revertedTransactionIds.forEach(this.serverData::removeRevertedPendingTransaction);
+    }
+
+    /**
+     * Close the socket and remove it from the serverData's currently connected sockets, unless the client's session
+     * is kept for it to resume
+     */
+    public void closeSocket() throws IOException {
+        flush();
+        this.threadneedleSocket.close();
+        this.serverData.decrementCurrentConnections();
+
+        // the client never got as far as identifying itself, so it was never added to the socket list
+        if(this.clientId == null || !this.isConnectionIdSet)
+            return;
+
+        this.serverData.disconnectSocket(this.clientId, this.threadneedleSocket, !this.isConnected);
+    }
+
+    /**
+     * Takes in a string message and checks what type of command it is and calls the correct function
+     * according to the command type
+     * @param messages the incoming message that is being parsed
+     */
+    private void readMessageObject(Messages messages) throws IOException, InvalidKeyException {
+        if (this.serverData.isDebugEnabled())
+            debug.connectionThreadReadMessageObject(this.clientId, messages);
+
+        var commandReader = this.commandReader.reset(messages.getMessage());
+
+        while (commandReader.next()) {
+            if (!isValidClientId()) {
+                if (commandReader.getCommand() == Command.SET_CLIENT_ID && !isWireProtocolAccepted(messages.getMessage())) {
+                    logger.logWireProtocolRefused(commandReader.getUuidValue().toString());
+                    this.isConnected = false;
+                    return;
+                }
+                this.isConnectionIdSet = checkForConnectionId(commandReader, messages.getMessage());
+                if (this.isConnectionIdSet) {
+                    negotiateWireProtocol(messages.getMessage());
+                    if (this.replayAfter != NOT_RESUMING) {
+                        // the transport drains the queue, which starts with the replay
+                        if (this.messageListener != null)
+                            this.messageListener.run();
+                    }
+                    else {
+                        if (messages.getMessage().contains(Constant.PREFIX_RESUME_SESSION))
+                            writeHandshakeReply(new Messages(Constant.PREFIX_SESSION_RESUMED + NOT_RESUMING,
+                                    this.serverData.getServerId()));
+                        tellClientToRestore();
+                    }
+                    break;
+                }
+                continue;
+            }
+
+            // the commands are matched on their whole prefix, so the order of the cases does not matter
+            switch (commandReader.getCommand()) {
+                case NEXT_STEP:
+                case TAKE_STEP:
+                case ALL_CLIENTS_CONNECTED:
+                case SERVER_ID:
+                case SIMULATION_COMPLETED:
+                    writeObject(messages);
+                    return;
+                case CURRENT_STEP:
+                    setSteps(commandReader.getIntValue());
+                    return;
+                case TRANSACTION_DONE:
+                    // a TransactionDone: from anyone else is on its way to the client that sent the transaction
+                    if (!messages.getSender().equals(this.clientId))
+                        writeObject(messages);
+                    else
+                        settleOwnTransaction(commandReader);
+                    return;
+                case REVERT_TRANSACTION:
+                    // a RevertTransaction: from anyone else tells the client to cancel its withdrawal
+                    if (!messages.getSender().equals(this.clientId))
+                        writeObject(messages);
+                    else
+                        settleOwnTransaction(commandReader);
+                    return;
+                case TOURIST_TRANSACTION_DONE:
+                    var touristTransaction = this.serverData.getAndRemovePendingTouristTransaction(commandReader.getUuidValue());
+                    this.serverData.addCompletedTouristTransaction(touristTransaction);
+                    break;
+                case TRANSACTION_FAILED:
+                    revertIncompleteTransfer(messages.getMessage());
+                    return;
+                case CLIENT_READY:
+                    // a client is only counted once, also when it sends it again after resuming its session
+                    if (!this.connectedSocket.isReady()) {
+                        this.connectedSocket.setReady(true);
+                        this.serverData.incrementReadyClients();
+                    }
+                    this.isReady = true;
+                    break;
+                case BANK_INFORMATION_VERSION:
+                    acknowledgeBankInformationVersion(commandReader.getLongValue());
+                    return;
+                case TERMINATE:
+                    // only the bare word terminates the connection
+                    this.isConnected = !commandReader.isBareCommand();
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * The client is done with the transaction, be it as its receiver or after reverting it as its sender
+     * @param commandReader positioned on the command that holds the transaction ID
+     */
+    private void settleOwnTransaction(CommandReader commandReader) {
+        var transactionId = commandReader.getUuidValue();
+        if (letSenderKnowTransactionIsDone(transactionId))
+            this.serverData.completePendingTransaction(transactionId);
+    }
+
+    /**
+     * @return false if no transaction with the ID is pending, e.g. because it has expired
+     */
+    private boolean letSenderKnowTransactionIsDone(UUID transactionId) {
+        var senderSlot = this.serverData.markPendingTransactionSettling(transactionId);
+        if(senderSlot == ClientRegistry.NO_SLOT) {
+            logger.logUnknownTransaction(this.clientId.toString(), transactionId.toString());
+            return false;
+        }
+        addToClientMessageQueue(senderSlot, new Messages(Constant.PREFIX_TRANSACTION_DONE + transactionId, this.clientId));
+        return true;
+    }
+
+    /**
+     * If a transfer does not go through to its recipient, the sender will be notified to be able to cancel the withdrawal
+     * @param message the TransactionFailed: message, which holds the TransactionId:
+     * @throws InvalidKeyException if no transaction with the given ID is found, the exception is thrown
+     */
+    private void revertIncompleteTransfer(String message) throws InvalidKeyException {
+        var commandReader = this.commandReader.reset(message);
+        if(!commandReader.next(Command.TRANSACTION_ID)) throw new InvalidKeyException("Transaction ID not found");
+        var transactionId = commandReader.getUuidValue();
+
+        // a transaction that has expired has been reverted by the server already
+        var senderSlot = this.serverData.markPendingTransactionReverting(transactionId);
+        if(senderSlot == ClientRegistry.NO_SLOT) {
+            logger.logUnknownTransaction(this.clientId.toString(), transactionId.toString());
+            return;
+        }
+        addToClientMessageQueue(senderSlot, new Messages(
+                Constant.PREFIX_REVERT_TRANSACTION + transactionId, this.clientId
+        ));
+        // the revert is queued before the transaction is removed, so the sender has it before the step can end
+        this.serverData.removeRevertedPendingTransaction(transactionId);
+    }
+
+    /**
+     * This functions sends objects to another client based on the slot that is passed in
+     * @param slot the slot in the ClientRegistry of the client queue that it will be added to
+     * @param object the object being added
+     */
+    private synchronized void addToClientMessageQueue(int slot, Object object) {
+        // the client may have left in the meantime
+        var clientSocket = this.serverData.getClientRegistry().findConnectedSocket(slot);
+        if(clientSocket != null)
+            clientSocket.addToMessageQueue(object, this.connectedSocket);
+    }
+
+    /**
+     * In the bounded lag stepping mode a client can be ahead of the client it is sending to. The transaction is then
+     * held back until the receiving client has been told to take the transaction's step, so every client gets its
+     * transactions in step order
+     * @param clientId the receiving client
+     * @param step the step of the transaction
+     * @param object the transaction
+     * @return false if the receiving client has left the simulation
+     */
+    private boolean addToClientMessageQueueAtStep(UUID clientId, Integer step, Object object) {
+        var clientSocket = this.serverData.getConnectedSockets().get(clientId);
+        if(clientSocket == null)
+            return false;
+        if(this.serverData.isBoundedLagEnabled() && step != null)
+            clientSocket.addToMessageQueueAtStep(step, object, this.connectedSocket);
+        else
+            clientSocket.addToMessageQueue(object, this.connectedSocket);
+        return true;
+    }
+
+    private boolean isValidClientId() {
+        return this.isConnectionIdSet && this.clientId != null;
+    }
+
+    /**
+     * Validate that the server's current step matches the client's current step
+     * @param completedStep
+     * @return true of step is valid, false if not
+     */
+    private boolean validateSteps(Integer completedStep) {
+        // clients don't step together in the bounded lag stepping mode, each one reports the step it was told to take
+        if(this.serverData.isBoundedLagEnabled()) {
+            var client = this.serverData.getConnectedSocketBySlot(this.clientSlot);
+            return completedStep == client.getGrantedStep() && client.getCurrentStep() < completedStep;
+        }
+
+        return  this.serverData.getConnectedSocketStepBySlot(this.clientSlot) == this.serverData.getCurrentStep() ||
+                completedStep == this.serverData.getCurrentStep();
+    }
+
+    /**
+     * Validate the step that the client reports as completed
+     * @param completedStep
+     */
+    private void setSteps(int completedStep)  {
+        // a client that hasn't been admitted yet doesn't take part in the steps
+        if (this.connectedSocket.isMember() && validateSteps(completedStep))
+            this.serverData.incrementStepOfConnectedSocketBySlot(this.clientSlot);
+        else
+            logger.logStepMismatchError(completedStep, this.serverData.getCurrentStep(), this.clientId.toString());
+    }
+
+    /**
+     * This sets the ClientID of the socket that the Threadneedle program is connected to. A client that has lost its
+     * connection sends "ResumeSession:[received]" along with it, e.g. "SetClientID:[id];ResumeSession:42", with the
+     * amount of objects that it has received from the Overseer, not counting the handshake replies. If its session
+     * is still kept, the client picks up where it left off: it is told "SessionResumed:[n]" and is sent the objects
+     * from the n-th one on again, followed by everything that was queued for it in the meantime.
+     * Otherwise the reply is "SessionResumed:-1" and the client joins like a new one
+     * @param commandReader at the command to check
+     * @param message the handshake message
+     * @return true if the command was SetClientID:
+     */
+    private boolean checkForConnectionId(CommandReader commandReader, String message) {
+        if (commandReader.getCommand() == Command.SET_CLIENT_ID) {
+            setClientId(commandReader.getUuidValue());
+            var receivedObjects = getReceivedObjects(message);
+            // set before the session is taken over, so the replay comes before anything that is drained from the queue
+            this.replayAfter = receivedObjects;
+            this.connectedSocket = receivedObjects == NOT_RESUMING
+                    ? null : this.serverData.resumeConnectedSocket(this.threadneedleSocket, this.clientId);
+            if (this.connectedSocket == null) {
+                this.replayAfter = NOT_RESUMING;
+                this.clientSlot = this.serverData.addConnectedSocket(this.threadneedleSocket, this.clientId);
+                this.connectedSocket = this.serverData.getConnectedSocketBySlot(this.clientSlot);
+            }
+            else {
+                this.clientSlot = this.connectedSocket.getSlot();
+                this.isReady = this.connectedSocket.isReady();
+            }
+            if(this.messageListener != null)
+                this.connectedSocket.setMessageListener(this.messageListener);
+            if(this.readResumeListener != null)
+                this.connectedSocket.setReadResumeListener(this.readResumeListener);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return what the client sent with ResumeSession:, NOT_RESUMING if it didn't
+     */
+    private long getReceivedObjects(String message) {
+        if (!message.contains(Constant.PREFIX_RESUME_SESSION))
+            return NOT_RESUMING;
+        var commandReader = new CommandReader().reset(message);
+        return commandReader.next(Command.RESUME_SESSION) ? Math.max(0, commandReader.getLongValue()) : NOT_RESUMING;
+    }
+
+    /**
+     * A client that wants the binary protocol sends "WireProtocol:[version]" along with its SetClientID,
+     * e.g. "SetClientID:[id];WireProtocol:1", and then waits for the Overseer's "WireProtocol:" reply before
+     * sending anything else. The reply still goes out as Java serialization and holds the version that will be used
+     * from then on in both directions, 0 meaning that the client has to stick with Java serialization.
+     * Clients that don't ask never get a reply and keep using Java serialization.
+     * @param message the handshake message
+     */
+    private void negotiateWireProtocol(String message) {
+        var commandReader = this.commandReader.reset(message);
+        if (!commandReader.next(Command.WIRE_PROTOCOL))
+            return;
+
+        var isBinarySupported = commandReader.isValue(String.valueOf(BinaryCodec.VERSION));
+        writeHandshakeReply(new Messages(Constant.PREFIX_WIRE_PROTOCOL + (isBinarySupported ? BinaryCodec.VERSION : 0),
+                this.serverData.getServerId()));
+        if (isBinarySupported)
+            this.wireCodec = new BinaryCodec();
+        logger.logWireProtocol(this.clientId.toString(), this.wireCodec.getName());
+    }
+
+    /**
+     * Java serialization has no length prefix, so a frame can only be told apart from a partial one by deserializing
+     * it, again from the start every time more of it has been read. The nio connection mode does that on the selector
+     * loops that all of its clients share, so it only takes on clients that ask for the binary protocol
+     * @param message the handshake message
+     * @return false if the client has to be refused
+     */
+    private boolean isWireProtocolAccepted(String message) {
+        if (this.serverData.getConnectionMode() != ConnectionMode.NIO)
+            return true;
+        var commandReader = new CommandReader().reset(message);
+        return commandReader.next(Command.WIRE_PROTOCOL) && commandReader.isValue(String.valueOf(BinaryCodec.VERSION));
+    }
+
+    /**
+     * When the Overseer has been restored from a checkpoint, a rejoining client is told which step to pick up at
+     * with "RestoreStep:[step]", right after the handshake. The client counts as being at that step, and the next
+     * NextStep: it gets is the one after it
+     */
+    private void tellClientToRestore() {
+        if(!this.serverData.isRestored())
+            return;
+        if(!this.serverData.isRestoredClient(this.clientId))
+            logger.logUnknownRestoredClient(this.clientId.toString());
+        writeHandshakeReply(new Messages(Constant.PREFIX_RESTORE_STEP + this.serverData.getRestoredStep(),
+                this.serverData.getServerId()));
+    }
+
+    private void setClientId(UUID clientId) {
+        this.clientId = clientId;
+        logger.logClientIdSet(this.clientId.toString());
+    }
+}
@@ -0,0 +1,27 @@
+package overseer;
+
+/**
+ * Whatever sits between a ClientSession and the Threadneedle client's socket. The writes are buffered until flush()
+ * is called, which the ClientSession does once per drain of the client's message queue, so all the objects of a
+ * drain go out together instead of as one small TCP segment each.
+ */
+public interface ClientWriter {
+
+    /**
+     * Sends the object to the Threadneedle client that the writer belongs to
+     * @param object the object being sent
+     */
+    void writeObject(Object object);
+
+    /**
+     * Sends the shared bytes of a broadcast to the Threadneedle client, and releases the writer's reference to the
+     * frame once they have been written
+     * @param broadcastFrame the frame, already retained for this client
+     */
+    void writeFrame(BroadcastFrame broadcastFrame);
+
+    /**
+     * Sends everything that has been written since the last flush to the Threadneedle client
+     */
+    void flush();
+}
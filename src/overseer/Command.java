@@ -0,0 +1,71 @@
+package overseer;
+
+import java.util.Arrays;
+
+/**
+ * The textual commands that go back and forth in Messages, e.g. "CurrentStep:4" or "TransactionDone:[id]".
+ * The opcode of a command is its position in the opcode table, which is what CommandReader finds a command by
+ */
+public enum Command {
+    SET_CLIENT_ID(Constant.PREFIX_SET_CLIENT_ID),
+    WIRE_PROTOCOL(Constant.PREFIX_WIRE_PROTOCOL),
+    RESUME_SESSION(Constant.PREFIX_RESUME_SESSION),
+    NEXT_STEP(Constant.PREFIX_NEXT_STEP),
+    TAKE_STEP(Constant.PREFIX_TAKE_STEP),
+    CURRENT_STEP(Constant.PREFIX_CURRENT_STEP),
+    RESTORE_STEP(Constant.PREFIX_RESTORE_STEP),
+    SERVER_ID(Constant.PREFIX_SERVER_ID),
+    RECEIVED_CLIENT_ID(Constant.PREFIX_RECEIVED_CLIENT_ID),
+    TRANSACTION_ID(Constant.PREFIX_TRANSACTION_ID),
+    TRANSACTION_DONE(Constant.PREFIX_TRANSACTION_DONE),
+    TOURIST_TRANSACTION_DONE(Constant.PREFIX_TOURIST_TRANSACTION_DONE),
+    TRANSACTION_FAILED(Constant.PREFIX_TRANSACTION_FAILED),
+    REVERT_TRANSACTION(Constant.PREFIX_REVERT_TRANSACTION),
+    CLIENT_READY(Constant.PREFIX_CLIENT_READY),
+    BANK_INFORMATION_VERSION(Constant.PREFIX_BANK_INFORMATION_VERSION),
+    ALL_CLIENTS_CONNECTED(Constant.COMMAND_ALL_CLIENTS_CONNECTED),
+    SIMULATION_COMPLETED(Constant.COMMAND_SIMULATION_COMPLETED),
+    TERMINATE(Constant.TERMINATE_CONNECTION),
+    UNKNOWN("");
+
+    // the commands by the first character of their prefix, all prefixes are ASCII
+    private static final Command[][] OPCODE_TABLE = buildOpcodeTable();
+
+    private final String prefix;
+
+    Command(String prefix) {
+        this.prefix = prefix;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * Finds the command that the word from start to end starts with
+     * @return the command, UNKNOWN if the word does not start with any of the prefixes
+     */
+    static Command find(String message, int start, int end) {
+        if (start == end)
+            return UNKNOWN;
+        var first = message.charAt(start);
+        if (first >= OPCODE_TABLE.length)
+            return UNKNOWN;
+        for (var command : OPCODE_TABLE[first]) {
+            if (command.prefix.length() <= end - start && message.startsWith(command.prefix, start))
+                return command;
+        }
+        return UNKNOWN;
+    }
+
+    private static Command[][] buildOpcodeTable() {
+        var table = new Command[128][];
+        for (var first = 0; first < table.length; first++) {
+            var c = (char) first;
+            table[first] = Arrays.stream(values())
+                    .filter(command -> !command.prefix.isEmpty() && command.prefix.charAt(0) == c)
+                    .toArray(Command[]::new);
+        }
+        return table;
+    }
+}
@@ -0,0 +1,159 @@
+package overseer;
+
+import java.util.UUID;
+
+/**
+ * Reads the commands of a textual message, "Command:value;Command:value", one at a time in a single pass over the
+ * string. Nothing is split or copied: the reader only keeps track of where the current command's value starts and
+ * ends, and steps and IDs are parsed straight out of the message. A reader is reused for every message of a client.
+ */
+public class CommandReader {
+    private static final char SPLITTER = ';';
+    private static final byte[] HEX_DIGITS = buildHexDigits(); // the value of each ASCII hex digit, -1 for the rest
+
+    private String message = "";
+    private int position = 0;         // where the next command starts
+    private Command command = Command.UNKNOWN;
+    private int wordStart = 0;
+    private int valueStart = 0;
+    private int valueEnd = 0;
+
+    /**
+     * Starts reading a new message from its first command
+     */
+    public CommandReader reset(String message) {
+        this.message = message;
+        this.position = 0;
+        this.command = Command.UNKNOWN;
+        return this;
+    }
+
+    /**
+     * Moves on to the next command of the message
+     * @return false if there are no more commands
+     */
+    public boolean next() {
+        if (this.position > this.message.length())
+            return false;
+        var end = this.message.indexOf(SPLITTER, this.position);
+        if (end < 0)
+            end = this.message.length();
+        // "a;" has one command, just like String.split() would have it
+        if (end == this.message.length() && this.position == end && end > 0)
+            return false;
+
+        this.wordStart = this.position;
+        this.valueEnd = end;
+        this.command = Command.find(this.message, this.wordStart, end);
+        this.valueStart = this.wordStart + this.command.getPrefix().length();
+        this.position = end + 1;
+        return true;
+    }
+
+    /**
+     * Moves on to the next command of the given type
+     * @return false if the rest of the message has no such command
+     */
+    public boolean next(Command command) {
+        while (next()) {
+            if (this.command == command)
+                return true;
+        }
+        return false;
+    }
+
+    public Command getCommand() {
+        return command;
+    }
+
+    /**
+     * @return true if the current command is the whole word, e.g. "terminate"
+     */
+    public boolean isBareCommand() {
+        return this.valueStart == this.valueEnd;
+    }
+
+    /**
+     * @return the value of the current command as a string, the only method that copies out of the message
+     */
+    public String getValue() {
+        return this.message.substring(this.valueStart, this.valueEnd);
+    }
+
+    /**
+     * @return true if the value of the current command is exactly the given text
+     */
+    public boolean isValue(String text) {
+        return text.length() == this.valueEnd - this.valueStart && this.message.startsWith(text, this.valueStart);
+    }
+
+    /**
+     * @throws NumberFormatException if the value is not a whole number
+     */
+    public int getIntValue() {
+        var value = parseLong(this.valueStart, this.valueEnd);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE)
+            throw new NumberFormatException(String.format("Number out of range: %s", getValue()));
+        return (int) value;
+    }
+
+    /**
+     * @throws NumberFormatException if the value is not a whole number
+     */
+    public long getLongValue() {
+        return parseLong(this.valueStart, this.valueEnd);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the value is not a UUID in its canonical 8-4-4-4-12 form
+     */
+    public UUID getUuidValue() {
+        var start = this.valueStart;
+        if (this.valueEnd - start != 36 || this.message.charAt(start + 8) != '-' || this.message.charAt(start + 13) != '-' ||
+                this.message.charAt(start + 18) != '-' || this.message.charAt(start + 23) != '-')
+            throw new IllegalArgumentException(String.format("Invalid UUID: %s", getValue()));
+
+        var mostSignificantBits = parseHex(start, start + 8);
+        mostSignificantBits = (mostSignificantBits << 16) | parseHex(start + 9, start + 13);
+        mostSignificantBits = (mostSignificantBits << 16) | parseHex(start + 14, start + 18);
+        var leastSignificantBits = parseHex(start + 19, start + 23);
+        leastSignificantBits = (leastSignificantBits << 48) | parseHex(start + 24, start + 36);
+        return new UUID(mostSignificantBits, leastSignificantBits);
+    }
+
+    private long parseLong(int start, int end) {
+        if (start == end)
+            throw new NumberFormatException(String.format("No number in: %s", this.message));
+        var isNegative = this.message.charAt(start) == '-';
+        var i = isNegative ? start + 1 : start;
+        if (i == end || end - i > 18)
+            throw new NumberFormatException(String.format("Invalid number: %s", this.message.substring(start, end)));
+        var value = 0L;
+        for (; i < end; i++) {
+            var digit = this.message.charAt(i) - '0';
+            if (digit < 0 || digit > 9)
+                throw new NumberFormatException(String.format("Invalid number: %s", this.message.substring(start, end)));
+            value = value * 10 + digit;
+        }
+        return isNegative ? -value : value;
+    }
+
+    private long parseHex(int start, int end) {
+        var value = 0L;
+        for (var i = start; i < end; i++) {
+            var c = this.message.charAt(i);
+            var digit = c < HEX_DIGITS.length ? HEX_DIGITS[c] : -1;
+            if (digit < 0)
+                throw new IllegalArgumentException(String.format("Invalid UUID: %s", getValue()));
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    private static byte[] buildHexDigits() {
+        var digits = new byte[128];
+        for (var c = 0; c < digits.length; c++)
+            digits[c] = (byte) Character.digit(c, 16);
+        return digits;
+    }
+}
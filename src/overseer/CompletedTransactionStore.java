@@ -0,0 +1,29 @@
+package overseer;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Where the ServerData keeps the transactions that have finished. By default they stay on the heap,
+ * with a ledger path set they go to a memory-mapped file instead
+ */
+public interface CompletedTransactionStore {
+    void addAccountTransaction(AccountTransaction accountTransaction);
+
+    /**
+     * @return the transaction, null if no completed transaction has the ID
+     */
+    AccountTransaction getAccountTransaction(UUID transactionId);
+
+    void addTouristTransaction(TouristTransaction touristTransaction);
+
+    /**
+     * @return the transaction, null if no completed tourist transaction has the ID
+     */
+    TouristTransaction getTouristTransaction(UUID transactionId);
+
+    /**
+     * Makes sure that everything that has been added is written out
+     */
+    void close() throws IOException;
+}
@@ -1,60 +1,317 @@
 package overseer;
 
 import java.net.Socket;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Stores all the essential information for the connected client.
  * The usage of the class is in ServerData, where it is stored in a HashMap<ClientID, ConnectionThread>
+ * and in the ClientRegistry under the client's slot. The client's step is kept in the registry's step array.
+ *
+ * The message queue is a bounded MessageRing. Once more than the high watermark of messages are waiting in it, the
+ * clients that keep adding to it have their reads paused, until the client has worked the queue down to the low
+ * watermark. A client that floods another one is slowed down to the speed of the receiver by TCP's own flow control,
+ * instead of the Overseer's heap taking up the difference.
+ *
+ * A client that loses its connection mid-simulation can be detached instead of removed. Its queue keeps filling up
+ * while nobody drains it, without pausing anyone, until the client resumes the session on a new socket.
  */
 public class ConnectedSocket {
+    public static final long NOT_VERSIONED = -1;
+
     private final UUID clientId;
+    private final int slot;
+    private final ClientRegistry clientRegistry;
 
-    private final Socket threadneedleSocket;
-    private final AtomicInteger currentStep;
-    private final ConcurrentLinkedQueue<Object> messageQueue = new ConcurrentLinkedQueue<>();
+    // replaced when the client resumes its session on a new connection
+    private volatile Socket threadneedleSocket;
+    private final MessageRing messageQueue;
+    // only one ClientSession drains the queue at a time, the one of a connection that is taken over stops at its next batch
+    private final Object drainLock = new Object();
+    // the objects that have been written to the client, null if sessions can't be resumed
+    private final ReplayBuffer replayBuffer;
+    // counted on the side for the watermarks and the metrics, the ring itself only knows its consumer's position
+    private final AtomicInteger messageQueueDepth = new AtomicInteger(0);
+    private final int highWatermark;
+    private final int lowWatermark;
+    // the clients whose reads are paused until this client's message queue is down to the low watermark
+    private final Set<ConnectedSocket> throttledSenders = ConcurrentHashMap.newKeySet();
+    // how many message queues have paused the reads of this client, it may read while this is 0
+    private final AtomicInteger readPauses = new AtomicInteger(0);
+    // lets the transport of the client know that it may read again
+    private volatile Runnable readResumeListener = null;
+    private volatile boolean isClosed = false;
+    // the client has sent its ClientReady:, which a resumed session doesn't have to do again
+    private volatile boolean isReady = false;
+    // the client takes part in the steps, clients are admitted by the Server at a step boundary
+    private volatile boolean isMember = false;
+    // when the client lost its connection, 0 while it is connected
+    private volatile long detachedNanos = 0;
+    // lets the transport of the client know that the message queue has something in it
+    private volatile Runnable messageListener = null;
+    // bounded lag stepping mode: transactions from clients that are ahead, held back until this client gets to their step
+    private final PriorityQueue<DeferredMessage> deferredMessages = new PriorityQueue<>(
+            Comparator.comparingInt((DeferredMessage deferredMessage) -> deferredMessage.step)
+                    .thenComparingLong(deferredMessage -> deferredMessage.sequence));
+    private long deferredSequence = 0;
+    // the BankInformation version that the client has acknowledged, NOT_VERSIONED if it wants the whole BankInformation
+    private volatile long acknowledgedBankInformationVersion = NOT_VERSIONED;
+    // the version of the last BankInformationDelta that the client has been sent
+    private volatile long sentBankInformationVersion = NOT_VERSIONED;
 
-    ConnectedSocket(Socket threadneedleSocket, UUID clientId, Integer currentStep) {
+    ConnectedSocket(Socket threadneedleSocket, UUID clientId, int slot, ClientRegistry clientRegistry, Integer currentStep,
+                    int highWatermark, int lowWatermark, int replayBufferSize) {
         this.threadneedleSocket = threadneedleSocket;
-        this.currentStep = new AtomicInteger(currentStep);
+        this.replayBuffer = replayBufferSize > 0 ? new ReplayBuffer(replayBufferSize) : null;
+        // room for twice the high watermark, so the messages that are already on their way fit in after the senders are paused
+        this.messageQueue = new MessageRing(highWatermark * 2);
+        this.highWatermark = highWatermark;
+        this.lowWatermark = lowWatermark;
         this.clientId = clientId;
+        this.slot = slot;
+        this.clientRegistry = clientRegistry;
+        this.clientRegistry.setStep(slot, currentStep);
+        this.clientRegistry.setGrantedStep(slot, currentStep);
     }
 
     public Socket getThreadneedleSocket() {
         return threadneedleSocket;
     }
 
+    public boolean isAttachedTo(Socket threadneedleSocket) {
+        return this.threadneedleSocket == threadneedleSocket && this.detachedNanos == 0;
+    }
+
+    public Object getDrainLock() {
+        return drainLock;
+    }
+
+    public ReplayBuffer getReplayBuffer() {
+        return replayBuffer;
+    }
+
+    public boolean isReady() {
+        return isReady;
+    }
+
+    public void setReady(boolean value) {
+        this.isReady = value;
+    }
+
+    public boolean isMember() {
+        return isMember;
+    }
+
+    public void setMember(boolean value) {
+        this.isMember = value;
+    }
+
+    public boolean isDetached() {
+        return this.detachedNanos != 0;
+    }
+
+    public long getDetachedNanos() {
+        return detachedNanos;
+    }
+
+    /**
+     * The client has lost its connection but may come back, the messages for it are kept in the queue until then.
+     * The queue doesn't pause anyone in the meantime
+     */
+    public void detach() {
+        this.detachedNanos = System.nanoTime();
+        this.messageListener = null;
+        this.readResumeListener = null;
+        close();
+    }
+
+    /**
+     * The client has resumed its session on a new connection
+     * @return the socket of the connection that the client had before
+     */
+    public Socket attach(Socket threadneedleSocket) {
+        var previousSocket = this.threadneedleSocket;
+        this.threadneedleSocket = threadneedleSocket;
+        this.detachedNanos = 0;
+        this.isClosed = false;
+        return previousSocket;
+    }
+
     public int getCurrentStep() {
-        return currentStep.get();
+        return this.clientRegistry.getStep(this.slot);
     }
 
-    public void incrementCurrentStep() {
-        this.currentStep.incrementAndGet();
+    public int incrementCurrentStep() {
+        return this.clientRegistry.incrementStep(this.slot);
+    }
+
+    public long getGrantedNanos() {
+        return this.clientRegistry.getGrantedNanos(this.slot);
+    }
+
+    public int getGrantedStep() {
+        return this.clientRegistry.getGrantedStep(this.slot);
+    }
+
+    /**
+     * Tells the client to take the step, and releases the messages that were waiting for it to get there
+     * @param step the step that the client may take
+     * @param nextStepMessage the NextStep: message for the step
+     */
+    public void grantStep(int step, Messages nextStepMessage) {
+        synchronized (this.deferredMessages) {
+            this.clientRegistry.setGrantedStep(this.slot, step);
+            this.clientRegistry.setGrantedNanos(this.slot, System.nanoTime());
+            addToMessageQueue(nextStepMessage);
+            while (!this.deferredMessages.isEmpty() && this.deferredMessages.peek().step <= step)
+                addToMessageQueue(this.deferredMessages.poll().message);
+        }
+    }
+
+    /**
+     * Adds the message to the message queue once the client has been told to take the step, right away if it
+     * already has. Messages for the same step keep the order they came in
+     * @param step the step of the message
+     * @param object the message
+     * @param sender the client that the message came from, only paused if the message goes in right away
+     */
+    public void addToMessageQueueAtStep(int step, Object object, ConnectedSocket sender) {
+        synchronized (this.deferredMessages) {
+            if (step <= getGrantedStep())
+                addToMessageQueue(object, sender);
+            else
+                this.deferredMessages.add(new DeferredMessage(step, this.deferredSequence++, object));
+        }
+    }
+
+    public long getAcknowledgedBankInformationVersion() {
+        return acknowledgedBankInformationVersion;
+    }
+
+    public void setAcknowledgedBankInformationVersion(long version) {
+        this.acknowledgedBankInformationVersion = version;
+    }
+
+    public long getSentBankInformationVersion() {
+        return sentBankInformationVersion;
+    }
+
+    public void setSentBankInformationVersion(long version) {
+        this.sentBankInformationVersion = version;
+    }
+
+    public int getSlot() {
+        return slot;
     }
 
     public UUID getClientId() {
         return clientId;
     }
 
+    /**
+     * Adds a message that comes from the Server, which is never paused
+     */
     public void addToMessageQueue(Object object) {
-        messageQueue.add(object);
+        addToMessageQueue(object, null);
+    }
+
+    /**
+     * Adds the message, and pauses the reads of the sending client if the queue is over its high watermark
+     * @param object the message
+     * @param sender the client that the message came from, null if it came from the Server
+     */
+    public void addToMessageQueue(Object object, ConnectedSocket sender) {
+        this.messageQueue.offer(object);
+        var depth = this.messageQueueDepth.incrementAndGet();
+        if(sender != null && depth > this.highWatermark)
+            throttle(sender);
+        var listener = this.messageListener;
+        if(listener != null)
+            listener.run();
+    }
+
+    private void throttle(ConnectedSocket sender) {
+        if(this.isClosed || !this.throttledSenders.add(sender))
+            return;
+        sender.pauseReads();
+        // the queue may have been drained in the meantime, without the consumer seeing the sender
+        if(this.messageQueueDepth.get() <= this.lowWatermark || this.isClosed)
+            releaseThrottledSenders();
     }
 
-    public Object getFromMessageQueue() {
-        return messageQueue.peek();
+    private void releaseThrottledSenders() {
+        for (var sender : this.throttledSenders) {
+            if(this.throttledSenders.remove(sender))
+                sender.resumeReads();
+        }
     }
 
-    public void removeFromMessageQueue(Object object) {
-        messageQueue.remove(object);
+    /**
+     * Takes the next batch of messages out of the queue, only called by the client's own transport
+     * @param batch filled from the start with the messages
+     * @return the amount of messages in the batch, 0 if the queue is empty
+     */
+    public int drainMessageQueue(Object[] batch) {
+        var count = this.messageQueue.drainTo(batch);
+        if(count > 0 && this.messageQueueDepth.addAndGet(-count) <= this.lowWatermark && !this.throttledSenders.isEmpty())
+            releaseThrottledSenders();
+        return count;
     }
 
-    public ConcurrentLinkedQueue<Object> getMessageQueue() {
-        return messageQueue;
+    public void setMessageListener(Runnable messageListener) {
+        this.messageListener = messageListener;
+    }
+
+    public void setReadResumeListener(Runnable readResumeListener) {
+        this.readResumeListener = readResumeListener;
+    }
+
+    public void pauseReads() {
+        this.readPauses.incrementAndGet();
+    }
+
+    public void resumeReads() {
+        if(this.readPauses.decrementAndGet() == 0) {
+            var listener = this.readResumeListener;
+            if(listener != null)
+                listener.run();
+        }
+    }
+
+    public boolean isReadPaused() {
+        return this.readPauses.get() > 0;
+    }
+
+    /**
+     * The client has gone, nobody is going to drain the queue anymore so the clients that were paused by it carry on
+     */
+    public void close() {
+        this.isClosed = true;
+        releaseThrottledSenders();
+    }
+
+    public int getMessageQueueDepth() {
+        return messageQueueDepth.get();
     }
 
     public boolean isMessageQueueEmpty() {
-        return messageQueue.isEmpty();
+        return messageQueueDepth.get() == 0;
+    }
+
+    private static class DeferredMessage {
+        private final int step;
+        private final long sequence;
+        private final Object message;
+
+        DeferredMessage(int step, long sequence, Object message) {
+            this.step = step;
+            this.sequence = sequence;
+            this.message = message;
+        }
     }
 }
@@ -0,0 +1,35 @@
+package overseer;
+
+/**
+ * How the Overseer moves bytes between itself and the Threadneedle clients. THREAD is the original
+ * ConnectionThread per client, NIO runs all clients on a small fixed set of selector loops and VIRTUAL gives every
+ * client a blocking reader and a message queue consumer on virtual threads.
+ */
+public enum ConnectionMode {
+    THREAD("thread"),
+    NIO("nio"),
+    VIRTUAL("virtual");
+
+    private final String argument;
+
+    ConnectionMode(String argument) {
+        this.argument = argument;
+    }
+
+    public String getArgument() {
+        return argument;
+    }
+
+    /**
+     * @param argument the value passed in with the connection mode program argument
+     * @return the matching connection mode
+     * @throws IllegalArgumentException if no mode matches the argument
+     */
+    public static ConnectionMode fromArgument(String argument) {
+        for (var mode : values()) {
+            if (mode.argument.equalsIgnoreCase(argument))
+                return mode;
+        }
+        throw new IllegalArgumentException(String.format("Unknown connection mode: %s", argument));
+    }
+}
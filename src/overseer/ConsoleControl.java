@@ -0,0 +1,35 @@
+package overseer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+/**
+ * Reads the RunControl commands from the console on a thread of its own, so the Server's step loop never waits for
+ * someone to type something in. A plain number adds that many steps, like it always has. When the console is closed,
+ * e.g. when the Overseer runs in the background, the thread just ends and the run has to be driven through the
+ * -steps argument or the ControlEndpoint.
+ */
+public class ConsoleControl extends Thread {
+    private final RunControl runControl;
+
+    ConsoleControl(RunControl runControl) {
+        super("Overseer-Console");
+        this.runControl = runControl;
+        setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+        try {
+            var reader = new BufferedReader(new InputStreamReader(System.in));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank())
+                    System.out.println(this.runControl.execute(line));
+            }
+        } catch (IOException e) {
+            // nothing more can be read from the console, which is all this thread is for
+        }
+    }
+}
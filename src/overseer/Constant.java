@@ -3,8 +3,31 @@ package overseer;
 public class Constant {
     // Program arguments
     static final String ARG_CONNECTION_NUMBER = "-c";
+    static final String ARG_MAX_CLIENTS = "-maxclients"; // clients that may be connected at once, -c of them start the simulation
+    static final String ARG_RESUME_TIMEOUT = "-resumetimeout"; // seconds that the session of a disconnected client is kept for it
+    static final String ARG_REPLAY_BUFFER = "-replay"; // objects per client that are kept to be sent again when it resumes
     static final String ARG_PORT_NUMBER = "-p";
     static final String ARG_DEBUG = "-d";
+    static final String ARG_CONNECTION_MODE = "-m";   // thread (default), nio or virtual
+    static final String ARG_IO_THREADS = "-io";       // amount of selector loops in the nio connection mode
+    static final String ARG_STEPS = "-steps";         // steps to take right away, without asking on the console
+    static final String ARG_CONTROL_PORT = "-control"; // port of the control endpoint on localhost, off by default
+    static final String ARG_QUEUE_HIGH_WATERMARK = "-queuehigh"; // message queue depth at which the clients sending to it are paused
+    static final String ARG_QUEUE_LOW_WATERMARK = "-queuelow";   // message queue depth at which they may carry on
+    static final String ARG_HANDSHAKE_TIMEOUT = "-handshaketimeout"; // seconds a new connection has to send its ClientReady:
+    static final String ARG_TRANSACTION_TIMEOUT = "-transactiontimeout"; // seconds a transaction may be pending before it is reverted
+    static final String ARG_WRITE_LINGER = "-linger"; // microseconds that writes to a client may wait to be flushed together
+    static final String ARG_LAG_WINDOW = "-l";        // how many steps a client may run ahead of the slowest one
+    static final String ARG_NET_SETTLEMENT = "-n";    // net the transfers of each step instead of settling them one by one
+    static final String ARG_LEDGER_PATH = "-ledger";  // file that the completed transactions are memory-mapped to
+    static final String ARG_WAL_DIRECTORY = "-wal";   // directory of the write-ahead log and the checkpoints
+    static final String ARG_CHECKPOINT_INTERVAL = "-checkpoint"; // steps between checkpoints
+    static final String ARG_RESTORE = "-restore";     // restore the simulation from the last checkpoint in the -wal directory
+    static final String ARG_LOG_FILE = "-logfile";    // file that the log is written to as well as the console
+    static final String ARG_LOG_FILE_SIZE = "-logsize"; // size in MB at which the log file is rolled over
+    static final String ARG_LOG_POLICY = "-logpolicy"; // block (default) or drop log lines when the log buffer is full
+    static final String ARG_METRICS_FILE = "-metrics"; // file that the metrics are dumped to every -metricsinterval seconds
+    static final String ARG_METRICS_INTERVAL = "-metricsinterval";
     // log related
     static final String ERROR_STEP_MISMATCH = "Step mismatch";
     static final String EXCEPTION_THROWN = "Exception";
@@ -25,6 +48,13 @@ public class Constant {
     // Send this msg + Client ID to Overseer when the client is ready
     public static final String PREFIX_CLIENT_READY = "ClientReady:";     // sent when client has loaded all their configs & settings
     public static final String PREFIX_TAKE_STEP = "TakeStep:";     // sent when client has loaded all their configs & settings
+    public static final String PREFIX_RESTORE_STEP = "RestoreStep:"; // the checkpointed step that a rejoining client picks up at
+    public static final String PREFIX_BANK_INFORMATION_VERSION = "BankInformationVersion:"; // the BankInformation version a client has, opts in to deltas
+    public static final String PREFIX_WIRE_PROTOCOL = "WireProtocol:"; // binary protocol version, negotiated along with SetClientID
+    public static final String PREFIX_RESUME_SESSION = "ResumeSession:"; // sent along with SetClientID by a reconnecting client, how many objects it received
+    public static final String PREFIX_SESSION_RESUMED = "SessionResumed:"; // the number of the first object that is sent again, -1 if there was no session
+    public static final String PREFIX_CLIENT_JOINED = "ClientJoined:"; // a client has joined the simulation at a step boundary
+    public static final String PREFIX_CLIENT_LEFT = "ClientLeft:";     // a client has left the simulation
     // Command related
     public static final String COMMAND_ALL_CLIENTS_CONNECTED = "all_clients_connected:"; //sent from Overseer, to clients that all clients have connected
     public static final String COMMAND_SIMULATION_COMPLETED = "simulation_completed";   // sent from Overseer, to client that simulation is completed
@@ -0,0 +1,64 @@
+package overseer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A line protocol for the RunControl commands on a second port, so a run can be driven by a script instead of
+ * someone at the console, e.g. `echo status | nc localhost [port]`. Every line is answered with one line.
+ * It only listens on the loopback address, and every connection is served on a thread of its own.
+ */
+public class ControlEndpoint extends Thread {
+    private final ServerSocket serverSocket;
+    private final RunControl runControl;
+    private final Logger logger = new Logger();
+
+    /**
+     * @throws IOException if the port can't be listened on
+     */
+    ControlEndpoint(int portNumber, RunControl runControl) throws IOException {
+        super("Overseer-Control");
+        this.serverSocket = new ServerSocket(portNumber, 0, InetAddress.getLoopbackAddress());
+        this.runControl = runControl;
+        setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+        this.logger.logControlEndpointStarted(this.serverSocket.getLocalPort());
+        while (!this.serverSocket.isClosed()) {
+            try {
+                var socket = this.serverSocket.accept();
+                var thread = new Thread(() -> serve(socket), "Overseer-Control-" + socket.getPort());
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                if (!this.serverSocket.isClosed())
+                    this.logger.logControlEndpointError(e);
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket;
+             var reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             var writer = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank())
+                    continue;
+                var answer = this.runControl.execute(line);
+                this.logger.logControlCommand(line.trim(), answer);
+                writer.println(answer);
+            }
+        } catch (IOException e) {
+            this.logger.logControlEndpointError(e);
+        }
+    }
+}
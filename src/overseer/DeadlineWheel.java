@@ -0,0 +1,144 @@
+package overseer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * A hashed timer wheel for deadlines by ID, e.g. those of the pending transactions. The wheel has a bucket per tick,
+ * every deadline goes into the bucket of the first tick at or after it, and a single thread moves on one bucket every
+ * tick and hands the IDs whose deadlines have passed to the expiry handler. A deadline that is more than a turn of the wheel
+ * away stays in its bucket for as many turns as it takes.
+ * Adding a deadline only locks its own bucket, where it is kept as three longs, so it doesn't allocate unless the
+ * bucket has to grow.
+ *
+ * A deadline that is no longer needed, e.g. of a transaction that is done in time, is not taken off the wheel, that
+ * would cost every completion a search through its bucket. It is handed to the expiry handler like any other, which
+ * finds that there is nothing left to expire.
+ */
+public class DeadlineWheel {
+    static final long TICK_MILLIS = 100;
+    private static final int BUCKETS = 512;            // a power of two, one turn of the wheel is 51.2 seconds
+    private static final int ENTRY_SIZE = 3;           // [long mostSignificantBits][long leastSignificantBits][long deadlineNanos]
+    private static final int INITIAL_BUCKET_ENTRIES = 16;
+
+    private final Bucket[] buckets = new Bucket[BUCKETS];
+    private final long tickNanos = TimeUnit.MILLISECONDS.toNanos(TICK_MILLIS);
+    private final long startNanos = System.nanoTime();
+    private final String threadName;
+    private final Consumer<UUID> expiryHandler;
+    private final AtomicBoolean isStarted = new AtomicBoolean(false);
+    private final Logger logger = new Logger();
+    // the last tick that the wheel's thread has started to work through
+    private volatile long currentTick = 0;
+
+    /**
+     * @param threadName the name of the wheel's thread
+     * @param expiryHandler gets every ID whose deadline has passed, on the wheel's thread
+     */
+    DeadlineWheel(String threadName, Consumer<UUID> expiryHandler) {
+        this.threadName = threadName;
+        this.expiryHandler = expiryHandler;
+        for (var i = 0; i < BUCKETS; i++)
+            this.buckets[i] = new Bucket();
+    }
+
+    /**
+     * Adds a deadline, the wheel's thread is started with the first one
+     * @param id what the deadline is for
+     * @param deadlineNanos the System.nanoTime() at which it expires
+     */
+    public void schedule(UUID id, long deadlineNanos) {
+        if (!this.isStarted.get() && this.isStarted.compareAndSet(false, true))
+            startThread();
+
+        var tick = Math.max(getTick(deadlineNanos), this.currentTick + 1);
+        while (true) {
+            var bucket = this.buckets[(int) (tick & (BUCKETS - 1))];
+            synchronized (bucket) {
+                // the wheel may have got to the bucket in the meantime, the deadline then goes into the next one
+                if (bucket.lastTick < tick) {
+                    bucket.add(id.getMostSignificantBits(), id.getLeastSignificantBits(), deadlineNanos);
+                    return;
+                }
+            }
+            tick++;
+        }
+    }
+
+    private long getTick(long nanos) {
+        var elapsed = nanos - this.startNanos;
+        return elapsed <= 0 ? 0 : (elapsed + this.tickNanos - 1) / this.tickNanos;
+    }
+
+    private void startThread() {
+        var thread = new Thread(this::turn, this.threadName);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void turn() {
+        var expired = new ArrayList<UUID>();
+        while (true) {
+            var tick = this.currentTick + 1;
+            var tickStartNanos = this.startNanos + tick * this.tickNanos;
+            long waitNanos;
+            while ((waitNanos = tickStartNanos - System.nanoTime()) > 0)
+                LockSupport.parkNanos(waitNanos);
+            this.currentTick = tick;
+
+            var bucket = this.buckets[(int) (tick & (BUCKETS - 1))];
+            synchronized (bucket) {
+                bucket.lastTick = tick;
+                bucket.removeExpired(System.nanoTime(), expired);
+            }
+            for (var id : expired) {
+                try {
+                    this.expiryHandler.accept(id);
+                } catch (RuntimeException e) {
+                    this.logger.logDeadlineError(id.toString(), e);
+                }
+            }
+            expired.clear();
+        }
+    }
+
+    private static class Bucket {
+        private long[] entries = new long[INITIAL_BUCKET_ENTRIES * ENTRY_SIZE];
+        private int size = 0;           // in longs
+        private long lastTick = 0;      // the last tick that the bucket was worked through for
+
+        void add(long mostSignificantBits, long leastSignificantBits, long deadlineNanos) {
+            if (this.size == this.entries.length)
+                this.entries = Arrays.copyOf(this.entries, this.entries.length * 2);
+            this.entries[this.size] = mostSignificantBits;
+            this.entries[this.size + 1] = leastSignificantBits;
+            this.entries[this.size + 2] = deadlineNanos;
+            this.size += ENTRY_SIZE;
+        }
+
+        /**
+         * Moves the IDs whose deadlines have passed to the list, the others are kept for a later turn
+         */
+        void removeExpired(long nowNanos, ArrayList<UUID> expired) {
+            var kept = 0;
+            for (var i = 0; i < this.size; i += ENTRY_SIZE) {
+                if (this.entries[i + 2] - nowNanos <= 0) {
+                    expired.add(new UUID(this.entries[i], this.entries[i + 1]));
+                    continue;
+                }
+                if (kept != i)
+                    System.arraycopy(this.entries, i, this.entries, kept, ENTRY_SIZE);
+                kept += ENTRY_SIZE;
+            }
+            this.size = kept;
+            // a bucket that grew for a burst doesn't hold on to the memory for the rest of the simulation
+            if (this.size == 0 && this.entries.length > INITIAL_BUCKET_ENTRIES * ENTRY_SIZE)
+                this.entries = new long[INITIAL_BUCKET_ENTRIES * ENTRY_SIZE];
+        }
+    }
+}
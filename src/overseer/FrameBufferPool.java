@@ -0,0 +1,70 @@
+package overseer;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Direct buffers for the encoded BroadcastFrames. Writing a heap buffer to a channel makes the JDK copy it into a
+ * temporary direct buffer on every write, a frame that is copied into a direct buffer once can be written to every
+ * client as it is. Buffers are pooled per power of two size up to MAX_POOLED_SIZE, bigger ones are left to the GC.
+ */
+public class FrameBufferPool {
+    private static final int MIN_SIZE_SHIFT = 10;         // 1 KB
+    private static final int MAX_SIZE_SHIFT = 20;         // 1 MB
+    private static final int MAX_POOLED_SIZE = 1 << MAX_SIZE_SHIFT;
+    private static final int MAX_BUFFERS_PER_SIZE = 16;
+    private static final FrameBufferPool INSTANCE = new FrameBufferPool();
+
+    private final ConcurrentLinkedQueue<ByteBuffer>[] buffersBySize;
+    private final AtomicInteger[] pooledCounts;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private FrameBufferPool() {
+        var sizes = MAX_SIZE_SHIFT - MIN_SIZE_SHIFT + 1;
+        this.buffersBySize = new ConcurrentLinkedQueue[sizes];
+        this.pooledCounts = new AtomicInteger[sizes];
+        for (var i = 0; i < sizes; i++) {
+            this.buffersBySize[i] = new ConcurrentLinkedQueue<>();
+            this.pooledCounts[i] = new AtomicInteger(0);
+        }
+    }
+
+    public static FrameBufferPool getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return a cleared direct buffer that can hold at least size bytes
+     */
+    public ByteBuffer acquire(int size) {
+        if (size > MAX_POOLED_SIZE)
+            return ByteBuffer.allocateDirect(size);
+        var sizeIndex = getSizeIndex(size);
+        var buffer = this.buffersBySize[sizeIndex].poll();
+        if (buffer == null)
+            return ByteBuffer.allocateDirect(1 << (sizeIndex + MIN_SIZE_SHIFT));
+        this.pooledCounts[sizeIndex].decrementAndGet();
+        return buffer.clear();
+    }
+
+    /**
+     * Hands the buffer back, nothing may use it afterwards
+     */
+    public void release(ByteBuffer buffer) {
+        var capacity = buffer.capacity();
+        if (capacity > MAX_POOLED_SIZE || Integer.bitCount(capacity) != 1 || capacity < 1 << MIN_SIZE_SHIFT)
+            return;
+        var sizeIndex = getSizeIndex(capacity);
+        if (this.pooledCounts[sizeIndex].incrementAndGet() > MAX_BUFFERS_PER_SIZE) {
+            this.pooledCounts[sizeIndex].decrementAndGet();
+            return;
+        }
+        this.buffersBySize[sizeIndex].add(buffer);
+    }
+
+    private static int getSizeIndex(int size) {
+        var shift = 32 - Integer.numberOfLeadingZeros(Math.max(size, 1 << MIN_SIZE_SHIFT) - 1);
+        return shift - MIN_SIZE_SHIFT;
+    }
+}
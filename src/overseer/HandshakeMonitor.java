@@ -0,0 +1,51 @@
+package overseer;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gives every new connection a set amount of time to get through the handshake, from being accepted until it has
+ * sent its ClientReady:. A connection that is still not ready by then gets its socket closed, which its transport
+ * picks up like any other disconnect, so the slot is free for a client that does show up.
+ * Every connection does its handshake on its own thread or I/O loop, the monitor only keeps the deadlines.
+ */
+public class HandshakeMonitor {
+    private final ScheduledExecutorService executor;
+    private final long timeoutSeconds;
+    private final Logger logger = new Logger();
+
+    /**
+     * @param timeoutSeconds how long a connection has to get ready, 0 lets it take as long as it wants
+     */
+    HandshakeMonitor(long timeoutSeconds) {
+        this.timeoutSeconds = timeoutSeconds;
+        this.executor = timeoutSeconds > 0 ? Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "Overseer-Handshake");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    /**
+     * Starts the clock on a connection that has just been accepted
+     * @param socket the connection's socket
+     * @param clientSession the connection's session, which knows when the client is ready
+     */
+    public void watch(Socket socket, ClientSession clientSession) {
+        if (this.executor == null)
+            return;
+        this.executor.schedule(() -> {
+            if (clientSession.isReady() || socket.isClosed())
+                return;
+            this.logger.logHandshakeTimeout(String.valueOf(socket.getRemoteSocketAddress()), this.timeoutSeconds);
+            try {
+                socket.close();
+            } catch (IOException e) {
+                this.logger.logTransportError(String.valueOf(clientSession.getClientId()), e);
+            }
+        }, this.timeoutSeconds, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,92 @@
+package overseer;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of non-negative long values with log-linear buckets: every power of two is split into
+ * SUB_BUCKETS linear buckets, which keeps the error of any percentile under about 6% over the whole long range.
+ * Recording a value is a few atomic adds, so it can be called from any thread on the hot path.
+ */
+public class Histogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong(0);
+    private final AtomicLong sum = new AtomicLong(0);
+    private final AtomicLong max = new AtomicLong(0);
+
+    /**
+     * @param value the value to record, negative values are recorded as 0
+     */
+    public void record(long value) {
+        if (value < 0)
+            value = 0;
+        this.counts.incrementAndGet(getBucket(value));
+        this.count.incrementAndGet();
+        this.sum.addAndGet(value);
+        if (value > this.max.get())
+            this.max.accumulateAndGet(value, Math::max);
+    }
+
+    public long getCount() {
+        return this.count.get();
+    }
+
+    /**
+     * A snapshot taken while values are being recorded can be off by the values that came in during it
+     * @param scale every value is divided by it, e.g. 1000 to go from nanoseconds to microseconds
+     */
+    public HistogramSnapshot getSnapshot(long scale) {
+        var bucketCounts = new long[BUCKETS];
+        var total = 0L;
+        for (var i = 0; i < BUCKETS; i++) {
+            bucketCounts[i] = this.counts.get(i);
+            total += bucketCounts[i];
+        }
+        var max = this.max.get();
+        var mean = total == 0 ? 0 : (double) this.sum.get() / this.count.get() / scale;
+        return new HistogramSnapshot(total, mean,
+                getPercentile(bucketCounts, total, 0.50, max) / scale,
+                getPercentile(bucketCounts, total, 0.90, max) / scale,
+                getPercentile(bucketCounts, total, 0.99, max) / scale,
+                getPercentile(bucketCounts, total, 0.999, max) / scale,
+                max / scale);
+    }
+
+    /**
+     * @return the highest value of the bucket that the percentile falls in, never more than the max
+     */
+    private static long getPercentile(long[] bucketCounts, long total, double percentile, long max) {
+        if (total == 0)
+            return 0;
+        var rank = (long) Math.ceil(percentile * total);
+        var seen = 0L;
+        for (var i = 0; i < BUCKETS; i++) {
+            seen += bucketCounts[i];
+            if (seen >= rank)
+                return Math.min(getBucketUpperBound(i), max);
+        }
+        return max;
+    }
+
+    private static int getBucket(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        var exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        var subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long getBucketUpperBound(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+        var exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        var subBucket = bucket % SUB_BUCKETS;
+        var shift = exponent - SUB_BUCKET_BITS;
+        var upperBound = ((long) (SUB_BUCKETS + subBucket + 1) << shift) - 1;
+        return upperBound < 0 ? Long.MAX_VALUE : upperBound;
+    }
+}
@@ -0,0 +1,37 @@
+package overseer;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the completed transactions as they are in two maps. Nothing is ever removed, so the heap grows with
+ * the length of the simulation
+ */
+public class InMemoryTransactionStore implements CompletedTransactionStore {
+    private final ConcurrentHashMap<UUID, AccountTransaction> completedTransactions = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<UUID, TouristTransaction> completedTouristTransactions = new ConcurrentHashMap<>();
+
+    @Override
+    public void addAccountTransaction(AccountTransaction accountTransaction) {
+        this.completedTransactions.put(accountTransaction.getTransactionId(), accountTransaction);
+    }
+
+    @Override
+    public AccountTransaction getAccountTransaction(UUID transactionId) {
+        return this.completedTransactions.get(transactionId);
+    }
+
+    @Override
+    public void addTouristTransaction(TouristTransaction touristTransaction) {
+        this.completedTouristTransactions.put(touristTransaction.getTransactionId(), touristTransaction);
+    }
+
+    @Override
+    public TouristTransaction getTouristTransaction(UUID transactionId) {
+        return this.completedTouristTransactions.get(transactionId);
+    }
+
+    @Override
+    public void close() {
+    }
+}
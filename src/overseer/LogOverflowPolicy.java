@@ -0,0 +1,33 @@
+package overseer;
+
+/**
+ * What a Logger call does when the LogWriter's buffer is full. BLOCK waits for room so that no line is ever lost,
+ * DROP throws the line away (and counts it) so that the caller never waits on the console or the log file.
+ */
+public enum LogOverflowPolicy {
+    BLOCK("block"),
+    DROP("drop");
+
+    private final String argument;
+
+    LogOverflowPolicy(String argument) {
+        this.argument = argument;
+    }
+
+    public String getArgument() {
+        return argument;
+    }
+
+    /**
+     * @param argument the value passed in with the log policy program argument
+     * @return the matching policy
+     * @throws IllegalArgumentException if no policy matches the argument
+     */
+    public static LogOverflowPolicy fromArgument(String argument) {
+        for (var policy : values()) {
+            if (policy.argument.equalsIgnoreCase(argument))
+                return policy;
+        }
+        throw new IllegalArgumentException(String.format("Unknown log policy: %s", argument));
+    }
+}
@@ -0,0 +1,188 @@
+package overseer;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Does the actual writing for every Logger. A log call only puts the message and the current time in a fixed-size
+ * ring buffer, a single background thread formats the lines and writes them to the console and, if one has been set,
+ * a rolling log file. The timestamp is only formatted again once the second has changed, since that is the
+ * precision it is shown with.
+ */
+public class LogWriter {
+    static final int DEFAULT_CAPACITY = 8192;
+    private static final int MAX_BATCH = 512;
+    private static final DateTimeFormatter TIMESTAMP_FORMAT =
+            DateTimeFormatter.ofPattern("dd/MM/uuuu HH:mm:ss").withZone(ZoneId.systemDefault());
+    private static final LogWriter INSTANCE = new LogWriter(DEFAULT_CAPACITY);
+
+    static final byte LEVEL_LOG = 0;
+    static final byte LEVEL_ERROR = 1;
+    static final byte LEVEL_WARNING = 2;
+
+    private final ArrayBlockingQueue<Entry> entries;
+    private final AtomicLong droppedEntries = new AtomicLong(0);
+    private volatile LogOverflowPolicy overflowPolicy = LogOverflowPolicy.BLOCK;
+    private RollingLogFile logFile = null; // guarded by this
+    private final StringBuilder line = new StringBuilder(256);
+    private long timestampSecond = Long.MIN_VALUE;
+    private String timestamp;
+
+    private static class Entry {
+        final long timeMillis;
+        final byte level;
+        final String type;
+        final String message;
+
+        Entry(long timeMillis, byte level, String type, String message) {
+            this.timeMillis = timeMillis;
+            this.level = level;
+            this.type = type;
+            this.message = message;
+        }
+    }
+
+    private LogWriter(int capacity) {
+        this.entries = new ArrayBlockingQueue<>(capacity);
+        var writerThread = new Thread(this::writeEntries, "Overseer-Log");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        // whatever is still in the buffer when the Overseer exits gets written out
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush));
+    }
+
+    public static LogWriter getInstance() {
+        return INSTANCE;
+    }
+
+    public void setOverflowPolicy(LogOverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Starts writing every line to a log file as well as the console
+     * @param path the log file, it is appended to if it already exists
+     * @param maxBytes the size at which the file is rolled over
+     */
+    public synchronized void setLogFile(Path path, long maxBytes) throws IOException {
+        if (this.logFile != null)
+            this.logFile.close();
+        this.logFile = new RollingLogFile(path, maxBytes);
+    }
+
+    /**
+     * @param level LEVEL_LOG, LEVEL_ERROR or LEVEL_WARNING
+     * @param type the error or warning type, null for LEVEL_LOG
+     */
+    public void write(byte level, String type, String message) {
+        var entry = new Entry(System.currentTimeMillis(), level, type, message);
+        if (this.overflowPolicy == LogOverflowPolicy.DROP) {
+            if (!this.entries.offer(entry))
+                this.droppedEntries.incrementAndGet();
+            return;
+        }
+        try {
+            this.entries.put(entry);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeEntries() {
+        var batch = new ArrayList<Entry>(MAX_BATCH);
+        while (true) {
+            try {
+                batch.add(this.entries.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            this.entries.drainTo(batch, MAX_BATCH - 1);
+            writeBatch(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Writes out everything that is in the buffer right now
+     */
+    private void flush() {
+        var batch = new ArrayList<Entry>(this.entries.size());
+        this.entries.drainTo(batch);
+        writeBatch(batch);
+    }
+
+    private synchronized void writeBatch(ArrayList<Entry> batch) {
+        var isOutWritten = false;
+        var isErrWritten = false;
+        for (var entry : batch) {
+            var stream = entry.level == LEVEL_LOG ? System.out : System.err;
+            writeLine(stream, entry.timeMillis, entry.level, entry.type, entry.message);
+            isOutWritten |= stream == System.out;
+            isErrWritten |= stream == System.err;
+        }
+
+        var dropped = this.droppedEntries.getAndSet(0);
+        if (dropped > 0) {
+            writeLine(System.err, System.currentTimeMillis(), LEVEL_WARNING, "Logger",
+                    String.format("%s log line(s) dropped, the log buffer was full", dropped));
+            isErrWritten = true;
+        }
+
+        if (isOutWritten)
+            System.out.flush();
+        if (isErrWritten)
+            System.err.flush();
+        if (this.logFile != null) {
+            try {
+                this.logFile.flush();
+            } catch (IOException e) {
+                closeLogFile(e);
+            }
+        }
+    }
+
+    private void writeLine(PrintStream stream, long timeMillis, byte level, String type, String message) {
+        this.line.setLength(0);
+        this.line.append('[').append(getTimestamp(timeMillis)).append("] : [");
+        if (level == LEVEL_LOG)
+            this.line.append("Log");
+        else
+            this.line.append(level == LEVEL_ERROR ? "ERROR - " : "WARNING - ").append(type);
+        this.line.append("] ").append(message).append(System.lineSeparator());
+
+        var text = this.line.toString();
+        stream.print(text);
+        if (this.logFile != null) {
+            try {
+                this.logFile.write(text);
+            } catch (IOException e) {
+                closeLogFile(e);
+            }
+        }
+    }
+
+    private void closeLogFile(IOException e) {
+        System.err.printf("Log file could not be written, logging to the console only: %s%n", e.getMessage());
+        try {
+            this.logFile.close();
+        } catch (IOException ignored) {
+        }
+        this.logFile = null;
+    }
+
+    private String getTimestamp(long timeMillis) {
+        var second = Math.floorDiv(timeMillis, 1000);
+        if (second != this.timestampSecond) {
+            this.timestampSecond = second;
+            this.timestamp = TIMESTAMP_FORMAT.format(Instant.ofEpochMilli(timeMillis));
+        }
+        return this.timestamp;
+    }
+}
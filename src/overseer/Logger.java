@@ -1,30 +1,21 @@
 package overseer;
 
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
 
 public class Logger {
-
-    //TODO: save this to a file
+    // every Logger writes through the same background writer, the calls themselves never touch the console
+    private final LogWriter logWriter = LogWriter.getInstance();
 
     private void log(String message) {
-        System.out.printf("[%s] : [Log] %s%n", getTimeStamp(), message);
+        this.logWriter.write(LogWriter.LEVEL_LOG, null, message);
     }
 
     private void logError(String message, String errorType) {
-        System.err.printf("[%s] : [ERROR - %s] %s%n", getTimeStamp(), errorType, message);
+        this.logWriter.write(LogWriter.LEVEL_ERROR, errorType, message);
     }
 
     private void logWarning(String message, String warningType) {
-        System.err.printf("[%s] : [WARNING - %s] %s%n", getTimeStamp(), warningType, message);
-    }
-
-    private String getTimeStamp() {
-        return ZonedDateTime
-                .now(ZoneId.systemDefault())
-                .format(DateTimeFormatter.ofPattern("dd/MM/uuuu HH:mm:ss"));
+        this.logWriter.write(LogWriter.LEVEL_WARNING, warningType, message);
     }
 
     public void logCurrentConnections(Integer currentConnections) {
@@ -77,6 +68,14 @@ public class Logger {
         log(String.format("Overseer: Sending all clients to commence step number %s", stepNumber));
     }
 
+    public void logSlowestClientStep(Integer stepNumber) {
+        log(String.format("Overseer: The slowest client has reached step number %s", stepNumber));
+    }
+
+    public void logNetSettlement(Integer stepNumber, Integer clients) {
+        log(String.format("Overseer: Net settlement up to step %s sent to %s clients", stepNumber, clients));
+    }
+
     public void logSimulationCompleted(Integer steps) {
         log(String.format("The simulation has completed with the total of %s steps", steps));
     }
@@ -98,6 +97,132 @@ public class Logger {
         log(String.format("DepositTo: %s, Bank: %s, Amount: %s, ClientID: %s, Current Step: %s", personName, bankId, amount, clientId, currentStep));
     }
 
+    public void logTransportError(String clientId, Exception e) {
+        logError(String.format("Client %s: %s", clientId, e.getMessage()), "Transport");
+    }
+
+    public void logWireProtocol(String clientId, String wireProtocol) {
+        log(String.format("Client %s: using the %s wire protocol", clientId, wireProtocol));
+    }
+
+    public void logWireProtocolRefused(String clientId) {
+        logError(String.format("Client %s: the nio connection mode needs the binary wire protocol %s, the connection is closed",
+                clientId, BinaryCodec.VERSION), "Wire protocol");
+    }
+
+    public void logVirtualThreadsUnsupported() {
+        logWarning("This JDK has no virtual threads (Java 21+), the virtual connection mode falls back to platform threads",
+                "Connection mode");
+    }
+
+    public void logNioTransportStarted(int ioLoops) {
+        log(String.format("NIO connection mode started with %s I/O loop(s)", ioLoops));
+    }
+
+    public void logUnknownTransaction(String clientId, String transactionId) {
+        logWarning(String.format("Client %s: transaction %s is not pending", clientId, transactionId), "Transaction");
+    }
+
+    public void logDuplicateTransaction(String clientId, String transactionId) {
+        logWarning(String.format("Client %s: transaction %s is pending already and has been ignored", clientId, transactionId),
+                "Transaction");
+    }
+
+    public void logTransactionLedgerOpened(String path) {
+        log(String.format("Completed transactions are written to the ledger file %s", path));
+    }
+
+    public void logTransactionLedgerError(String path, Exception e) {
+        logError(String.format("Ledger file %s: %s", path, e.getMessage()), "Transaction ledger");
+    }
+
+    public void logWriteAheadLogError(Exception e) {
+        logError(e.getMessage(), "Write-ahead log");
+    }
+
+    public void logCheckpointWritten(Integer stepNumber) {
+        log(String.format("Checkpoint written at step %s", stepNumber));
+    }
+
+    public void logRestored(Integer stepNumber, Integer clients) {
+        log(String.format("Simulation restored at step %s, waiting for %s client(s) to rejoin", stepNumber, clients));
+    }
+
+    public void logHandshakeTimeout(String address, long timeoutSeconds) {
+        logWarning(String.format("Connection from %s was not ready after %s seconds and has been closed", address, timeoutSeconds),
+                "Handshake");
+    }
+
+    public void logTransactionExpired(String transactionId, String senderId, long timeoutSeconds) {
+        logWarning(String.format("Transaction %s from client %s was not done after %s seconds and has been reverted",
+                transactionId, senderId, timeoutSeconds), "Transaction timeout");
+    }
+
+    public void logDeadlineError(String id, Exception e) {
+        logError(String.format("Deadline of %s: %s", id, e.getMessage()), "Deadline");
+    }
+
+    public void logSessionDetached(String clientId, long timeoutSeconds) {
+        logWarning(String.format("Client %s lost its connection, its session is kept for %s seconds",
+                clientId, timeoutSeconds), "Membership");
+    }
+
+    public void logSessionResumed(String clientId, long firstObject, long replayedObjects) {
+        log(String.format("Client %s resumed its session, %s objects were sent again from object %s",
+                clientId, replayedObjects, firstObject));
+    }
+
+    public void logReplayGap(String clientId, long receivedObjects, long firstObject) {
+        logWarning(String.format("Client %s resumed after object %s, but the replay buffer only goes back to object %s",
+                clientId, receivedObjects, firstObject), "Membership");
+    }
+
+    public void logSessionExpired(String clientId, long timeoutSeconds) {
+        logWarning(String.format("Client %s did not resume its session within %s seconds and has left the simulation",
+                clientId, timeoutSeconds), "Membership");
+    }
+
+    public void logClientJoined(String clientId, int step, int members) {
+        log(String.format("Client %s joined the simulation at step %s, %s clients are taking part", clientId, step, members));
+    }
+
+    public void logClientLeft(String clientId, int revertedTransactions, int droppedTransactions) {
+        log(String.format("Client %s left the simulation, %s transfers to it were reverted and %s from it were dropped",
+                clientId, revertedTransactions, droppedTransactions));
+    }
+
+    public void logAllClientsReady(Integer clients, long startupMillis) {
+        log(String.format("All %s clients are ready, %s ms after the Overseer started", clients, startupMillis));
+    }
+
+    public void logControlEndpointStarted(int port) {
+        log(String.format("Control endpoint listening on localhost:%s", port));
+    }
+
+    public void logControlEndpointError(Exception e) {
+        logError(e.getMessage(), "Control endpoint");
+    }
+
+    public void logControlCommand(String command, String answer) {
+        log(String.format("Control: %s - %s", command, answer));
+    }
+
+    public void logShuttingDown(Integer connectedClients) {
+        log(String.format("Overseer: Shutting down, %s client(s) still connected are closed", connectedClients));
+    }
+
+    public void logUnknownRestoredClient(String clientId) {
+        logWarning(String.format("Client %s was not part of the restored simulation", clientId), "Restore");
+    }
+
+    public void logLogFileError(String path, Exception e) {
+        logError(String.format("Log file %s: %s", path, e.getMessage()), "Logger");
+    }
+
+    public void logMetricsError(Exception e) {
+        logError(e.getMessage(), "Metrics");
+    }
+
     public void logInvalidArgumentError() {
         logError("Incorrect input of arguments. Step, flag and port-number are only supposed to be positive integer values", "Invalid argument");
     }
@@ -0,0 +1,114 @@
+package overseer;
+
+import java.util.Arrays;
+
+/**
+ * An open addressing hash map from long keys to non-negative int values, without boxing. Collisions are resolved by
+ * linear probing, and removals shift the entries after them back so no tombstones are left behind.
+ * Not thread safe, the owner has to take care of that.
+ */
+public class LongIntMap {
+    public static final int NO_VALUE = -1;
+
+    private long[] keys;
+    private int[] values; // NO_VALUE marks an empty slot
+    private int size = 0;
+
+    public LongIntMap(int initialCapacity) {
+        var capacity = Integer.highestOneBit(Math.max(16, initialCapacity - 1) << 1);
+        this.keys = new long[capacity];
+        this.values = new int[capacity];
+        Arrays.fill(this.values, NO_VALUE);
+    }
+
+    /**
+     * @return the value of the key, NO_VALUE if the key is not in the map
+     */
+    public int get(long key) {
+        var mask = this.keys.length - 1;
+        for (var slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            if (this.values[slot] == NO_VALUE)
+                return NO_VALUE;
+            if (this.keys[slot] == key)
+                return this.values[slot];
+        }
+    }
+
+    /**
+     * @param value a value of 0 or more
+     */
+    public void put(long key, int value) {
+        if (value < 0)
+            throw new IllegalArgumentException(String.format("Negative value: %s", value));
+        // stays under a load factor of 0.75
+        if ((this.size + 1) * 4L > this.keys.length * 3L)
+            grow();
+        if (insert(this.keys, this.values, key, value))
+            this.size++;
+    }
+
+    /**
+     * @return the value that the key had, NO_VALUE if the key was not in the map
+     */
+    public int remove(long key) {
+        var mask = this.keys.length - 1;
+        var slot = hash(key) & mask;
+        while (this.values[slot] != NO_VALUE && this.keys[slot] != key)
+            slot = (slot + 1) & mask;
+        var value = this.values[slot];
+        if (value == NO_VALUE)
+            return NO_VALUE;
+
+        // moves every entry of the probe run that would no longer be found into the gap
+        var gap = slot;
+        for (var next = (gap + 1) & mask; this.values[next] != NO_VALUE; next = (next + 1) & mask) {
+            var home = hash(this.keys[next]) & mask;
+            var isBetweenGapAndNext = gap <= next ? gap < home && home <= next : gap < home || home <= next;
+            if (!isBetweenGapAndNext) {
+                this.keys[gap] = this.keys[next];
+                this.values[gap] = this.values[next];
+                gap = next;
+            }
+        }
+        this.values[gap] = NO_VALUE;
+        this.size--;
+        return value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void grow() {
+        var grownKeys = new long[this.keys.length * 2];
+        var grownValues = new int[grownKeys.length];
+        Arrays.fill(grownValues, NO_VALUE);
+        for (var slot = 0; slot < this.keys.length; slot++) {
+            if (this.values[slot] != NO_VALUE)
+                insert(grownKeys, grownValues, this.keys[slot], this.values[slot]);
+        }
+        this.keys = grownKeys;
+        this.values = grownValues;
+    }
+
+    /**
+     * @return true if a new entry was added, false if an existing one was overwritten
+     */
+    private static boolean insert(long[] keys, int[] values, long key, int value) {
+        var mask = keys.length - 1;
+        for (var slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            var isEmpty = values[slot] == NO_VALUE;
+            if (isEmpty || keys[slot] == key) {
+                keys[slot] = key;
+                values[slot] = value;
+                return isEmpty;
+            }
+        }
+    }
+
+    private static int hash(long key) {
+        // account and bank IDs are small and sequential, so they are mixed before they are masked
+        var hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+}
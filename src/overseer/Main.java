@@ -1,5 +1,8 @@
 package overseer;
 
+import java.io.IOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Objects;
@@ -9,8 +12,31 @@ public class Main {
     public static void main(String[] args) {
         ServerData serverData;
         int connectionLimit = 0;
+        var maxClients = 0;
         int portNumber = 4242;
         boolean isDebugEnabled = false;
+        var connectionMode = ConnectionMode.THREAD;
+        var ioThreads = 0;
+        var steps = 0;
+        var controlPort = 0;
+        var queueHighWatermark = ServerData.DEFAULT_QUEUE_HIGH_WATERMARK;
+        var queueLowWatermark = ServerData.DEFAULT_QUEUE_LOW_WATERMARK;
+        var lagWindow = 0;
+        var writeLinger = 0;
+        var handshakeTimeout = ServerData.DEFAULT_HANDSHAKE_TIMEOUT_SECONDS;
+        var transactionTimeout = ServerData.DEFAULT_TRANSACTION_TIMEOUT_SECONDS;
+        var resumeTimeout = ServerData.DEFAULT_RESUME_TIMEOUT_SECONDS;
+        var replayBufferSize = ServerData.DEFAULT_REPLAY_BUFFER_SIZE;
+        var isNetSettlementEnabled = false;
+        String ledgerPath = null;
+        String walDirectory = null;
+        var checkpointInterval = 1000;
+        var isRestoreEnabled = false;
+        String logFile = null;
+        var logFileSize = 64;
+        var logPolicy = LogOverflowPolicy.BLOCK;
+        String metricsFile = null;
+        var metricsInterval = 10;
         var logger = new Logger();
 
         if (args.length > 0) {
@@ -21,30 +47,110 @@ public class Main {
                 for (var i = 0; i < argumentsList.size(); i++) {
                     if (Objects.equals(argumentsList.get(i), Constant.ARG_CONNECTION_NUMBER))
                         connectionLimit = Integer.parseInt(argumentsList.get(i + 1));
+                    if(Objects.equals(argumentsList.get(i), Constant.ARG_MAX_CLIENTS))
+                        maxClients = Integer.parseInt(argumentsList.get(i + 1));
+                    if(Objects.equals(argumentsList.get(i), Constant.ARG_RESUME_TIMEOUT))
+                        resumeTimeout = Integer.parseInt(argumentsList.get(i + 1));
+                    if(Objects.equals(argumentsList.get(i), Constant.ARG_REPLAY_BUFFER))
+                        replayBufferSize = Integer.parseInt(argumentsList.get(i + 1));
 
                     if (Objects.equals(argumentsList.get(i), Constant.ARG_PORT_NUMBER))
                         portNumber = Integer.parseInt(argumentsList.get(i + 1));
                     if(Objects.equals(argumentsList.get(i), Constant.ARG_DEBUG))
                         isDebugEnabled = true;
+                    if(Objects.equals(argumentsList.get(i), Constant.ARG_CONNECTION_MODE))
+                        connectionMode = ConnectionMode.fromArgument(argumentsList.get(i + 1));
+                    if(Objects.equals(argumentsList.get(i), Constant.ARG_IO_THREADS))
+                        ioThreads = Integer.parseInt(argumentsList.get(i + 1));
+                    if(Objects.equals(argumentsList.get(i), Constant.ARG_STEPS))
+                        steps = Integer.parseInt(argumentsList.get(i + 1));
+                    if(Objects.equals(argumentsList.get(i), Constant.ARG_CONTROL_PORT))
+                        controlPort = Integer.parseInt(argumentsList.get(i + 1));
+                    if(Objects.equals(argumentsList.get(i), Constant.ARG_QUEUE_HIGH_WATERMARK))
+                        queueHighWatermark = Integer.parseInt(argumentsList.get(i + 1));
+                    if(Objects.equals(argumentsList.get(i), Constant.ARG_QUEUE_LOW_WATERMARK))
+                        queueLowWatermark = Integer.parseInt(argumentsList.get(i + 1));
+                    if(Objects.equals(argumentsList.get(i), Constant.ARG_HANDSHAKE_TIMEOUT))
+                        handshakeTimeout = Integer.parseInt(argumentsList.get(i + 1));
+                    if(Objects.equals(argumentsList.get(i), Constant.ARG_TRANSACTION_TIMEOUT))
+                        transactionTimeout = Integer.parseInt(argumentsList.get(i + 1));
+                    if(Objects.equals(argumentsList.get(i), Constant.ARG_WRITE_LINGER))
+                        writeLinger = Integer.parseInt(argumentsList.get(i + 1));
+                    if(Objects.equals(argumentsList.get(i), Constant.ARG_LAG_WINDOW))
+                        lagWindow = Integer.parseInt(argumentsList.get(i + 1));
+                    if(Objects.equals(argumentsList.get(i), Constant.ARG_NET_SETTLEMENT))
+                        isNetSettlementEnabled = true;
+                    if(Objects.equals(argumentsList.get(i), Constant.ARG_LEDGER_PATH))
+                        ledgerPath = argumentsList.get(i + 1);
+                    if(Objects.equals(argumentsList.get(i), Constant.ARG_WAL_DIRECTORY))
+                        walDirectory = argumentsList.get(i + 1);
+                    if(Objects.equals(argumentsList.get(i), Constant.ARG_CHECKPOINT_INTERVAL))
+                        checkpointInterval = Integer.parseInt(argumentsList.get(i + 1));
+                    if(Objects.equals(argumentsList.get(i), Constant.ARG_RESTORE))
+                        isRestoreEnabled = true;
+                    if(Objects.equals(argumentsList.get(i), Constant.ARG_LOG_FILE))
+                        logFile = argumentsList.get(i + 1);
+                    if(Objects.equals(argumentsList.get(i), Constant.ARG_LOG_FILE_SIZE))
+                        logFileSize = Integer.parseInt(argumentsList.get(i + 1));
+                    if(Objects.equals(argumentsList.get(i), Constant.ARG_LOG_POLICY))
+                        logPolicy = LogOverflowPolicy.fromArgument(argumentsList.get(i + 1));
+                    if(Objects.equals(argumentsList.get(i), Constant.ARG_METRICS_FILE))
+                        metricsFile = argumentsList.get(i + 1);
+                    if(Objects.equals(argumentsList.get(i), Constant.ARG_METRICS_INTERVAL))
+                        metricsInterval = Integer.parseInt(argumentsList.get(i + 1));
                 }
             } catch (Exception e) {
                 logger.logInvalidArgumentError();
                 System.exit(0);
             }
 
-            if(connectionLimit <= 0) {
+            // without -maxclients nobody can join on top of the clients that the simulation starts with
+            if(maxClients == 0)
+                maxClients = connectionLimit;
+
+            if(connectionLimit <= 0 || lagWindow < 0 || checkpointInterval <= 0 || (isRestoreEnabled && walDirectory == null) ||
+                    maxClients < connectionLimit || resumeTimeout < 0 || replayBufferSize <= 0 || logFileSize <= 0 ||
+                    metricsInterval <= 0 || queueHighWatermark <= 0 || queueLowWatermark < 0 ||
+                    queueLowWatermark >= queueHighWatermark || writeLinger < 0 || handshakeTimeout < 0 || steps < 0 ||
+                    controlPort < 0 || controlPort > 65535 || transactionTimeout < 0) {
                 logger.logIncorrectArgumentsError(connectionLimit);
                 System.exit(0);
             }
 
+            LogWriter.getInstance().setOverflowPolicy(logPolicy);
+            if(logFile != null)
+                openLogFile(logFile, logFileSize, logger);
             logger.logArguments(connectionLimit);
             // needs to be final because of the new Thread() call, don't want the data to change...
             Integer finalConnectionLimit = connectionLimit;
-            serverData = new ServerData(finalConnectionLimit, portNumber, isDebugEnabled);
+            serverData = new ServerData(finalConnectionLimit, maxClients, portNumber, isDebugEnabled);
+            serverData.setConnectionMode(connectionMode);
+            if(ioThreads > 0)
+                serverData.setIoThreads(ioThreads);
+            serverData.setQueueWatermarks(queueHighWatermark, queueLowWatermark);
+            serverData.setWriteLingerMicros(writeLinger);
+            serverData.setHandshakeTimeoutSeconds(handshakeTimeout);
+            serverData.setTransactionTimeoutSeconds(transactionTimeout);
+            serverData.setResumeTimeoutSeconds(resumeTimeout);
+            serverData.setReplayBufferSize(replayBufferSize);
+            serverData.setLagWindow(lagWindow);
+            serverData.setIsNetSettlementEnabled(isNetSettlementEnabled);
+            if(ledgerPath != null)
+                openTransactionLedger(serverData, ledgerPath, logger);
+            if(metricsFile != null)
+                serverData.getMetrics().startDump(Path.of(metricsFile), metricsInterval);
+            if(walDirectory != null)
+                openWriteAheadLog(serverData, walDirectory, checkpointInterval, isRestoreEnabled, logger);
+            if(steps > 0)
+                serverData.requestSteps(steps);
+            startRunControl(serverData, controlPort, logger);
 
             var serverThread = new Thread(() -> {
                 var server = new Server();
                 server.start(serverData);
+                // a stopped Overseer is done, whatever else is still running shouldn't keep it alive
+                if(serverData.isStopRequested())
+                    System.exit(0);
             });
 
             serverThread.start();
@@ -54,4 +160,74 @@ public class Main {
         }
 
     }
+
+    /**
+     * Moves the completed transactions from the heap to a memory-mapped ledger file, which is written out
+     * when the Overseer shuts down
+     */
+    private static void openTransactionLedger(ServerData serverData, String ledgerPath, Logger logger) {
+        try {
+            var ledger = new MappedTransactionLedger(Path.of(ledgerPath));
+            serverData.setCompletedTransactionStore(ledger);
+            logger.logTransactionLedgerOpened(ledgerPath);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    ledger.close();
+                } catch (IOException e) {
+                    logger.logTransactionLedgerError(ledgerPath, e);
+                }
+            }));
+        } catch (IOException | InvalidPathException e) {
+            logger.logTransactionLedgerError(ledgerPath, e);
+            System.exit(0);
+        }
+    }
+
+    /**
+     * Starts the write-ahead log, after restoring the ServerData from the directory's last checkpoint if asked to
+     */
+    private static void openWriteAheadLog(ServerData serverData, String walDirectory, int checkpointInterval,
+                                          boolean isRestoreEnabled, Logger logger) {
+        try {
+            var directory = Path.of(walDirectory);
+            var writeAheadLog = new WriteAheadLog(directory, checkpointInterval);
+            var offset = 0L;
+            if(isRestoreEnabled) {
+                var checkpoint = WriteAheadLog.recover(directory, serverData.getCompletedTransactionStore());
+                serverData.restore(checkpoint);
+                offset = checkpoint.getWalOffset();
+                logger.logRestored(checkpoint.getStep(), checkpoint.getClientIds().size());
+            }
+            writeAheadLog.start(offset);
+            serverData.setWriteAheadLog(writeAheadLog);
+        } catch (IOException | ClassNotFoundException | InvalidPathException e) {
+            logger.logWriteAheadLogError(e);
+            System.exit(0);
+        }
+    }
+
+    /**
+     * The steps, pausing and stopping are controlled from the console, and from the control endpoint if a port is given
+     */
+    private static void startRunControl(ServerData serverData, int controlPort, Logger logger) {
+        var runControl = new RunControl(serverData);
+        new ConsoleControl(runControl).start();
+        if(controlPort == 0)
+            return;
+        try {
+            new ControlEndpoint(controlPort, runControl).start();
+        } catch (IOException e) {
+            logger.logControlEndpointError(e);
+            System.exit(0);
+        }
+    }
+
+    private static void openLogFile(String logFile, int logFileSize, Logger logger) {
+        try {
+            LogWriter.getInstance().setLogFile(Path.of(logFile), logFileSize * 1024L * 1024L);
+        } catch (IOException | InvalidPathException e) {
+            logger.logLogFileError(logFile, e);
+            System.exit(0);
+        }
+    }
 }
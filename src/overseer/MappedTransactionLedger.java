@@ -0,0 +1,249 @@
+package overseer;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An append-only ledger of the completed transactions in a memory-mapped file. Every transaction is one fixed-size
+ * record, and the file is mapped in segments as it grows. The records are found through an OffHeapTransactionIndex,
+ * so neither the transactions nor their index take up heap, however long the simulation runs.
+ *
+ * Record layout, RECORD_SIZE bytes:
+ *  [byte type][3 bytes padding][int step][UUID transactionId][UUID clientIdTo][UUID clientIdFrom]
+ *  [int bankIdTo][int bankIdFrom][long amount][String personIdTo][String personIdFrom]
+ * A tourist transaction uses clientIdTo, bankIdTo and personIdTo for its client, bank and person. Strings are a
+ * short with the amount of UTF-8 bytes (-1 for null) followed by up to MAX_STRING_BYTES bytes, Integers are
+ * Integer.MIN_VALUE for null. The rare transaction that doesn't fit a record is kept on the heap instead.
+ * The ledger is started over when the Overseer starts.
+ */
+public class MappedTransactionLedger implements CompletedTransactionStore {
+    static final int RECORD_SIZE = 256;
+    static final int SEGMENT_SIZE = 64 * 1024 * 1024;
+    private static final int RECORDS_PER_SEGMENT = SEGMENT_SIZE / RECORD_SIZE;
+    private static final int MAX_STRING_BYTES = 90;
+
+    private static final byte TYPE_ACCOUNT_TRANSACTION = 1;
+    private static final byte TYPE_TOURIST_TRANSACTION = 2;
+
+    private static final int TYPE = 0;
+    private static final int STEP = 4;
+    private static final int TRANSACTION_ID = 8;
+    private static final int CLIENT_ID_TO = 24;
+    private static final int CLIENT_ID_FROM = 40;
+    private static final int BANK_ID_TO = 56;
+    private static final int BANK_ID_FROM = 60;
+    private static final int AMOUNT = 64;
+    private static final int PERSON_ID_TO = 72;
+    private static final int PERSON_ID_FROM = PERSON_ID_TO + Short.BYTES + MAX_STRING_BYTES;
+
+    private static final int NULL_INTEGER = Integer.MIN_VALUE;
+    private static final short NULL_STRING = -1;
+
+    private final FileChannel fileChannel;
+    private final OffHeapTransactionIndex index = new OffHeapTransactionIndex(RECORDS_PER_SEGMENT);
+    private final AtomicLong nextRecord = new AtomicLong(0);
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+    // transactions with a person ID that is too long for a record
+    private final ConcurrentHashMap<UUID, Object> oversizedTransactions = new ConcurrentHashMap<>();
+
+    public MappedTransactionLedger(Path path) throws IOException {
+        this.fileChannel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    public long getRecordCount() {
+        return this.nextRecord.get();
+    }
+
+    @Override
+    public void addAccountTransaction(AccountTransaction accountTransaction) {
+        var personIdTo = toBytes(accountTransaction.getPeronIdTo());
+        var personIdFrom = toBytes(accountTransaction.getPersonIdFrom());
+        if (!fitsInRecord(accountTransaction.getTransactionId(), personIdTo, personIdFrom)) {
+            this.oversizedTransactions.put(accountTransaction.getTransactionId(), accountTransaction);
+            return;
+        }
+
+        var recordNumber = this.nextRecord.getAndIncrement();
+        var segment = getSegment(recordNumber);
+        var offset = getOffsetInSegment(recordNumber);
+        segment.putInt(offset + STEP, toInt(accountTransaction.getStep()));
+        putUUID(segment, offset + TRANSACTION_ID, accountTransaction.getTransactionId());
+        putUUID(segment, offset + CLIENT_ID_TO, accountTransaction.getClientIdTo());
+        putUUID(segment, offset + CLIENT_ID_FROM, accountTransaction.getClientIdFrom());
+        segment.putInt(offset + BANK_ID_TO, toInt(accountTransaction.getBankIdTo()));
+        segment.putInt(offset + BANK_ID_FROM, toInt(accountTransaction.getBankIdFrom()));
+        segment.putLong(offset + AMOUNT, accountTransaction.getAmountTo());
+        putString(segment, offset + PERSON_ID_TO, personIdTo);
+        putString(segment, offset + PERSON_ID_FROM, personIdFrom);
+        // the type goes in last, a record without one was never finished
+        segment.put(offset + TYPE, TYPE_ACCOUNT_TRANSACTION);
+        this.index.put(accountTransaction.getTransactionId(), recordNumber);
+    }
+
+    @Override
+    public AccountTransaction getAccountTransaction(UUID transactionId) {
+        var oversized = this.oversizedTransactions.get(transactionId);
+        if (oversized != null)
+            return oversized instanceof AccountTransaction ? (AccountTransaction) oversized : null;
+
+        var recordNumber = this.index.get(transactionId);
+        if (recordNumber == OffHeapTransactionIndex.NOT_FOUND)
+            return null;
+        var segment = getSegment(recordNumber);
+        var offset = getOffsetInSegment(recordNumber);
+        if (segment.get(offset + TYPE) != TYPE_ACCOUNT_TRANSACTION)
+            return null;
+
+        return new AccountTransaction(
+                getUUID(segment, offset + TRANSACTION_ID),
+                getUUID(segment, offset + CLIENT_ID_TO),
+                getString(segment, offset + PERSON_ID_TO),
+                toInteger(segment.getInt(offset + BANK_ID_TO)),
+                segment.getLong(offset + AMOUNT),
+                getUUID(segment, offset + CLIENT_ID_FROM),
+                toInteger(segment.getInt(offset + BANK_ID_FROM)),
+                getString(segment, offset + PERSON_ID_FROM),
+                toInteger(segment.getInt(offset + STEP)));
+    }
+
+    @Override
+    public void addTouristTransaction(TouristTransaction touristTransaction) {
+        var personId = toBytes(touristTransaction.getPersonId());
+        if (!fitsInRecord(touristTransaction.getTransactionId(), personId, null)) {
+            this.oversizedTransactions.put(touristTransaction.getTransactionId(), touristTransaction);
+            return;
+        }
+
+        var recordNumber = this.nextRecord.getAndIncrement();
+        var segment = getSegment(recordNumber);
+        var offset = getOffsetInSegment(recordNumber);
+        segment.putInt(offset + STEP, toInt(touristTransaction.getStep()));
+        putUUID(segment, offset + TRANSACTION_ID, touristTransaction.getTransactionId());
+        putUUID(segment, offset + CLIENT_ID_TO, touristTransaction.getClientId());
+        segment.putInt(offset + BANK_ID_TO, toInt(touristTransaction.getBankId()));
+        segment.putLong(offset + AMOUNT, touristTransaction.getAmount());
+        putString(segment, offset + PERSON_ID_TO, personId);
+        segment.put(offset + TYPE, TYPE_TOURIST_TRANSACTION);
+        this.index.put(touristTransaction.getTransactionId(), recordNumber);
+    }
+
+    @Override
+    public TouristTransaction getTouristTransaction(UUID transactionId) {
+        var oversized = this.oversizedTransactions.get(transactionId);
+        if (oversized != null)
+            return oversized instanceof TouristTransaction ? (TouristTransaction) oversized : null;
+
+        var recordNumber = this.index.get(transactionId);
+        if (recordNumber == OffHeapTransactionIndex.NOT_FOUND)
+            return null;
+        var segment = getSegment(recordNumber);
+        var offset = getOffsetInSegment(recordNumber);
+        if (segment.get(offset + TYPE) != TYPE_TOURIST_TRANSACTION)
+            return null;
+
+        return new TouristTransaction(
+                getUUID(segment, offset + TRANSACTION_ID),
+                getUUID(segment, offset + CLIENT_ID_TO),
+                toInteger(segment.getInt(offset + BANK_ID_TO)),
+                getString(segment, offset + PERSON_ID_TO),
+                segment.getLong(offset + AMOUNT),
+                toInteger(segment.getInt(offset + STEP)));
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (var segment : this.segments)
+            segment.force();
+        this.fileChannel.close();
+    }
+
+    /**
+     * @return the mapped segment that holds the record, mapping new segments as the ledger grows
+     */
+    private MappedByteBuffer getSegment(long recordNumber) {
+        var segmentNumber = (int) (recordNumber / RECORDS_PER_SEGMENT);
+        var segments = this.segments;
+        if (segmentNumber < segments.length)
+            return segments[segmentNumber];
+        return mapSegment(segmentNumber);
+    }
+
+    private synchronized MappedByteBuffer mapSegment(int segmentNumber) {
+        var segments = this.segments;
+        if (segmentNumber < segments.length)
+            return segments[segmentNumber];
+
+        var grownSegments = Arrays.copyOf(segments, segmentNumber + 1);
+        try {
+            for (var i = segments.length; i <= segmentNumber; i++)
+                grownSegments[i] = this.fileChannel.map(FileChannel.MapMode.READ_WRITE, (long) i * SEGMENT_SIZE, SEGMENT_SIZE);
+        } catch (IOException e) {
+            throw new IllegalStateException("Transaction ledger segment could not be mapped", e);
+        }
+        this.segments = grownSegments;
+        return grownSegments[segmentNumber];
+    }
+
+    private static int getOffsetInSegment(long recordNumber) {
+        return (int) (recordNumber % RECORDS_PER_SEGMENT) * RECORD_SIZE;
+    }
+
+    private static boolean fitsInRecord(UUID transactionId, byte[] first, byte[] second) {
+        var isIndexable = transactionId.getMostSignificantBits() != 0 || transactionId.getLeastSignificantBits() != 0;
+        return isIndexable &&
+                (first == null || first.length <= MAX_STRING_BYTES) &&
+                (second == null || second.length <= MAX_STRING_BYTES);
+    }
+
+    private static byte[] toBytes(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int toInt(Integer value) {
+        return value == null ? NULL_INTEGER : value;
+    }
+
+    private static Integer toInteger(int value) {
+        return value == NULL_INTEGER ? null : value;
+    }
+
+    private static void putUUID(MappedByteBuffer segment, int offset, UUID value) {
+        segment.putLong(offset, value == null ? 0 : value.getMostSignificantBits());
+        segment.putLong(offset + Long.BYTES, value == null ? 0 : value.getLeastSignificantBits());
+    }
+
+    private static UUID getUUID(MappedByteBuffer segment, int offset) {
+        var mostSignificantBits = segment.getLong(offset);
+        var leastSignificantBits = segment.getLong(offset + Long.BYTES);
+        if (mostSignificantBits == 0 && leastSignificantBits == 0)
+            return null;
+        return new UUID(mostSignificantBits, leastSignificantBits);
+    }
+
+    private static void putString(MappedByteBuffer segment, int offset, byte[] value) {
+        if (value == null) {
+            segment.putShort(offset, NULL_STRING);
+            return;
+        }
+        segment.putShort(offset, (short) value.length);
+        segment.put(offset + Short.BYTES, value);
+    }
+
+    private static String getString(MappedByteBuffer segment, int offset) {
+        var length = segment.getShort(offset);
+        if (length == NULL_STRING)
+            return null;
+        var bytes = new byte[length];
+        segment.get(offset + Short.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
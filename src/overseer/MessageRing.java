@@ -0,0 +1,103 @@
+package overseer;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded multi-producer, single-consumer ring buffer for a client's message queue. Every slot carries a sequence
+ * number: a producer claims the next slot by moving the tail forward once the slot's sequence says that the consumer
+ * is done with it, puts the message in and publishes it by bumping the sequence. The consumer takes the messages out
+ * in batches without any locking.
+ *
+ * Messages are never dropped or refused, the Overseer can't take back a transaction that it has already accepted.
+ * When the ring is full they spill over into a locked overflow queue, and every producer keeps using the overflow
+ * until the consumer has emptied it, so the messages of one producer always come out in the order they went in.
+ * Keeping the ring from filling up is the job of the watermarks in ConnectedSocket.
+ */
+public class MessageRing {
+    private final AtomicReferenceArray<Object> messages;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong(0);
+    private long head = 0; // only touched by the consumer
+    private final ArrayDeque<Object> overflow = new ArrayDeque<>(); // guarded by itself
+    private volatile boolean isOverflowing = false;
+
+    /**
+     * @param capacity the amount of slots, rounded up to a power of two
+     */
+    public MessageRing(int capacity) {
+        var size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.messages = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (var i = 0; i < size; i++)
+            this.sequences.set(i, i);
+    }
+
+    public int getCapacity() {
+        return this.mask + 1;
+    }
+
+    /**
+     * Adds the message, safe to call from any thread
+     * @return false if the ring was full and the message went into the overflow queue
+     */
+    public boolean offer(Object message) {
+        if (!this.isOverflowing && offerToRing(message))
+            return true;
+        synchronized (this.overflow) {
+            this.overflow.add(message);
+            this.isOverflowing = true;
+        }
+        return false;
+    }
+
+    private boolean offerToRing(Object message) {
+        while (true) {
+            var position = this.tail.get();
+            var index = (int) position & this.mask;
+            var difference = this.sequences.get(index) - position;
+            if (difference == 0) {
+                if (this.tail.compareAndSet(position, position + 1)) {
+                    this.messages.lazySet(index, message);
+                    this.sequences.set(index, position + 1);
+                    return true;
+                }
+            } else if (difference < 0) {
+                return false; // the consumer hasn't taken out the message from one lap ago yet
+            }
+            // else another producer got the slot first, try the next one
+        }
+    }
+
+    /**
+     * Moves up to batch.length messages into the batch, only called by the consumer. The overflow queue is only
+     * looked at once the ring is empty, everything in it was added after the ring filled up
+     * @return the amount of messages in the batch
+     */
+    public int drainTo(Object[] batch) {
+        var count = 0;
+        while (count < batch.length && this.head != this.tail.get()) {
+            var index = (int) this.head & this.mask;
+            // the slot has been claimed but the producer is still putting the message in
+            while (this.sequences.get(index) != this.head + 1)
+                Thread.onSpinWait();
+            batch[count++] = this.messages.get(index);
+            this.messages.lazySet(index, null);
+            this.sequences.set(index, this.head + this.mask + 1);
+            this.head++;
+        }
+        if (count < batch.length && this.isOverflowing) {
+            synchronized (this.overflow) {
+                while (count < batch.length && !this.overflow.isEmpty())
+                    batch[count++] = this.overflow.poll();
+                if (this.overflow.isEmpty())
+                    this.isOverflowing = false;
+            }
+        }
+        return count;
+    }
+}
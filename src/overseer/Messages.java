@@ -4,6 +4,8 @@ import java.io.Serializable;
 import java.util.UUID;
 
 public class Messages implements Serializable {
+    // pinned to the value of the original class, Threadneedle has its own copy of it and they have to match
+    private static final long serialVersionUID = 4727366101999354784L;
     private final String message;
     private final UUID sender;
 
@@ -0,0 +1,230 @@
+package overseer;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Where the step and transaction timings of the Overseer are recorded. Everything is recorded into lock-free
+ * Histograms in nanoseconds, and read out through the MetricsMXBean or the periodic metrics dump file.
+ */
+public class Metrics implements MetricsMXBean {
+    private static final long NANOS_PER_MICRO = 1000;
+
+    private final ServerData serverData;
+    private final Logger logger = new Logger();
+    private final Histogram stepTime = new Histogram();
+    private final Histogram barrierWait = new Histogram();
+    private final Histogram broadcast = new Histogram();
+    private final Histogram settlementDrain = new Histogram();
+    private final Histogram stepReportLag = new Histogram();
+    private final Histogram transactionRoundTrip = new Histogram();
+    private final Histogram queueDepth = new Histogram();
+    // counted by every client's thread, so they are kept in LongAdders instead of one contended AtomicLong
+    private final LongAdder writtenObjects = new LongAdder();
+    private final LongAdder socketWrites = new LongAdder();
+    private final LongAdder expiredTransactions = new LongAdder();
+    // when the current step was broadcast, 0 before the first step
+    private final AtomicLong stepStartNanos = new AtomicLong(0);
+    private ScheduledExecutorService dumpExecutor = null;
+
+    Metrics(ServerData serverData) {
+        this.serverData = serverData;
+    }
+
+    /**
+     * A new step has been broadcast, which also ends the step before it
+     */
+    public void startStep(long nanos) {
+        var previousStart = this.stepStartNanos.getAndSet(nanos);
+        if (previousStart != 0)
+            this.stepTime.record(nanos - previousStart);
+    }
+
+    public long getStepStartNanos() {
+        return this.stepStartNanos.get();
+    }
+
+    public void recordBroadcast(long nanos) {
+        this.broadcast.record(nanos);
+    }
+
+    public void recordBarrierWait(long nanos) {
+        this.barrierWait.record(nanos);
+    }
+
+    public void recordSettlementDrain(long nanos) {
+        this.settlementDrain.record(nanos);
+    }
+
+    public void recordStepReportLag(long nanos) {
+        this.stepReportLag.record(nanos);
+    }
+
+    public void recordTransactionRoundTrip(long nanos) {
+        this.transactionRoundTrip.record(nanos);
+    }
+
+    public void recordQueueDepth(int depth) {
+        this.queueDepth.record(depth);
+    }
+
+    public void recordWrittenObject() {
+        this.writtenObjects.increment();
+    }
+
+    /**
+     * A transport has handed bytes to the socket, roughly one write system call
+     */
+    public void recordSocketWrite() {
+        this.socketWrites.increment();
+    }
+
+    /**
+     * A transaction was still pending at its deadline and has been reverted
+     */
+    public void recordExpiredTransaction() {
+        this.expiredTransactions.increment();
+    }
+
+    @Override
+    public HistogramSnapshot getStepTime() {
+        return this.stepTime.getSnapshot(NANOS_PER_MICRO);
+    }
+
+    @Override
+    public HistogramSnapshot getBarrierWait() {
+        return this.barrierWait.getSnapshot(NANOS_PER_MICRO);
+    }
+
+    @Override
+    public HistogramSnapshot getBroadcast() {
+        return this.broadcast.getSnapshot(NANOS_PER_MICRO);
+    }
+
+    @Override
+    public HistogramSnapshot getSettlementDrain() {
+        return this.settlementDrain.getSnapshot(NANOS_PER_MICRO);
+    }
+
+    @Override
+    public HistogramSnapshot getStepReportLag() {
+        return this.stepReportLag.getSnapshot(NANOS_PER_MICRO);
+    }
+
+    @Override
+    public HistogramSnapshot getTransactionRoundTrip() {
+        return this.transactionRoundTrip.getSnapshot(NANOS_PER_MICRO);
+    }
+
+    @Override
+    public HistogramSnapshot getQueueDepth() {
+        return this.queueDepth.getSnapshot(1);
+    }
+
+    @Override
+    public Map<String, Integer> getClientQueueDepths() {
+        var depths = new TreeMap<String, Integer>();
+        this.serverData.getConnectedSockets().forEach((clientId, socket) ->
+                depths.put(clientId.toString(), socket.getMessageQueueDepth()));
+        return depths;
+    }
+
+    @Override
+    public long getWrittenObjects() {
+        return this.writtenObjects.sum();
+    }
+
+    @Override
+    public long getSocketWrites() {
+        return this.socketWrites.sum();
+    }
+
+    @Override
+    public long getExpiredTransactions() {
+        return this.expiredTransactions.sum();
+    }
+
+    @Override
+    public int getCurrentStep() {
+        return this.serverData.getCurrentStep();
+    }
+
+    @Override
+    public long getCompletedTransactions() {
+        return this.transactionRoundTrip.getCount();
+    }
+
+    /**
+     * Makes the metrics available through JMX
+     */
+    public void registerMBean() {
+        try {
+            var name = new ObjectName(String.format("overseer:type=Metrics,port=%s", this.serverData.getPortNumber()));
+            var server = ManagementFactory.getPlatformMBeanServer();
+            if (!server.isRegistered(name))
+                server.registerMBean(this, name);
+        } catch (JMException e) {
+            logger.logMetricsError(e);
+        }
+    }
+
+    /**
+     * Writes the metrics to the file every interval, on a background thread. The file is replaced each time
+     * @param path the metrics dump file
+     * @param intervalSeconds the time between two dumps
+     */
+    public synchronized void startDump(Path path, int intervalSeconds) {
+        if (this.dumpExecutor != null)
+            this.dumpExecutor.shutdownNow();
+        this.dumpExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "Overseer-Metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.dumpExecutor.scheduleAtFixedRate(() -> dump(path), intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    private void dump(Path path) {
+        var text = new StringBuilder();
+        text.append("time=").append(Instant.now()).append(System.lineSeparator());
+        text.append("currentStep=").append(getCurrentStep()).append(System.lineSeparator());
+        appendHistogram(text, "stepTimeMicros", getStepTime());
+        appendHistogram(text, "barrierWaitMicros", getBarrierWait());
+        appendHistogram(text, "broadcastMicros", getBroadcast());
+        appendHistogram(text, "settlementDrainMicros", getSettlementDrain());
+        appendHistogram(text, "stepReportLagMicros", getStepReportLag());
+        appendHistogram(text, "transactionRoundTripMicros", getTransactionRoundTrip());
+        appendHistogram(text, "queueDepth", getQueueDepth());
+        text.append("writtenObjects=").append(getWrittenObjects()).append(System.lineSeparator());
+        text.append("socketWrites=").append(getSocketWrites()).append(System.lineSeparator());
+        text.append("expiredTransactions=").append(getExpiredTransactions()).append(System.lineSeparator());
+        getClientQueueDepths().forEach((clientId, depth) ->
+                text.append("queueDepth.").append(clientId).append('=').append(depth).append(System.lineSeparator()));
+
+        try {
+            var temporaryFile = path.resolveSibling(path.getFileName() + ".tmp");
+            Files.write(temporaryFile, text.toString().getBytes(StandardCharsets.UTF_8));
+            Files.move(temporaryFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.logMetricsError(e);
+        }
+    }
+
+    private static void appendHistogram(StringBuilder text, String name, HistogramSnapshot snapshot) {
+        text.append(name).append(' ').append(snapshot).append(System.lineSeparator());
+    }
+}
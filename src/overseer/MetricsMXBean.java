@@ -0,0 +1,46 @@
+package overseer;
+
+import java.util.Map;
+
+/**
+ * The Overseer's metrics as seen through JMX, under the name overseer:type=Metrics,port=[port].
+ * Times are in microseconds.
+ */
+public interface MetricsMXBean {
+    /** Time from one NextStep: broadcast to the next */
+    HistogramSnapshot getStepTime();
+
+    /** Time from the NextStep: broadcast until every client has reported the step */
+    HistogramSnapshot getBarrierWait();
+
+    /** Time it takes to queue the NextStep: message for every client */
+    HistogramSnapshot getBroadcast();
+
+    /** Time from the last client's report until every pending transaction has settled */
+    HistogramSnapshot getSettlementDrain();
+
+    /** Time from a client being told to take a step until it reports it */
+    HistogramSnapshot getStepReportLag();
+
+    /** Time from an AccountTransaction arriving at the Overseer until it is done */
+    HistogramSnapshot getTransactionRoundTrip();
+
+    /** The message queue depths of the clients, sampled every time a client is told to take a step */
+    HistogramSnapshot getQueueDepth();
+
+    /** The current message queue depth of every connected client, by client ID */
+    Map<String, Integer> getClientQueueDepths();
+
+    /** How many objects have been written to the clients */
+    long getWrittenObjects();
+
+    /** How many times bytes have been handed to a client's socket, the objects of a queue drain share one write */
+    long getSocketWrites();
+
+    /** How many transactions were still pending at their deadline and have been reverted */
+    long getExpiredTransactions();
+
+    int getCurrentStep();
+
+    long getCompletedTransactions();
+}
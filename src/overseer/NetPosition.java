@@ -0,0 +1,37 @@
+package overseer;
+
+import java.io.Serializable;
+
+/**
+ * The net amount that a single person's account at a bank has to be credited (positive) or debited (negative)
+ * with, after all of a step's transfers have been netted against each other
+ */
+public class NetPosition implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final Integer bankId;
+    private final String personId;
+    private long amount;
+
+    public NetPosition(Integer bankId, String personId, long amount) {
+        this.bankId = bankId;
+        this.personId = personId;
+        this.amount = amount;
+    }
+
+    public Integer getBankId() {
+        return bankId;
+    }
+
+    public String getPersonId() {
+        return personId;
+    }
+
+    public long getAmount() {
+        return amount;
+    }
+
+    public void addAmount(long amount) {
+        this.amount += amount;
+    }
+}
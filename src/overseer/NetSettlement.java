@@ -0,0 +1,45 @@
+package overseer;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.UUID;
+
+/**
+ * The one instruction that a client gets per settled step in the net settlement mode. It holds the client's net
+ * position per bank and person, and the IDs of the client's own outgoing transfers that the positions settle.
+ */
+public class NetSettlement implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final UUID sender;
+    private final Integer step;
+    private final ArrayList<NetPosition> netPositions;
+    private final ArrayList<UUID> transactionIds;
+
+    public NetSettlement(UUID sender, Integer step) {
+        this(sender, step, new ArrayList<>(), new ArrayList<>());
+    }
+
+    public NetSettlement(UUID sender, Integer step, ArrayList<NetPosition> netPositions, ArrayList<UUID> transactionIds) {
+        this.sender = sender;
+        this.step = step;
+        this.netPositions = netPositions;
+        this.transactionIds = transactionIds;
+    }
+
+    public UUID getSender() {
+        return sender;
+    }
+
+    public Integer getStep() {
+        return step;
+    }
+
+    public ArrayList<NetPosition> getNetPositions() {
+        return netPositions;
+    }
+
+    public ArrayList<UUID> getTransactionIds() {
+        return transactionIds;
+    }
+}
@@ -0,0 +1,85 @@
+package overseer;
+
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Collects the transfers of the net settlement mode per step instead of forwarding them one by one. Once every client
+ * has reported a step, its transfers are netted against each other into a single NetSettlement per client, holding
+ * the net position of every bank and person the client had a transfer with.
+ */
+public class NettingLedger {
+    private final ConcurrentSkipListMap<Integer, ConcurrentLinkedQueue<AccountTransaction>> transactionsByStep =
+            new ConcurrentSkipListMap<>();
+
+    /**
+     * @param step the step that the client was at when it sent the transfer
+     * @param accountTransaction the transfer
+     */
+    public void addTransaction(int step, AccountTransaction accountTransaction) {
+        this.transactionsByStep.computeIfAbsent(step, s -> new ConcurrentLinkedQueue<>()).add(accountTransaction);
+    }
+
+    public boolean isEmpty() {
+        return this.transactionsByStep.isEmpty();
+    }
+
+    /**
+     * Nets the transfers of every step up to and including the given step and takes them out of the ledger
+     * @param upToStep the last step that every client has reported
+     * @param sender the ID that the settlements are sent with
+     * @param settledTransactions gets every transfer that was settled
+     * @return one settlement per client that had a transfer, by client ID
+     */
+    public HashMap<UUID, NetSettlement> settle(int upToStep, UUID sender,
+                                               Consumer<AccountTransaction> settledTransactions) {
+        var settlements = new HashMap<UUID, NetSettlement>();
+        var positionsByClientId = new HashMap<UUID, HashMap<Map.Entry<Integer, String>, NetPosition>>();
+
+        Map.Entry<Integer, ConcurrentLinkedQueue<AccountTransaction>> entry;
+        while ((entry = this.transactionsByStep.firstEntry()) != null && entry.getKey() <= upToStep) {
+            this.transactionsByStep.remove(entry.getKey());
+            for (var accountTransaction : entry.getValue()) {
+                long amount = accountTransaction.getAmountTo();
+                addToPosition(positionsByClientId, accountTransaction.getClientIdFrom(),
+                        accountTransaction.getBankIdFrom(), accountTransaction.getPersonIdFrom(), -amount);
+                addToPosition(positionsByClientId, accountTransaction.getClientIdTo(),
+                        accountTransaction.getBankIdTo(), accountTransaction.getPeronIdTo(), amount);
+
+                getSettlement(settlements, accountTransaction.getClientIdFrom(), sender, upToStep)
+                        .getTransactionIds().add(accountTransaction.getTransactionId());
+                getSettlement(settlements, accountTransaction.getClientIdTo(), sender, upToStep);
+                settledTransactions.accept(accountTransaction);
+            }
+        }
+
+        positionsByClientId.forEach((clientId, positions) -> {
+            var netPositions = settlements.get(clientId).getNetPositions();
+            for (var netPosition : positions.values()) {
+                // transfers that cancel each other out leave nothing to settle
+                if (netPosition.getAmount() != 0)
+                    netPositions.add(netPosition);
+            }
+        });
+        return settlements;
+    }
+
+    private static NetSettlement getSettlement(HashMap<UUID, NetSettlement> settlements, UUID clientId, UUID sender,
+                                               int step) {
+        return settlements.computeIfAbsent(clientId, id -> new NetSettlement(sender, step));
+    }
+
+    private static void addToPosition(HashMap<UUID, HashMap<Map.Entry<Integer, String>, NetPosition>> positionsByClientId,
+                                      UUID clientId, Integer bankId, String personId, long amount) {
+        positionsByClientId
+                .computeIfAbsent(clientId, id -> new HashMap<>())
+                .computeIfAbsent(new AbstractMap.SimpleImmutableEntry<>(bankId, personId),
+                        key -> new NetPosition(bankId, personId, 0))
+                .addAmount(amount);
+    }
+}
@@ -0,0 +1,216 @@
+package overseer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A single Threadneedle client in the NIO connection mode. The connection is owned by one of NioTransport's
+ * selector loops and is only ever read from, written to and processed on that loop's thread.
+ * Frames are decoded with the client's WireCodec once all of their bytes have arrived.
+ */
+public class NioConnection implements ClientWriter {
+    private static final int INITIAL_READ_BUFFER_SIZE = 16 * 1024;
+    private static final int MAX_GATHERING_WRITE = 64; // how many buffers are handed to a single write call
+    private static final BroadcastFrame NO_FRAME = new BroadcastFrame(null); // ArrayDeque takes no nulls
+
+    private final SocketChannel channel;
+    private final ClientSession clientSession;
+    private final Logger logger = new Logger();
+    private final ArrayDeque<ByteBuffer> outboundBuffers = new ArrayDeque<>();
+    // the broadcast frame of every outbound buffer that is a view of one, NO_FRAME for the rest
+    private final ArrayDeque<BroadcastFrame> outboundFrames = new ArrayDeque<>();
+    private final ByteBuffer[] gatheringBuffers = new ByteBuffer[MAX_GATHERING_WRITE];
+    // set while the connection sits in its loop's ready queue, so it is only queued up once
+    private final AtomicBoolean isScheduled = new AtomicBoolean(false);
+    private ByteBuffer readBuffer = ByteBuffer.allocate(INITIAL_READ_BUFFER_SIZE);
+    private SelectionKey selectionKey;
+    private boolean isClosed = false;
+    // the ClientSession has flushed, so the outbound buffers are written out after the drain instead of lingering
+    private boolean isFlushRequested = false;
+    // a write didn't take all of the outbound buffers, the rest goes out once the channel is writable
+    private boolean isWritePending = false;
+    // when the lingering writes are due, 0 if none are. Only touched by the loop's own thread
+    private long lingerDeadlineNanos = 0;
+    private final Metrics metrics;
+
+    NioConnection(SocketChannel channel, ServerData serverData) {
+        this.channel = channel;
+        this.clientSession = new ClientSession(channel.socket(), serverData, this);
+        this.metrics = serverData.getMetrics();
+    }
+
+    public SocketChannel getChannel() {
+        return channel;
+    }
+
+    public ClientSession getClientSession() {
+        return clientSession;
+    }
+
+    public void setSelectionKey(SelectionKey selectionKey) {
+        this.selectionKey = selectionKey;
+    }
+
+    public AtomicBoolean getIsScheduled() {
+        return isScheduled;
+    }
+
+    public boolean isClosed() {
+        return isClosed;
+    }
+
+    public long getLingerDeadlineNanos() {
+        return lingerDeadlineNanos;
+    }
+
+    public void setLingerDeadlineNanos(long lingerDeadlineNanos) {
+        this.lingerDeadlineNanos = lingerDeadlineNanos;
+    }
+
+    /**
+     * Reads whatever the channel has for us and hands every complete object to the ClientSession
+     */
+    public void read() throws IOException, ClassNotFoundException {
+        if (!this.readBuffer.hasRemaining())
+            growReadBuffer();
+
+        if (this.channel.read(this.readBuffer) == -1) {
+            close();
+            return;
+        }
+        this.readBuffer.flip();
+        try {
+            // a client that has been refused during the handshake isn't read from anymore
+            while (this.readBuffer.hasRemaining() && this.clientSession.isConnected()) {
+                var object = this.clientSession.getWireCodec().decode(this.readBuffer);
+                if (object == null)
+                    break;
+                this.clientSession.onObjectRead(object);
+            }
+        } finally {
+            this.readBuffer.compact();
+        }
+    }
+
+    private void growReadBuffer() {
+        var grownBuffer = ByteBuffer.allocate(this.readBuffer.capacity() * 2);
+        this.readBuffer.flip();
+        grownBuffer.put(this.readBuffer);
+        this.readBuffer = grownBuffer;
+    }
+
+    /**
+     * Encodes the object and queues it up for the selector loop to write out
+     * @param object the object being sent
+     */
+    @Override
+    public void writeObject(Object object) {
+        try {
+            this.outboundBuffers.add(ByteBuffer.wrap(this.clientSession.getWireCodec().encode(object)));
+            this.outboundFrames.add(NO_FRAME);
+        } catch (IOException e) {
+            System.err.println("WriteObject error, object could not be serialized");
+        }
+    }
+
+    /**
+     * Queues up a view of the frame's shared direct buffer, the frame is released once it has all been written
+     * @param broadcastFrame the frame
+     */
+    @Override
+    public void writeFrame(BroadcastFrame broadcastFrame) {
+        try {
+            this.outboundBuffers.add(broadcastFrame.getBuffer(this.clientSession.getWireCodec()));
+            this.outboundFrames.add(broadcastFrame);
+        } catch (IOException e) {
+            broadcastFrame.release();
+            System.err.println("WriteObject error, object could not be serialized");
+        }
+    }
+
+    /**
+     * The outbound buffers are written out by the selector loop once the drain is done
+     */
+    @Override
+    public void flush() {
+        this.isFlushRequested = true;
+    }
+
+    /**
+     * Writes as much of the queued up data as the channel accepts, using gathering writes.
+     * Whatever is left over gets written once the selector reports the channel as writable again
+     */
+    private void writeOutboundBuffers() throws IOException {
+        while (!this.outboundBuffers.isEmpty()) {
+            var count = 0;
+            for (var buffer : this.outboundBuffers) {
+                if (count == MAX_GATHERING_WRITE) break;
+                this.gatheringBuffers[count++] = buffer;
+            }
+            var written = this.channel.write(this.gatheringBuffers, 0, count);
+            this.metrics.recordSocketWrite();
+            while (!this.outboundBuffers.isEmpty() && !this.outboundBuffers.peekFirst().hasRemaining())
+                pollOutboundBuffer();
+            if (written == 0) break;
+        }
+        Arrays.fill(this.gatheringBuffers, null);
+        this.isWritePending = !this.outboundBuffers.isEmpty();
+    }
+
+    /**
+     * The channel is only read from while the client's reads are not paused by a full message queue
+     */
+    private void updateInterestOps() {
+        if (this.selectionKey != null && this.selectionKey.isValid())
+            this.selectionKey.interestOps((this.clientSession.isReadPaused() ? 0 : SelectionKey.OP_READ)
+                    | (this.isWritePending ? SelectionKey.OP_WRITE : 0));
+    }
+
+    private void pollOutboundBuffer() {
+        this.outboundBuffers.pollFirst();
+        var broadcastFrame = this.outboundFrames.pollFirst();
+        if (broadcastFrame != NO_FRAME)
+            broadcastFrame.release();
+    }
+
+    /**
+     * Processes the client's message queue, writes out the results and closes the connection if the client
+     * has asked for it
+     * @return the time in nanoseconds until the writes that are lingering are due, 0 if there are none.
+     * The connection has to be drained again by then
+     */
+    public long drain() throws IOException {
+        var lingerNanos = this.clientSession.checkMessageQueue();
+        if (this.isFlushRequested || this.isWritePending) {
+            this.isFlushRequested = false;
+            writeOutboundBuffers();
+        }
+        updateInterestOps();
+        if (!this.clientSession.isConnected())
+            close();
+        return lingerNanos;
+    }
+
+    /**
+     * Closes the channel and removes the client from the server data, safe to call more than once
+     */
+    public void close() {
+        if (this.isClosed) return;
+        this.isClosed = true;
+
+        if (this.selectionKey != null)
+            this.selectionKey.cancel();
+        while (!this.outboundBuffers.isEmpty())
+            pollOutboundBuffer();
+        try {
+            this.clientSession.closeSocket();
+        } catch (IOException e) {
+            logger.logTransportError(String.valueOf(this.clientSession.getClientId()), e);
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package overseer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The NIO connection mode. Instead of a ConnectionThread per client (plus a new Thread for every read), all clients
+ * are spread over a small fixed set of selector loops that accept, read, decode, process and write for them.
+ * The first loop also accepts the incoming connections, as long as the connection limit has not been reached.
+ * Everything that gets read ends up in the same ServerData as in the thread mode, so the Server does not know
+ * the difference.
+ */
+public class NioTransport {
+    private static final long SELECT_TIMEOUT = 100; // ms, how often the loops re-check the connection limit and closed sockets
+
+    private final ServerData serverData;
+    private final HandshakeMonitor handshakeMonitor;
+    private final Logger logger = new Logger();
+    private final Debug debug = new Debug();
+    private ServerSocketChannel serverChannel;
+    private IoLoop[] ioLoops;
+    private int nextIoLoop = 0;
+
+    NioTransport(ServerData serverData, HandshakeMonitor handshakeMonitor) {
+        this.serverData = serverData;
+        this.handshakeMonitor = handshakeMonitor;
+    }
+
+    /**
+     * Opens the server channel and the selectors of the I/O loops
+     * @param portNumber the port the server listens on
+     * @param backlog how many connections the OS queues up before they are accepted
+     * @return the ServerSocket of the channel, so the Server can use it like the one in the thread mode
+     */
+    public ServerSocket bind(int portNumber, int backlog) throws IOException {
+        this.serverChannel = ServerSocketChannel.open();
+        this.serverChannel.bind(new InetSocketAddress(portNumber), backlog);
+        this.serverChannel.configureBlocking(false);
+
+        this.ioLoops = new IoLoop[this.serverData.getIoThreads()];
+        for (var i = 0; i < this.ioLoops.length; i++)
+            this.ioLoops[i] = new IoLoop(i, Selector.open());
+
+        this.ioLoops[0].acceptKey = this.serverChannel.register(this.ioLoops[0].selector, SelectionKey.OP_ACCEPT);
+        return this.serverChannel.socket();
+    }
+
+    public void start() {
+        for (var ioLoop : this.ioLoops)
+            ioLoop.start();
+        logger.logNioTransportStarted(this.ioLoops.length);
+    }
+
+    /**
+     * Accepts all the pending connections, for as long as the connection limit allows,
+     * and hands them out to the I/O loops in a round-robin fashion
+     */
+    private void acceptConnections() throws IOException {
+        while (this.serverData.canAcceptConnection()) {
+            if(this.serverData.isDebugEnabled())
+                debug.serverAcceptConnections(this.serverData.getCurrentConnections(), this.serverData.getMaxClients());
+
+            SocketChannel channel = this.serverChannel.accept();
+            if (channel == null)
+                return;
+
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            this.serverData.incrementCurrentConnections();
+
+            var ioLoop = this.ioLoops[this.nextIoLoop];
+            this.nextIoLoop = (this.nextIoLoop + 1) % this.ioLoops.length;
+            var connection = new NioConnection(channel, this.serverData);
+            ioLoop.register(connection);
+            this.handshakeMonitor.watch(channel.socket(), connection.getClientSession());
+        }
+    }
+
+    /**
+     * A single selector thread and the connections that it owns
+     */
+    private class IoLoop extends Thread {
+        private final Selector selector;
+        private final ArrayList<NioConnection> connections = new ArrayList<>();
+        private final ConcurrentLinkedQueue<NioConnection> pendingRegistrations = new ConcurrentLinkedQueue<>();
+        // connections that have something in their message queue
+        private final ConcurrentLinkedQueue<NioConnection> readyConnections = new ConcurrentLinkedQueue<>();
+        // connections with writes that linger until their deadline, only touched by the loop's own thread
+        private final ArrayDeque<NioConnection> lingeringConnections = new ArrayDeque<>();
+        private SelectionKey acceptKey = null;
+
+        IoLoop(int index, Selector selector) {
+            super("Overseer-IO-" + index);
+            this.selector = selector;
+        }
+
+        /**
+         * Can be called from any thread, the connection gets registered with the selector on the loop's own thread
+         */
+        void register(NioConnection connection) {
+            this.pendingRegistrations.add(connection);
+            this.selector.wakeup();
+        }
+
+        /**
+         * Gets called by whoever adds something to the connection's message queue
+         */
+        void schedule(NioConnection connection) {
+            if (!connection.getIsScheduled().compareAndSet(false, true))
+                return;
+            this.readyConnections.add(connection);
+            if (Thread.currentThread() != this)
+                this.selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (serverChannel.isOpen()) {
+                    if (this.acceptKey != null && this.acceptKey.isValid())
+                        this.acceptKey.interestOps(serverData.canAcceptConnection() ? SelectionKey.OP_ACCEPT : 0);
+
+                    var timeout = getSelectTimeout();
+                    var selected = timeout == 0 ? this.selector.selectNow() : this.selector.select(timeout);
+                    if (selected == 0 && timeout == SELECT_TIMEOUT)
+                        closeDisconnectedConnections();
+
+                    registerPendingConnections();
+                    processSelectedKeys();
+                    drainReadyConnections();
+                    drainLingeringConnections();
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                logger.logServerError(e);
+            } finally {
+                this.connections.forEach(NioConnection::close);
+            }
+        }
+
+        private void registerPendingConnections() throws IOException {
+            NioConnection connection;
+            while ((connection = this.pendingRegistrations.poll()) != null) {
+                var finalConnection = connection;
+                finalConnection.setSelectionKey(
+                        finalConnection.getChannel().register(this.selector, SelectionKey.OP_READ, finalConnection));
+                finalConnection.getClientSession().setMessageListener(() -> schedule(finalConnection));
+                // draining the connection puts OP_READ back in its interest set
+                finalConnection.getClientSession().setReadResumeListener(() -> schedule(finalConnection));
+                this.connections.add(finalConnection);
+            }
+        }
+
+        private void processSelectedKeys() throws IOException {
+            var selectedKeys = this.selector.selectedKeys();
+            for (var key : selectedKeys) {
+                if (!key.isValid())
+                    continue;
+                if (key.isAcceptable()) {
+                    acceptConnections();
+                    continue;
+                }
+                var connection = (NioConnection) key.attachment();
+                try {
+                    if (key.isReadable())
+                        connection.read();
+                    if (!connection.isClosed())
+                        linger(connection, connection.drain());
+                } catch (IOException | ClassNotFoundException e) {
+                    logger.logTransportError(String.valueOf(connection.getClientSession().getClientId()), e);
+                    connection.close();
+                }
+                if (connection.isClosed())
+                    this.connections.remove(connection);
+            }
+            selectedKeys.clear();
+        }
+
+        private void drainReadyConnections() {
+            NioConnection connection;
+            while ((connection = this.readyConnections.poll()) != null) {
+                connection.getIsScheduled().set(false);
+                if (connection.isClosed())
+                    continue;
+                drain(connection);
+            }
+        }
+
+        /**
+         * Drains the connections whose lingering writes are due, which flushes them
+         */
+        private void drainLingeringConnections() {
+            var now = System.nanoTime();
+            for (var count = this.lingeringConnections.size(); count > 0; count--) {
+                var connection = this.lingeringConnections.poll();
+                if (connection.isClosed())
+                    continue;
+                if (connection.getLingerDeadlineNanos() - now > 0) {
+                    this.lingeringConnections.add(connection);
+                    continue;
+                }
+                connection.setLingerDeadlineNanos(0);
+                drain(connection);
+            }
+        }
+
+        private void drain(NioConnection connection) {
+            try {
+                linger(connection, connection.drain());
+            } catch (IOException e) {
+                logger.logTransportError(String.valueOf(connection.getClientSession().getClientId()), e);
+                connection.close();
+            }
+            if (connection.isClosed())
+                this.connections.remove(connection);
+        }
+
+        /**
+         * Remembers to drain the connection again once its lingering writes are due
+         * @param lingerNanos what the drain returned, 0 if nothing is lingering
+         */
+        private void linger(NioConnection connection, long lingerNanos) {
+            if (lingerNanos <= 0 || connection.getLingerDeadlineNanos() != 0)
+                return;
+            connection.setLingerDeadlineNanos(System.nanoTime() + lingerNanos);
+            this.lingeringConnections.add(connection);
+        }
+
+        /**
+         * @return how long the selector may wait in ms, only until the first lingering writes are due. 0 means that
+         * they are due already
+         */
+        private long getSelectTimeout() {
+            if (this.lingeringConnections.isEmpty())
+                return SELECT_TIMEOUT;
+            var now = System.nanoTime();
+            var timeout = Long.MAX_VALUE;
+            for (var connection : this.lingeringConnections)
+                timeout = Math.min(timeout, connection.getLingerDeadlineNanos() - now);
+            if (timeout <= 0)
+                return 0;
+            return Math.min(SELECT_TIMEOUT, Math.max(1, TimeUnit.NANOSECONDS.toMillis(timeout)));
+        }
+
+        /**
+         * Sockets that get closed from outside the loop (ServerData.closeAllSockets()) never show up as selected keys
+         */
+        private void closeDisconnectedConnections() {
+            this.connections.removeIf(connection -> {
+                if (connection.getChannel().isOpen())
+                    return false;
+                connection.close();
+                return true;
+            });
+        }
+    }
+}
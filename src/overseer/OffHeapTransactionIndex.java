@@ -0,0 +1,146 @@
+package overseer;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An open addressing hash table from transaction ID to record number that lives in direct buffers, so it doesn't
+ * cost the garbage collector anything no matter how many entries it holds. Each entry is the two longs of the
+ * UUID followed by the record number, collisions are resolved by linear probing.
+ * The table is spread over segments of SEGMENT_ENTRIES entries, like the ledger's file, so it isn't limited to
+ * what a single direct buffer can hold.
+ * The all zero UUID marks an empty entry and can't be used as a key.
+ */
+public class OffHeapTransactionIndex {
+    private static final int ENTRY_SIZE = 3 * Long.BYTES;
+    private static final int MOST_SIGNIFICANT_BITS = 0;
+    private static final int LEAST_SIGNIFICANT_BITS = Long.BYTES;
+    private static final int RECORD_NUMBER = 2 * Long.BYTES;
+    private static final int SEGMENT_SHIFT = 20;
+    private static final int SEGMENT_ENTRIES = 1 << SEGMENT_SHIFT; // 24 MB per segment
+    public static final long NOT_FOUND = -1;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private ByteBuffer[] segments;
+    private long capacity; // always a power of two
+    private long size = 0;
+
+    public OffHeapTransactionIndex(int initialCapacity) {
+        this.capacity = Long.highestOneBit(Math.max(16, initialCapacity - 1) << 1);
+        this.segments = allocateSegments(this.capacity);
+    }
+
+    /**
+     * @throws IllegalArgumentException for the all zero UUID
+     */
+    public void put(UUID transactionId, long recordNumber) {
+        var mostSignificantBits = transactionId.getMostSignificantBits();
+        var leastSignificantBits = transactionId.getLeastSignificantBits();
+        if (mostSignificantBits == 0 && leastSignificantBits == 0)
+            throw new IllegalArgumentException("The all zero UUID can't be indexed");
+
+        this.lock.writeLock().lock();
+        try {
+            // stays under a load factor of 0.75
+            if ((this.size + 1) * 4 > this.capacity * 3)
+                grow();
+            if (insert(this.segments, this.capacity, mostSignificantBits, leastSignificantBits, recordNumber))
+                this.size++;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the record number of the transaction, NOT_FOUND if it isn't in the index
+     */
+    public long get(UUID transactionId) {
+        var mostSignificantBits = transactionId.getMostSignificantBits();
+        var leastSignificantBits = transactionId.getLeastSignificantBits();
+
+        this.lock.readLock().lock();
+        try {
+            var mask = this.capacity - 1;
+            for (var slot = hash(mostSignificantBits, leastSignificantBits) & mask; ; slot = (slot + 1) & mask) {
+                var entries = getSegment(this.segments, slot);
+                var offset = getOffsetInSegment(slot);
+                var entryMostSignificantBits = entries.getLong(offset + MOST_SIGNIFICANT_BITS);
+                var entryLeastSignificantBits = entries.getLong(offset + LEAST_SIGNIFICANT_BITS);
+                if (entryMostSignificantBits == 0 && entryLeastSignificantBits == 0)
+                    return NOT_FOUND;
+                if (entryMostSignificantBits == mostSignificantBits && entryLeastSignificantBits == leastSignificantBits)
+                    return entries.getLong(offset + RECORD_NUMBER);
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    public long size() {
+        this.lock.readLock().lock();
+        try {
+            return this.size;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    private void grow() {
+        var grownCapacity = this.capacity * 2;
+        var grownSegments = allocateSegments(grownCapacity);
+        for (var slot = 0L; slot < this.capacity; slot++) {
+            var entries = getSegment(this.segments, slot);
+            var offset = getOffsetInSegment(slot);
+            var mostSignificantBits = entries.getLong(offset + MOST_SIGNIFICANT_BITS);
+            var leastSignificantBits = entries.getLong(offset + LEAST_SIGNIFICANT_BITS);
+            if (mostSignificantBits != 0 || leastSignificantBits != 0)
+                insert(grownSegments, grownCapacity, mostSignificantBits, leastSignificantBits,
+                        entries.getLong(offset + RECORD_NUMBER));
+        }
+        this.segments = grownSegments;
+        this.capacity = grownCapacity;
+    }
+
+    /**
+     * @return true if a new entry was added, false if an existing one was overwritten
+     */
+    private static boolean insert(ByteBuffer[] segments, long capacity, long mostSignificantBits,
+                                  long leastSignificantBits, long recordNumber) {
+        var mask = capacity - 1;
+        for (var slot = hash(mostSignificantBits, leastSignificantBits) & mask; ; slot = (slot + 1) & mask) {
+            var entries = getSegment(segments, slot);
+            var offset = getOffsetInSegment(slot);
+            var entryMostSignificantBits = entries.getLong(offset + MOST_SIGNIFICANT_BITS);
+            var entryLeastSignificantBits = entries.getLong(offset + LEAST_SIGNIFICANT_BITS);
+            var isEmpty = entryMostSignificantBits == 0 && entryLeastSignificantBits == 0;
+            if (isEmpty || (entryMostSignificantBits == mostSignificantBits && entryLeastSignificantBits == leastSignificantBits)) {
+                entries.putLong(offset + MOST_SIGNIFICANT_BITS, mostSignificantBits);
+                entries.putLong(offset + LEAST_SIGNIFICANT_BITS, leastSignificantBits);
+                entries.putLong(offset + RECORD_NUMBER, recordNumber);
+                return isEmpty;
+            }
+        }
+    }
+
+    private static ByteBuffer[] allocateSegments(long capacity) {
+        var segments = new ByteBuffer[(int) Math.max(1, capacity >>> SEGMENT_SHIFT)];
+        var entriesPerSegment = (int) Math.min(capacity, SEGMENT_ENTRIES);
+        for (var i = 0; i < segments.length; i++)
+            segments[i] = ByteBuffer.allocateDirect(entriesPerSegment * ENTRY_SIZE);
+        return segments;
+    }
+
+    private static ByteBuffer getSegment(ByteBuffer[] segments, long slot) {
+        return segments[(int) (slot >>> SEGMENT_SHIFT)];
+    }
+
+    private static int getOffsetInSegment(long slot) {
+        return (int) (slot & (SEGMENT_ENTRIES - 1)) * ENTRY_SIZE;
+    }
+
+    private static long hash(long mostSignificantBits, long leastSignificantBits) {
+        // the IDs from TransactionIds only differ in a counter, folding them would put them in runs next to each other
+        return PendingTransactionTable.mix(mostSignificantBits, leastSignificantBits);
+    }
+}
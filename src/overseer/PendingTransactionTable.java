@@ -0,0 +1,455 @@
+package overseer;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The transactions that are waiting to be settled, as fixed-size settlement records in an open addressing hash table
+ * that lives in direct buffers. A pending transaction costs RECORD_SIZE bytes off the heap instead of a map entry
+ * with a boxed key and the whole object graph of the transaction. The table is split into segments that are locked
+ * on their own, so clients that settle at the same time rarely wait on each other.
+ *
+ * A transaction is looked up by its ID and comes back out as a new AccountTransaction or TouristTransaction, its UUID
+ * view. The clients are kept as their slots in the ClientRegistry, and the person IDs as indexes into a table of
+ * every person ID that has been pending, there are only so many people in a simulation.
+ *
+ * Record layout, RECORD_SIZE bytes:
+ *  [UUID transactionId][long amount][long arrivalNanos][int type][int step]
+ *  [int fromSlot][int toSlot][int bankIdFrom][int bankIdTo][int personIdFrom][int personIdTo]
+ * A tourist transaction uses fromSlot, bankIdFrom and personIdFrom for its client, bank and person. Integers are
+ * Integer.MIN_VALUE for null, a client without a slot is ClientRegistry.NO_SLOT. The all zero transaction ID marks
+ * an empty record and can't be used. Collisions are resolved by linear probing, and removals shift the records after
+ * them back so no tombstones are left behind.
+ *
+ * The bits above TYPE_MASK in the type are flags for how far an account transaction has got in being settled:
+ * FLAG_SETTLING once someone has taken it on to settle it, and FLAG_REVERTING once its sender has been told to revert
+ * it. They make sure that a transaction that expires never gets a second outcome.
+ */
+public class PendingTransactionTable {
+    static final int RECORD_SIZE = 64;
+    private static final int SEGMENTS = 16; // a power of two
+    private static final int MAX_SEGMENT_CAPACITY = Integer.MAX_VALUE / RECORD_SIZE;
+    private static final int NOT_FOUND = -1;
+
+    private static final int TYPE_ACCOUNT_TRANSACTION = 1;
+    private static final int TYPE_TOURIST_TRANSACTION = 2;
+    private static final int TYPE_MASK = 0xFF;
+    private static final int FLAG_SETTLING = 0x100;
+    private static final int FLAG_REVERTING = 0x200;
+
+    private static final int MOST_SIGNIFICANT_BITS = 0;
+    private static final int LEAST_SIGNIFICANT_BITS = 8;
+    private static final int AMOUNT = 16;
+    private static final int ARRIVAL_NANOS = 24;
+    private static final int TYPE = 32;
+    private static final int STEP = 36;
+    private static final int FROM_SLOT = 40;
+    private static final int TO_SLOT = 44;
+    private static final int BANK_ID_FROM = 48;
+    private static final int BANK_ID_TO = 52;
+    private static final int PERSON_ID_FROM = 56;
+    private static final int PERSON_ID_TO = 60;
+
+    private static final int NULL_INTEGER = Integer.MIN_VALUE;
+
+    private final ClientRegistry clientRegistry;
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final AtomicInteger size = new AtomicInteger(0);
+    // the person IDs by their index and the other way around, they are only ever added, under the lock of personIndexes
+    private final ConcurrentHashMap<String, Integer> personIndexes = new ConcurrentHashMap<>();
+    private volatile String[] personIds = new String[64];
+
+    public PendingTransactionTable(ClientRegistry clientRegistry, int initialCapacity) {
+        this.clientRegistry = clientRegistry;
+        for (var i = 0; i < SEGMENTS; i++)
+            this.segments[i] = new Segment(initialCapacity / SEGMENTS);
+    }
+
+    /**
+     * @return true if the transaction was added, false if a transaction with its ID was pending already, whose record
+     * is left as it is. Someone may have taken it on to settle it, which a re-sent transaction must not undo
+     * @throws IllegalArgumentException for the all zero transaction ID
+     */
+    public boolean add(AccountTransaction accountTransaction) {
+        var fromSlot = getSlot(accountTransaction.getClientIdFrom());
+        var toSlot = getSlot(accountTransaction.getClientIdTo());
+        var personIdFrom = getPersonIndex(accountTransaction.getPersonIdFrom());
+        var personIdTo = getPersonIndex(accountTransaction.getPeronIdTo());
+        var transactionId = accountTransaction.getTransactionId();
+        var mostSignificantBits = transactionId.getMostSignificantBits();
+        var leastSignificantBits = transactionId.getLeastSignificantBits();
+
+        var segment = getSegment(mostSignificantBits, leastSignificantBits);
+        synchronized (segment) {
+            if (segment.find(mostSignificantBits, leastSignificantBits) != NOT_FOUND)
+                return false;
+            var offset = segment.insert(mostSignificantBits, leastSignificantBits);
+            var records = segment.records;
+            records.putLong(offset + AMOUNT, accountTransaction.getAmountTo());
+            records.putLong(offset + ARRIVAL_NANOS, accountTransaction.arrivalNanos);
+            records.putInt(offset + TYPE, TYPE_ACCOUNT_TRANSACTION);
+            records.putInt(offset + STEP, toInt(accountTransaction.getStep()));
+            records.putInt(offset + FROM_SLOT, fromSlot);
+            records.putInt(offset + TO_SLOT, toSlot);
+            records.putInt(offset + BANK_ID_FROM, toInt(accountTransaction.getBankIdFrom()));
+            records.putInt(offset + BANK_ID_TO, toInt(accountTransaction.getBankIdTo()));
+            records.putInt(offset + PERSON_ID_FROM, personIdFrom);
+            records.putInt(offset + PERSON_ID_TO, personIdTo);
+            this.size.incrementAndGet();
+            return true;
+        }
+    }
+
+    /**
+     * @return true if the transaction was added, false if a transaction with its ID was pending already, whose record
+     * is left as it is. Someone may have taken it on to settle it, which a re-sent transaction must not undo
+     * @throws IllegalArgumentException for the all zero transaction ID
+     */
+    public boolean add(TouristTransaction touristTransaction) {
+        var slot = getSlot(touristTransaction.getClientId());
+        var personId = getPersonIndex(touristTransaction.getPersonId());
+        var transactionId = touristTransaction.getTransactionId();
+        var mostSignificantBits = transactionId.getMostSignificantBits();
+        var leastSignificantBits = transactionId.getLeastSignificantBits();
+
+        var segment = getSegment(mostSignificantBits, leastSignificantBits);
+        synchronized (segment) {
+            if (segment.find(mostSignificantBits, leastSignificantBits) != NOT_FOUND)
+                return false;
+            var offset = segment.insert(mostSignificantBits, leastSignificantBits);
+            var records = segment.records;
+            records.putLong(offset + AMOUNT, touristTransaction.getAmount());
+            records.putLong(offset + ARRIVAL_NANOS, 0);
+            records.putInt(offset + TYPE, TYPE_TOURIST_TRANSACTION);
+            records.putInt(offset + STEP, toInt(touristTransaction.getStep()));
+            records.putInt(offset + FROM_SLOT, slot);
+            records.putInt(offset + TO_SLOT, ClientRegistry.NO_SLOT);
+            records.putInt(offset + BANK_ID_FROM, toInt(touristTransaction.getBankId()));
+            records.putInt(offset + BANK_ID_TO, NULL_INTEGER);
+            records.putInt(offset + PERSON_ID_FROM, personId);
+            records.putInt(offset + PERSON_ID_TO, NULL_INTEGER);
+            this.size.incrementAndGet();
+            return true;
+        }
+    }
+
+    /**
+     * @return the pending transaction, null if no pending account transaction has the ID
+     */
+    public AccountTransaction getAccountTransaction(UUID transactionId) {
+        return (AccountTransaction) find(transactionId, TYPE_ACCOUNT_TRANSACTION, false);
+    }
+
+    /**
+     * @return the transaction that was removed, null if no pending account transaction has the ID
+     */
+    public AccountTransaction removeAccountTransaction(UUID transactionId) {
+        return (AccountTransaction) find(transactionId, TYPE_ACCOUNT_TRANSACTION, true);
+    }
+
+    /**
+     * @return the transaction that was removed, null if no pending tourist transaction has the ID
+     */
+    public TouristTransaction removeTouristTransaction(UUID transactionId) {
+        return (TouristTransaction) find(transactionId, TYPE_TOURIST_TRANSACTION, true);
+    }
+
+    /**
+     * Gets to the client that sent a transaction without making an object out of the record
+     * @return the sender's slot in the ClientRegistry, ClientRegistry.NO_SLOT if no transaction with the ID is pending
+     */
+    public int getSenderSlot(UUID transactionId) {
+        var mostSignificantBits = transactionId.getMostSignificantBits();
+        var leastSignificantBits = transactionId.getLeastSignificantBits();
+        var segment = getSegment(mostSignificantBits, leastSignificantBits);
+        synchronized (segment) {
+            var offset = segment.find(mostSignificantBits, leastSignificantBits);
+            return offset == NOT_FOUND ? ClientRegistry.NO_SLOT : segment.records.getInt(offset + FROM_SLOT);
+        }
+    }
+
+    /**
+     * Takes on the settling of the transaction, e.g. its sender is about to be told that it is done, after which it is
+     * completed. Only one caller gets to settle a transaction
+     * @return the sender's slot in the ClientRegistry, ClientRegistry.NO_SLOT if no account transaction with the ID is
+     * pending or it is being settled already
+     */
+    public int markSettling(UUID transactionId) {
+        return mark(transactionId, FLAG_SETTLING, FLAG_SETTLING);
+    }
+
+    /**
+     * The sender of the transaction is about to be told to revert it, which only ever happens once per transaction
+     * @return the sender's slot in the ClientRegistry, ClientRegistry.NO_SLOT if no account transaction with the ID is
+     * pending or its sender has been told to revert it already
+     */
+    public int markReverting(UUID transactionId) {
+        return mark(transactionId, FLAG_REVERTING, FLAG_REVERTING | FLAG_SETTLING);
+    }
+
+    /**
+     * @param flag the flag to set on the account transaction
+     * @param blockingFlags if any of these is set already, the flag isn't set
+     * @return the sender's slot, ClientRegistry.NO_SLOT if the flag wasn't set
+     */
+    private int mark(UUID transactionId, int flag, int blockingFlags) {
+        var mostSignificantBits = transactionId.getMostSignificantBits();
+        var leastSignificantBits = transactionId.getLeastSignificantBits();
+        var segment = getSegment(mostSignificantBits, leastSignificantBits);
+        synchronized (segment) {
+            var offset = segment.find(mostSignificantBits, leastSignificantBits);
+            if (offset == NOT_FOUND)
+                return ClientRegistry.NO_SLOT;
+            var type = segment.records.getInt(offset + TYPE);
+            if ((type & TYPE_MASK) != TYPE_ACCOUNT_TRANSACTION || (type & blockingFlags) != 0)
+                return ClientRegistry.NO_SLOT;
+            segment.records.putInt(offset + TYPE, type | flag);
+            return segment.records.getInt(offset + FROM_SLOT);
+        }
+    }
+
+    public int size() {
+        return this.size.get();
+    }
+
+    public boolean isEmpty() {
+        return this.size.get() == 0;
+    }
+
+    /**
+     * @return a copy of every pending account transaction
+     */
+    public ArrayList<AccountTransaction> getAccountTransactions() {
+        return getTransactions(TYPE_ACCOUNT_TRANSACTION);
+    }
+
+    /**
+     * @return a copy of every pending tourist transaction
+     */
+    public ArrayList<TouristTransaction> getTouristTransactions() {
+        return getTransactions(TYPE_TOURIST_TRANSACTION);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> ArrayList<T> getTransactions(int type) {
+        var transactions = new ArrayList<T>(size());
+        for (var segment : this.segments) {
+            synchronized (segment) {
+                for (var slot = 0; slot < segment.capacity; slot++) {
+                    var offset = slot * RECORD_SIZE;
+                    if (!segment.isEmpty(offset) && (segment.records.getInt(offset + TYPE) & TYPE_MASK) == type)
+                        transactions.add((T) toTransaction(segment.records, offset));
+                }
+            }
+        }
+        return transactions;
+    }
+
+    private Object find(UUID transactionId, int type, boolean isRemoved) {
+        var mostSignificantBits = transactionId.getMostSignificantBits();
+        var leastSignificantBits = transactionId.getLeastSignificantBits();
+        var segment = getSegment(mostSignificantBits, leastSignificantBits);
+        synchronized (segment) {
+            var offset = segment.find(mostSignificantBits, leastSignificantBits);
+            if (offset == NOT_FOUND || (segment.records.getInt(offset + TYPE) & TYPE_MASK) != type)
+                return null;
+            var transaction = toTransaction(segment.records, offset);
+            if (isRemoved) {
+                segment.delete(offset);
+                this.size.decrementAndGet();
+            }
+            return transaction;
+        }
+    }
+
+    private Object toTransaction(ByteBuffer records, int offset) {
+        var transactionId = new UUID(records.getLong(offset + MOST_SIGNIFICANT_BITS),
+                records.getLong(offset + LEAST_SIGNIFICANT_BITS));
+        if ((records.getInt(offset + TYPE) & TYPE_MASK) == TYPE_TOURIST_TRANSACTION) {
+            return new TouristTransaction(
+                    transactionId,
+                    getClientId(records.getInt(offset + FROM_SLOT)),
+                    toInteger(records.getInt(offset + BANK_ID_FROM)),
+                    getPersonId(records.getInt(offset + PERSON_ID_FROM)),
+                    records.getLong(offset + AMOUNT),
+                    toInteger(records.getInt(offset + STEP)));
+        }
+
+        var accountTransaction = new AccountTransaction(
+                transactionId,
+                getClientId(records.getInt(offset + TO_SLOT)),
+                getPersonId(records.getInt(offset + PERSON_ID_TO)),
+                toInteger(records.getInt(offset + BANK_ID_TO)),
+                records.getLong(offset + AMOUNT),
+                getClientId(records.getInt(offset + FROM_SLOT)),
+                toInteger(records.getInt(offset + BANK_ID_FROM)),
+                getPersonId(records.getInt(offset + PERSON_ID_FROM)),
+                toInteger(records.getInt(offset + STEP)));
+        accountTransaction.arrivalNanos = records.getLong(offset + ARRIVAL_NANOS);
+        return accountTransaction;
+    }
+
+    private int getSlot(UUID clientId) {
+        return clientId == null ? ClientRegistry.NO_SLOT : this.clientRegistry.getSlot(clientId);
+    }
+
+    private UUID getClientId(int slot) {
+        return slot == ClientRegistry.NO_SLOT ? null : this.clientRegistry.getClientId(slot);
+    }
+
+    private int getPersonIndex(String personId) {
+        if (personId == null)
+            return NULL_INTEGER;
+        var index = this.personIndexes.get(personId);
+        return index != null ? index : addPersonId(personId);
+    }
+
+    private int addPersonId(String personId) {
+        synchronized (this.personIndexes) {
+            var index = this.personIndexes.get(personId);
+            if (index != null)
+                return index;
+            index = this.personIndexes.size();
+            var personIds = this.personIds;
+            if (index == personIds.length)
+                personIds = Arrays.copyOf(personIds, index * 2);
+            personIds[index] = personId;
+            // the volatile write publishes the person ID along with the array
+            this.personIds = personIds;
+            this.personIndexes.put(personId, index);
+            return index;
+        }
+    }
+
+    private String getPersonId(int index) {
+        return index == NULL_INTEGER ? null : this.personIds[index];
+    }
+
+    private Segment getSegment(long mostSignificantBits, long leastSignificantBits) {
+        return this.segments[(int) (mix(mostSignificantBits, leastSignificantBits) >>> 60) & (SEGMENTS - 1)];
+    }
+
+    static long mix(long mostSignificantBits, long leastSignificantBits) {
+        // the IDs from TransactionIds only differ in a counter, so the bits are spread before they are masked
+        var hash = (mostSignificantBits ^ leastSignificantBits) * 0x9E3779B97F4A7C15L;
+        return hash ^ (hash >>> 29);
+    }
+
+    private static int toInt(Integer value) {
+        return value == null ? NULL_INTEGER : value;
+    }
+
+    private static Integer toInteger(int value) {
+        return value == NULL_INTEGER ? null : value;
+    }
+
+    /**
+     * One part of the table with a lock of its own, the records of a segment are only touched under its lock
+     */
+    private static final class Segment {
+        private ByteBuffer records;
+        private int capacity; // always a power of two
+        private int size = 0;
+
+        Segment(int initialCapacity) {
+            this.capacity = Integer.highestOneBit(Math.max(16, initialCapacity - 1) << 1);
+            this.records = ByteBuffer.allocateDirect(this.capacity * RECORD_SIZE);
+        }
+
+        /**
+         * @return the offset of the transaction's record, NOT_FOUND if it isn't in the segment
+         */
+        int find(long mostSignificantBits, long leastSignificantBits) {
+            var mask = this.capacity - 1;
+            for (var slot = hash(mostSignificantBits, leastSignificantBits) & mask; ; slot = (slot + 1) & mask) {
+                var offset = slot * RECORD_SIZE;
+                if (isEmpty(offset))
+                    return NOT_FOUND;
+                if (this.records.getLong(offset + MOST_SIGNIFICANT_BITS) == mostSignificantBits &&
+                        this.records.getLong(offset + LEAST_SIGNIFICANT_BITS) == leastSignificantBits)
+                    return offset;
+            }
+        }
+
+        /**
+         * Claims a record for a transaction that isn't in the segment yet
+         * @return the offset of the record, with only the transaction ID filled in
+         */
+        int insert(long mostSignificantBits, long leastSignificantBits) {
+            if (mostSignificantBits == 0 && leastSignificantBits == 0)
+                throw new IllegalArgumentException("The all zero UUID can't be a pending transaction's ID");
+            // stays under a load factor of 0.75
+            if ((this.size + 1) * 4L > this.capacity * 3L)
+                grow();
+            var offset = findEmpty(this.records, this.capacity, mostSignificantBits, leastSignificantBits);
+            this.records.putLong(offset + MOST_SIGNIFICANT_BITS, mostSignificantBits);
+            this.records.putLong(offset + LEAST_SIGNIFICANT_BITS, leastSignificantBits);
+            this.size++;
+            return offset;
+        }
+
+        void delete(int offset) {
+            // moves every record of the probe run that would no longer be found into the gap
+            var mask = this.capacity - 1;
+            var gap = offset / RECORD_SIZE;
+            for (var next = (gap + 1) & mask; !isEmpty(next * RECORD_SIZE); next = (next + 1) & mask) {
+                var nextOffset = next * RECORD_SIZE;
+                var home = hash(this.records.getLong(nextOffset + MOST_SIGNIFICANT_BITS),
+                        this.records.getLong(nextOffset + LEAST_SIGNIFICANT_BITS)) & mask;
+                var isBetweenGapAndNext = gap <= next ? gap < home && home <= next : gap < home || home <= next;
+                if (!isBetweenGapAndNext) {
+                    copyRecord(this.records, nextOffset, this.records, gap * RECORD_SIZE);
+                    gap = next;
+                }
+            }
+            this.records.putLong(gap * RECORD_SIZE + MOST_SIGNIFICANT_BITS, 0);
+            this.records.putLong(gap * RECORD_SIZE + LEAST_SIGNIFICANT_BITS, 0);
+            this.size--;
+        }
+
+        boolean isEmpty(int offset) {
+            return this.records.getLong(offset + MOST_SIGNIFICANT_BITS) == 0 &&
+                    this.records.getLong(offset + LEAST_SIGNIFICANT_BITS) == 0;
+        }
+
+        private void grow() {
+            if (this.capacity * 2L > MAX_SEGMENT_CAPACITY)
+                throw new IllegalStateException(String.format("Pending transaction table segment is full at %s records", this.size));
+
+            var grownCapacity = this.capacity * 2;
+            var grownRecords = ByteBuffer.allocateDirect(grownCapacity * RECORD_SIZE);
+            for (var slot = 0; slot < this.capacity; slot++) {
+                var offset = slot * RECORD_SIZE;
+                if (!isEmpty(offset))
+                    copyRecord(this.records, offset, grownRecords, findEmpty(grownRecords, grownCapacity,
+                            this.records.getLong(offset + MOST_SIGNIFICANT_BITS),
+                            this.records.getLong(offset + LEAST_SIGNIFICANT_BITS)));
+            }
+            this.records = grownRecords;
+            this.capacity = grownCapacity;
+        }
+
+        private static int findEmpty(ByteBuffer records, int capacity, long mostSignificantBits, long leastSignificantBits) {
+            var mask = capacity - 1;
+            for (var slot = hash(mostSignificantBits, leastSignificantBits) & mask; ; slot = (slot + 1) & mask) {
+                var offset = slot * RECORD_SIZE;
+                if (records.getLong(offset + MOST_SIGNIFICANT_BITS) == 0 &&
+                        records.getLong(offset + LEAST_SIGNIFICANT_BITS) == 0)
+                    return offset;
+            }
+        }
+
+        private static void copyRecord(ByteBuffer from, int fromOffset, ByteBuffer to, int toOffset) {
+            for (var i = 0; i < RECORD_SIZE; i += Long.BYTES)
+                to.putLong(toOffset + i, from.getLong(fromOffset + i));
+        }
+
+        private static int hash(long mostSignificantBits, long leastSignificantBits) {
+            return (int) mix(mostSignificantBits, leastSignificantBits);
+        }
+    }
+}
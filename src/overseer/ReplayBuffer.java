@@ -0,0 +1,42 @@
+package overseer;
+
+import java.util.List;
+
+/**
+ * The last objects that have been written to a client, kept for when the client resumes its session after losing its
+ * connection. Every object that is written to the client counts, starting at 0, and a resuming client says how many
+ * it has received, so the ones that got lost with the connection can be written again. The handshake replies are
+ * not counted. A broadcast is kept as its object, not as its frame, so the frame's buffers aren't held on to.
+ */
+public class ReplayBuffer {
+    private final Object[] objects;
+    private long writtenObjects = 0;    // also the number of the next object
+
+    ReplayBuffer(int capacity) {
+        this.objects = new Object[capacity];
+    }
+
+    public synchronized void add(Object object) {
+        this.objects[(int) (this.writtenObjects % this.objects.length)] = object;
+        this.writtenObjects++;
+    }
+
+    /**
+     * Copies the objects that a client has missed
+     * @param receivedObjects how many objects the client has received
+     * @param missed filled with the objects from the first one that can be replayed on
+     * @return the number of the first object in the list, higher than receivedObjects if some of the objects that
+     * were missed are no longer in the buffer
+     */
+    public synchronized long copyMissed(long receivedObjects, List<Object> missed) {
+        var oldest = Math.max(0, this.writtenObjects - this.objects.length);
+        var first = Math.min(Math.max(receivedObjects, oldest), this.writtenObjects);
+        for (var i = first; i < this.writtenObjects; i++)
+            missed.add(this.objects[(int) (i % this.objects.length)]);
+        return first;
+    }
+
+    public synchronized long getWrittenObjects() {
+        return writtenObjects;
+    }
+}
@@ -0,0 +1,69 @@
+package overseer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A log file that is rolled over once it reaches its size limit. The full file is moved to [path].1, the one
+ * before it to [path].2 and so on, keeping at most MAX_ROLLED_FILES of them. Only used by the LogWriter's thread.
+ */
+public class RollingLogFile {
+    static final int MAX_ROLLED_FILES = 5;
+
+    private final Path path;
+    private final long maxBytes;
+    private Writer writer;
+    private long bytes;
+
+    public RollingLogFile(Path path, long maxBytes) throws IOException {
+        this.path = path;
+        this.maxBytes = maxBytes;
+        open();
+    }
+
+    /**
+     * @param line a whole line, including the line separator
+     */
+    public void write(String line) throws IOException {
+        // log lines are nearly always ASCII, so the length is close enough to the amount of bytes
+        if (this.bytes + line.length() > this.maxBytes && this.bytes > 0)
+            roll();
+        this.writer.write(line);
+        this.bytes += line.length();
+    }
+
+    public void flush() throws IOException {
+        this.writer.flush();
+    }
+
+    public void close() throws IOException {
+        this.writer.close();
+    }
+
+    private void roll() throws IOException {
+        this.writer.close();
+        Files.deleteIfExists(rolledPath(MAX_ROLLED_FILES));
+        for (var i = MAX_ROLLED_FILES - 1; i >= 1; i--) {
+            if (Files.exists(rolledPath(i)))
+                Files.move(rolledPath(i), rolledPath(i + 1), StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.move(this.path, rolledPath(1), StandardCopyOption.REPLACE_EXISTING);
+        open();
+    }
+
+    private void open() throws IOException {
+        this.writer = new BufferedWriter(Files.newBufferedWriter(this.path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND), 64 * 1024);
+        this.bytes = Files.size(this.path);
+    }
+
+    private Path rolledPath(int number) {
+        return this.path.resolveSibling(this.path.getFileName() + "." + number);
+    }
+}
@@ -0,0 +1,94 @@
+package overseer;
+
+import java.util.Locale;
+
+/**
+ * The commands that an operator runs the simulation with, typed on the console or sent to the ControlEndpoint.
+ * A command only changes the run state in the ServerData and answers right away, the Server's step loop picks up
+ * the change by itself, so it never waits on an operator.
+ *
+ * One command per line:
+ *  steps [n] (or just [n]) - adds n steps, the clients are told with a TakeStep:
+ *  pause                   - no new step is started until resume
+ *  resume                  - carries on stepping
+ *  stop                    - lets the current step finish and its transactions settle, then tells the clients that
+ *                            the simulation has completed and shuts down the Overseer
+ *  status                  - the state, step, total steps, connected, ready and taking part clients, pending and
+ *                            expired transactions
+ * The answer is one line that starts with "OK" or "ERROR".
+ */
+public class RunControl {
+    static final String COMMAND_STEPS = "steps";
+    static final String COMMAND_PAUSE = "pause";
+    static final String COMMAND_RESUME = "resume";
+    static final String COMMAND_STOP = "stop";
+    static final String COMMAND_STATUS = "status";
+
+    private final ServerData serverData;
+
+    public RunControl(ServerData serverData) {
+        this.serverData = serverData;
+    }
+
+    /**
+     * @param line the command, with its argument if it has one
+     * @return the answer to the operator
+     */
+    public String execute(String line) {
+        var words = line.trim().split("\\s+");
+        var command = words[0].toLowerCase(Locale.ROOT);
+        if (!command.isEmpty() && command.chars().allMatch(Character::isDigit))
+            return addSteps(command);
+
+        switch (command) {
+            case COMMAND_STEPS:
+                return words.length == 2 ? addSteps(words[1]) : "ERROR steps needs the amount of steps";
+            case COMMAND_PAUSE:
+                this.serverData.setIsPaused(true);
+                return "OK paused, the current step still finishes";
+            case COMMAND_RESUME:
+                this.serverData.setIsPaused(false);
+                return "OK resumed";
+            case COMMAND_STOP:
+                this.serverData.requestStop();
+                return "OK stopping once the current step has drained";
+            case COMMAND_STATUS:
+                return getStatus();
+            default:
+                return String.format("ERROR unknown command '%s', expected steps [n], pause, resume, stop or status", line.trim());
+        }
+    }
+
+    private String addSteps(String steps) {
+        int value;
+        try {
+            value = Integer.parseInt(steps);
+        } catch (NumberFormatException e) {
+            value = 0;
+        }
+        if (value <= 0)
+            return "ERROR only positive numbers of steps are accepted";
+        this.serverData.requestSteps(value);
+        return String.format("OK %s steps added", value);
+    }
+
+    private String getStatus() {
+        return String.format("OK state=%s step=%s totalSteps=%s requestedSteps=%s clients=%s/%s ready=%s members=%s pending=%s expired=%s",
+                getState(), this.serverData.getCurrentStep(), this.serverData.getTotalSteps(),
+                this.serverData.getRequestedSteps(), this.serverData.getCurrentConnections(),
+                this.serverData.getMaxClients(), this.serverData.getReadyClients(), this.serverData.getMemberCount(),
+                this.serverData.getPendingTransactions().size(), this.serverData.getMetrics().getExpiredTransactions());
+    }
+
+    private String getState() {
+        if (this.serverData.isStopRequested())
+            return "stopping";
+        if (!this.serverData.getHasSimulationStarted())
+            return "starting";
+        if (this.serverData.isPaused())
+            return "paused";
+        if (this.serverData.getCurrentStep() >= this.serverData.getTotalSteps() && this.serverData.getRequestedSteps() == 0)
+            return "waiting";
+        return "running";
+    }
+}
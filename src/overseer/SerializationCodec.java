@@ -0,0 +1,49 @@
+package overseer;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+
+/**
+ * The original wire format, which is what Threadneedle speaks unless it asks for something else.
+ * Every object is written with a fresh ObjectOutputStream, so every frame carries its own stream header
+ * and class descriptors.
+ */
+public class SerializationCodec implements WireCodec {
+
+    @Override
+    public String getName() {
+        return "serialization";
+    }
+
+    @Override
+    public byte[] encode(Object object) throws IOException {
+        var byteStream = new ByteArrayOutputStream();
+        var outputStream = new ObjectOutputStream(byteStream);
+        outputStream.writeObject(object);
+        outputStream.flush();
+        return byteStream.toByteArray();
+    }
+
+    /**
+     * There is no length prefix, so the only way to tell if a frame is complete is to try to deserialize it
+     */
+    @Override
+    public Object decode(ByteBuffer buffer) throws IOException, ClassNotFoundException {
+        var input = new ByteArrayInputStream(
+                buffer.array(),
+                buffer.arrayOffset() + buffer.position(),
+                buffer.remaining());
+        try {
+            var object = new ObjectInputStream(input).readObject();
+            buffer.position(buffer.limit() - input.available());
+            return object;
+        } catch (EOFException e) {
+            return null; // partial frame, wait for the rest of it
+        }
+    }
+
+    @Override
+    public Object read(InputStream inputStream) throws IOException, ClassNotFoundException {
+        return new ObjectInputStream(inputStream).readObject();
+    }
+}
@@ -1,90 +1,150 @@
 package overseer;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.net.ServerSocket;
 import java.net.SocketAddress;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The server accepts the set amount of connections of clients. It validates that the data and conditions are met to
  * proceed with the simulations for the connected clients. All clients connect to the Server but their socket
  * communication is handled in the ConnectionThread class.
+ * Clients may join and leave while the simulation runs. A client that joins is admitted at a step boundary, where
+ * everyone is told about it, and starts at the current step.
  *
  * @since 2022
  */
 public class Server {
+    // how long the server waits on the StepBarrier at most before it re-checks the state by itself
+    private static final long BARRIER_RECHECK_TIMEOUT = 100;
+    private static final int MIN_BACKLOG = 50; // what a ServerSocket gets when none is given
+    // how long the clients get to close their connections after they have been told that the simulation has completed
+    private static final long SHUTDOWN_TIMEOUT = 5000;
     private final Logger logger = new Logger();
     private ServerData serverData; // where all the important server data is stored, sockets access it too
     private ServerSocket serverSocket;
+    private NioTransport nioTransport = null; // only used in the NIO connection mode
     private UUID serverId;
+    private boolean isStepPromptShown = false; // the step prompt has been shown since steps were last added
     private final Debug debug = new Debug();
 
     public void start(ServerData serverData) {
         this.serverData = serverData;
-        this.serverId = UUID.randomUUID();
+        this.serverId = serverData.getServerId();
 
         if(this.serverData.isDebugEnabled())
             System.err.println("NOTE: Debug output is enabled! This will affect simulation speeds because of increased text output in console");
 
         try {
-            this.serverSocket = new ServerSocket(this.serverData.getPortNumber());
-            var isAtConnectionLimit = false;
-            var hasInitializedSimulation = false;
+            var startNanos = System.nanoTime();
+            var handshakeMonitor = new HandshakeMonitor(this.serverData.getHandshakeTimeoutSeconds());
+            this.serverSocket = openServerSocket(handshakeMonitor);
+            this.serverData.getMetrics().registerMBean();
             logServerInfo();
+            // in the NIO connection mode the clients are accepted by the NioTransport's selector loop
+            if (this.nioTransport == null)
+                new Acceptor(this.serverSocket, this.serverData, handshakeMonitor).start();
 
-            while (!this.serverSocket.isClosed()) {
-                // While the connected clients < the connection limit
-                if (this.serverData.checkIfAllClientsConnected()) {
-                    isAtConnectionLimit = false;
-                    acceptConnections();
-                }
-                // When the connection limit has been reached
-                else if (!isAtConnectionLimit) {
-                    isAtConnectionLimit = true;
-                    logger.logConnectionLimitReached(this.serverData.getCurrentConnections());
-                }
+            awaitAllClientsReady(startNanos);
+            if (!this.serverData.isStopRequested()) {
+                // the clients that are ready take part from the first step, anyone later on joins at a step boundary
+                this.serverData.getJoiningClients().forEach(this.serverData::admitClient);
                 // Send all simulation required data to clients
-                if(!hasInitializedSimulation && this.serverData.haveAllClientsBeenInitialized())
-                {
-                    sendClientsSimulationInformation();
-                    hasInitializedSimulation = true;
-                    this.serverData.setHasSimulationStarted(true); // client sockets use this in ConnectionThread
-                }
-                // Now simulation can begin
-                if (hasInitializedSimulation && isAtConnectionLimit) {
-                    if(this.serverData.getTotalSteps() == this.serverData.getCurrentStep())
-                        readStepInputFromCommandLine();
+                sendClientsSimulationInformation();
+                this.serverData.setHasSimulationStarted(true); // client sockets use this in ConnectionThread
+            }
+
+            while (!this.serverSocket.isClosed()) {
+                var stepBarrier = this.serverData.getStepBarrier();
+                var observedVersion = stepBarrier.getVersion();
+                var hasTakenStep = false;
+                if (this.serverData.getHasSimulationStarted() && isAtStepBoundary())
+                    updateMembership();
+                // Now simulation can begin, as long as there is anyone left to take part in it
+                if (this.serverData.getMemberCount() > 0) {
+                    if(this.serverData.isNetSettlementEnabled() && this.serverData.hasUnsettledTransactions())
+                        settleNetPositions();
+
+                    handOutRequestedSteps();
 
-                    if(validateSteppingConditions()) {
+                    // a paused or stopping simulation lets the steps that are under way finish, but starts no new ones
+                    var mayStep = !this.serverData.isPaused() && !this.serverData.isStopRequested();
+                    if(mayStep && this.serverData.isBoundedLagEnabled())
+                        hasTakenStep = grantStepsWithinLagWindow();
+                    else if(mayStep && validateSteppingConditions()) {
+                        checkpointIfDue();
                         incrementCurrentServerStep();
                         tellAllClientsToStep();
                         waitForAllClientsToCompleteSteps();
+                        hasTakenStep = true;
                     }
                 }
-                Thread.sleep(1); // CPU usage was going through the roof, so busy-waiting it is
+                if (this.serverData.isStopRequested() && isDrained()) {
+                    shutDown();
+                    return;
+                }
+                // nothing to do until a client reports something, the next step is checked for right away
+                if (!hasTakenStep)
+                    stepBarrier.awaitStateChange(observedVersion, BARRIER_RECHECK_TIMEOUT);
             }
         } catch (Exception e) {
             logger.logServerError(e);
         }
     }
 
-    private void readStepInputFromCommandLine() throws IOException {
-        while(true) {
+    /**
+     * Opens the server socket for the connection mode that has been set in the ServerData
+     * @param handshakeMonitor keeps the handshake deadlines of the accepted connections
+     * @return the socket that the clients connect to
+     */
+    private ServerSocket openServerSocket(HandshakeMonitor handshakeMonitor) throws IOException {
+        // all clients tend to connect at once, a connection that doesn't fit in the backlog can get lost on the way
+        // with the client still thinking that it is connected
+        var backlog = Math.max(MIN_BACKLOG, this.serverData.getMaxClients());
+        if (this.serverData.getConnectionMode() == ConnectionMode.NIO) {
+            this.nioTransport = new NioTransport(this.serverData, handshakeMonitor);
+            var socket = this.nioTransport.bind(this.serverData.getPortNumber(), backlog);
+            this.nioTransport.start();
+            return socket;
+        }
+        if (this.serverData.getConnectionMode() == ConnectionMode.VIRTUAL && !VirtualThreadConnection.isVirtualThreadSupported())
+            logger.logVirtualThreadsUnsupported();
+        return new ServerSocket(this.serverData.getPortNumber(), backlog);
+    }
+
+    /**
+     * The readiness latch: waits until every client has connected, set its client ID and sent its ClientReady:.
+     * The clients are accepted and do their handshakes in parallel, and every ClientReady: signals the StepBarrier,
+     * so this returns as soon as the slowest client is ready, or when the Overseer is stopped before that
+     * @param startNanos when the Overseer started
+     */
+    private void awaitAllClientsReady(long startNanos) throws InterruptedException {
+        this.serverData.getStepBarrier().await(
+                () -> this.serverData.haveAllClientsBeenInitialized() || this.serverData.isStopRequested(),
+                BARRIER_RECHECK_TIMEOUT);
+        if (this.serverData.isStopRequested())
+            return;
+        logger.logAllClientsReady(this.serverData.getConnectionLimit(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    }
+
+    /**
+     * Tells the clients about the steps that have been asked for through the RunControl, and adds them to the total
+     * steps. Once the simulation is at its total steps with nothing more asked for, the operator is prompted once,
+     * the answer comes in on the ConsoleControl's thread
+     */
+    private void handOutRequestedSteps() {
+        var steps = this.serverData.takeRequestedSteps();
+        if(steps > 0) {
+            commandClientsToTakeStep(steps);
+            this.serverData.setTotalSteps(steps);
+            this.isStepPromptShown = false;
+        }
+        else if(!this.isStepPromptShown && this.serverData.getTotalSteps() == this.serverData.getCurrentStep()) {
             System.out.println("======================================================================");
             System.out.println("> Set the number of steps you want the clients to take and hit (Enter)");
-            var input = new BufferedReader(new InputStreamReader(System.in)).readLine();
-            if(input != null) {
-                boolean isNumeric = input.chars().allMatch(Character::isDigit);
-                if(isNumeric && Integer.parseInt(input) > 0) {
-                    var value = Integer.parseInt(input);
-                    commandClientsToTakeStep(value);
-                    this.serverData.setTotalSteps(value);
-                    break;
-                }
-            }
-            System.out.println("Invalid input. Only positive numbers are accepted");
+            this.isStepPromptShown = true;
         }
     }
 
@@ -103,6 +163,49 @@ public class Server {
         sendAllClientsObject(this.serverData.getBankInformationHashMap());
     }
 
+    /**
+     * A client that joins a running simulation gets what everyone got at the start, and is told how many steps
+     * are left to take
+     */
+    private void sendClientSimulationInformation(ConnectedSocket connectedSocket) {
+        var clientIds = this.serverData.convertConnectedClientIdToUUID();
+        sendClientObject(connectedSocket, new Messages(Constant.PREFIX_SERVER_ID + this.serverId, this.serverId));
+        sendClientObject(connectedSocket, new Messages(Constant.COMMAND_ALL_CLIENTS_CONNECTED + clientIds, serverId));
+        sendClientObject(connectedSocket, this.serverData.getBankInformationHashMap());
+        var remainingSteps = this.serverData.getTotalSteps() - connectedSocket.getCurrentStep();
+        if(remainingSteps > 0)
+            sendClientObject(connectedSocket, new Messages(Constant.PREFIX_TAKE_STEP + remainingSteps, this.serverId));
+    }
+
+    /**
+     * In the lock-step mode the membership only changes once every client has completed the current step and
+     * nothing is pending. In the bounded lag mode a client that joins starts at the slowest client's step, so it
+     * can join at any time
+     */
+    private boolean isAtStepBoundary() {
+        return this.serverData.isBoundedLagEnabled() ||
+                (this.serverData.areAllClientsAtCurrentStep() && this.serverData.isPendingTransactionEmpty());
+    }
+
+    /**
+     * Tells everyone about the clients that have left, and admits the clients that are ready to join
+     */
+    private void updateMembership() {
+        for (var clientId : this.serverData.takeDepartedClients())
+            sendAllClientsObject(new Messages(Constant.PREFIX_CLIENT_LEFT + clientId, this.serverId));
+
+        for (var connectedSocket : this.serverData.getJoiningClients()) {
+            // the others are told before the client is admitted, so the client isn't told about itself
+            var clientJoined = new Messages(Constant.PREFIX_CLIENT_JOINED + connectedSocket.getClientId(), this.serverId);
+            if (!this.serverData.admitClient(connectedSocket))
+                continue;
+            sendAllClientsObject(clientJoined, connectedSocket);
+            sendClientSimulationInformation(connectedSocket);
+            logger.logClientJoined(connectedSocket.getClientId().toString(), connectedSocket.getCurrentStep(),
+                    this.serverData.getMemberCount());
+        }
+    }
+
     /**
      * Used to display the IP address of the server itself. Makes it easier to fet the connection
      * information required for Threadneedle client when connecting
@@ -124,14 +227,113 @@ public class Server {
                 this.serverData.isPendingTransactionEmpty();
     }
 
+    /**
+     * The bounded lag stepping mode. Instead of all clients stepping together, each client is told to take its next
+     * step as soon as it has reported the last one, as long as it stays within the lag window: no more than lagWindow
+     * steps ahead of the slowest client, and of the oldest step that still has a pending transaction. A lag window of
+     * 1 behaves like the lock-step mode
+     * @return true if any client was told to take a step
+     */
+    private boolean grantStepsWithinLagWindow() {
+        var previousStep = this.serverData.getCurrentStep();
+        var slowestStep = this.serverData.updateSlowestClientStep();
+        if(slowestStep > previousStep) {
+            // the step time of the bounded lag mode is the time between two steps of the slowest client
+            this.serverData.getMetrics().startStep(System.nanoTime());
+            logger.logSlowestClientStep(slowestStep);
+        }
+
+        var lagWindow = this.serverData.getLagWindow();
+        var windowEnd = Math.min(
+                (long) slowestStep + lagWindow,
+                (long) this.serverData.getOldestPendingTransactionStep() + lagWindow - 1);
+        var hasGrantedStep = false;
+
+        for (var socket : this.serverData.getConnectedSockets().values()) {
+            if(!socket.isMember())
+                continue;
+            var grantedStep = socket.getGrantedStep();
+            var nextStep = grantedStep + 1;
+            if(socket.getCurrentStep() != grantedStep || nextStep > this.serverData.getTotalSteps() || nextStep > windowEnd)
+                continue;
+
+            this.serverData.getMetrics().recordQueueDepth(socket.getMessageQueueDepth());
+            socket.grantStep(nextStep, new Messages(Constant.PREFIX_NEXT_STEP + nextStep, this.serverId));
+            hasGrantedStep = true;
+        }
+        return hasGrantedStep;
+    }
+
+    /**
+     * The net settlement mode. Every step that all clients have reported is netted, and each client that had a
+     * transfer gets one NetSettlement. Settlements go out ahead of the next NextStep message, so a client always
+     * has them before it takes its next step
+     */
+    private void settleNetPositions() {
+        var startNanos = System.nanoTime();
+        var settledStep = this.serverData.updateSlowestClientStep();
+        var settlements = this.serverData.settleNetPositions(settledStep);
+        settlements.forEach((clientId, netSettlement) -> {
+            var connectedSocket = this.serverData.getConnectedSockets().get(clientId);
+            if(connectedSocket != null)
+                connectedSocket.addToMessageQueue(netSettlement);
+            else
+                logger.logErrorSocketNotInSocketList(clientId.toString());
+        });
+        if(!settlements.isEmpty()) {
+            this.serverData.getMetrics().recordSettlementDrain(System.nanoTime() - startNanos);
+            logger.logNetSettlement(settledStep, settlements.size());
+        }
+    }
+
+    /**
+     * @return true if no client is in the middle of a step and every transaction has settled, which is when a
+     * stopping simulation can be shut down
+     */
+    private boolean isDrained() {
+        if(!this.serverData.getHasSimulationStarted())
+            return true;
+        for (var socket : this.serverData.getConnectedSockets().values()) {
+            if(!socket.isMember())
+                continue;
+            var lastStep = this.serverData.isBoundedLagEnabled() ? socket.getGrantedStep() : this.serverData.getCurrentStep();
+            if(socket.getCurrentStep() < lastStep)
+                return false;
+        }
+        return this.serverData.isPendingTransactionEmpty() && !this.serverData.hasUnsettledTransactions();
+    }
+
+    /**
+     * Ends a stopping simulation: the clients are told that the simulation has completed and get some time to close
+     * their connections, then whatever is still connected is closed along with the server socket
+     */
+    private void shutDown() throws IOException, InterruptedException {
+        if(this.serverData.getHasSimulationStarted()) {
+            logger.logSimulationCompleted(this.serverData.getCurrentStep());
+            tellAllClientsSimulationIsCompleted();
+        }
+
+        var stepBarrier = this.serverData.getStepBarrier();
+        var deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SHUTDOWN_TIMEOUT);
+        while (true) {
+            var observedVersion = stepBarrier.getVersion();
+            if(this.serverData.getCurrentConnections() == 0 || System.nanoTime() - deadlineNanos >= 0)
+                break;
+            stepBarrier.awaitStateChange(observedVersion, BARRIER_RECHECK_TIMEOUT);
+        }
+
+        logger.logShuttingDown(this.serverData.getCurrentConnections());
+        this.serverData.closeAllSockets();
+        this.serverSocket.close();
+    }
+
     /**
      * Checks all the required conditions for the completion of the simulation
      * @return true of the simulation is finished, false if not
      */
     private boolean isSimulationCompleted() throws InterruptedException {
         if(this.serverData.getCurrentStep() == this.serverData.getTotalSteps()) {
-            if(!this.serverData.isPendingTransactionEmpty())
-                while (!this.serverData.isPendingTransactionEmpty()) { Thread.sleep(1); }
+            this.serverData.getStepBarrier().await(this.serverData::isPendingTransactionEmpty, BARRIER_RECHECK_TIMEOUT);
             return true;
         }
         return false;
@@ -141,11 +343,17 @@ public class Server {
      * Sends a message to all client to commence the next step
      */
     private void tellAllClientsToStep() {
+        var metrics = this.serverData.getMetrics();
+        var startNanos = System.nanoTime();
+        metrics.startStep(startNanos);
         logger.logTellAllClientsToStep(this.serverData.getCurrentStep());
+        for (var socket : this.serverData.getConnectedSockets().values())
+            metrics.recordQueueDepth(socket.getMessageQueueDepth());
         sendAllClientsObject(new Messages(
             Constant.PREFIX_NEXT_STEP
             + (this.serverData.getCurrentStep()), this.serverId)
         );
+        metrics.recordBroadcast(System.nanoTime() - startNanos);
     }
 
     /**
@@ -160,7 +368,6 @@ public class Server {
                 Constant.COMMAND_SPLITTER +
                 Constant.TERMINATE_CONNECTION
         , serverId));
-        this.serverData.closeAllSockets();
     }
 
     /**
@@ -168,65 +375,80 @@ public class Server {
      * @return true if they have all reached the same step, false if not
      */
     private boolean areAllConnectionThreadsAtSameStep() {
-        if (!this.serverData.getCurrentConnections().equals(this.serverData.getConnectionLimit()))
-            return false;
-
-        for (ConnectedSocket socket : this.serverData.getConnectedSockets().values()) {
-            if (socket.getCurrentStep() != this.serverData.getCurrentStep())
-                return false;
-        }
-        return true;
+        return this.serverData.areAllClientsAtCurrentStep();
     }
 
     /**
-     * Accepts incoming Threadneedle connections and spawns a new ConnectionThread as a result
+     * Sends an object to all the clients that take part in the simulation
+     * @param object that is to be sent to all clients
      */
-    private void acceptConnections() {
-        if(this.serverData.isDebugEnabled())
-            debug.serverAcceptConnections(this.serverData.getCurrentConnections(), this.serverData.getConnectionLimit());
-
-        try {
-            var threadneedleSocket = this.serverSocket.accept();
-            new ConnectionThread(threadneedleSocket, this.serverData).start();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        this.serverData.incrementCurrentConnections();
+    private void sendAllClientsObject(Object object) {
+        sendAllClientsObject(object, null);
     }
 
     /**
-     * Sends an object to all the connected clients
-     * @param object that is to be sent to all clients
+     * @param excludedSocket a client that the object is not sent to, null for none
      */
-    private void sendAllClientsObject(Object object) {
+    private void sendAllClientsObject(Object object, ConnectedSocket excludedSocket) {
         if(this.serverData.isDebugEnabled())
             debug.serverSendAllClientsObject(object);
 
+        // encoded once for everyone instead of once per client, see BroadcastFrame
+        var broadcastFrame = new BroadcastFrame(object);
         var connectedSockets = this.serverData.getConnectedSockets().values();
         connectedSockets.forEach(socket -> {
+            if (!socket.isMember() || socket == excludedSocket)
+                return;
             try {
                 var connectedSocket = socket.getThreadneedleSocket();
-                if (!connectedSocket.isClosed()) {
-                    socket.addToMessageQueue(object);
+                // a client that has lost its connection gets it once it has resumed its session
+                if (!connectedSocket.isClosed() || socket.isDetached()) {
+                    broadcastFrame.retain();
+                    socket.addToMessageQueue(broadcastFrame);
                 } else
                     logger.logSocketClosed(socket.getClientId().toString());
             } catch (Exception e) {
                 e.printStackTrace();
             }
         });
+        broadcastFrame.release();
+    }
+
+    /**
+     * Sends an object to a single client, the same way that it goes out to everyone
+     */
+    private void sendClientObject(ConnectedSocket connectedSocket, Object object) {
+        // the client holds the frame's only reference
+        connectedSocket.addToMessageQueue(new BroadcastFrame(object));
     }
 
     /**
-     *  A function that waits until all clients have completed their steps and if all pending transactions have been clear
+     *  A function that waits until all clients have completed their steps and if all pending transactions have been clear.
+     *  Once every client has reported the step it can't move on by itself, so the two are waited for one after the other
      */
     private void waitForAllClientsToCompleteSteps() throws InterruptedException {
-        var haveAllCompletedSteps = false;
+        var metrics = this.serverData.getMetrics();
+        var stepBarrier = this.serverData.getStepBarrier();
+        stepBarrier.await(this::areAllConnectionThreadsAtSameStep, BARRIER_RECHECK_TIMEOUT);
+        var arrivedNanos = System.nanoTime();
+        metrics.recordBarrierWait(arrivedNanos - metrics.getStepStartNanos());
 
-        while (!haveAllCompletedSteps) {
-            if (areAllConnectionThreadsAtSameStep() && this.serverData.isPendingTransactionEmpty())
-                haveAllCompletedSteps = true;
-            Thread.sleep(1);
-        }
+        stepBarrier.await(
+                () -> areAllConnectionThreadsAtSameStep() && this.serverData.isPendingTransactionEmpty(),
+                BARRIER_RECHECK_TIMEOUT);
+        metrics.recordSettlementDrain(System.nanoTime() - arrivedNanos);
+    }
+
+    /**
+     * Every client has completed the current step and nothing is pending, so this is where a checkpoint is taken
+     * when one is due. Checkpoints are only taken in the lock-step mode
+     */
+    private void checkpointIfDue() {
+        var writeAheadLog = this.serverData.getWriteAheadLog();
+        var step = this.serverData.getCurrentStep();
+        // a restored simulation already has a checkpoint of the step it starts at
+        if(writeAheadLog != null && writeAheadLog.isCheckpointStep(step) && step != this.serverData.getRestoredStep())
+            this.serverData.checkpoint();
     }
 
     private void incrementCurrentServerStep() {
@@ -5,6 +5,9 @@ import java.io.IOException;
 import java.net.Socket;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -12,45 +15,127 @@ import java.util.concurrent.atomic.AtomicInteger;
     and sockets will need to access and modify while the simulation is running.
  */
 public class ServerData {
+    // every client's message queue has room for twice the high watermark, so these are kept small for many clients
+    static final int DEFAULT_QUEUE_HIGH_WATERMARK = 1024;
+    static final int DEFAULT_QUEUE_LOW_WATERMARK = 256;
+    static final int DEFAULT_HANDSHAKE_TIMEOUT_SECONDS = 60;
+    static final int DEFAULT_TRANSACTION_TIMEOUT_SECONDS = 30;
+    static final int DEFAULT_RESUME_TIMEOUT_SECONDS = 30;
+    static final int DEFAULT_REPLAY_BUFFER_SIZE = 256;
+    // the pending transaction tables start out with room for this many records, and grow as needed
+    static final int PENDING_TRANSACTIONS_INITIAL_CAPACITY = 4096;
+
+    private final UUID serverId;                      // the ID that the server sends its messages with
     private final Integer portNumber;                 // the port number of the server itself
     private final AtomicInteger totalSteps;                       // total steps that the simulation will take
-    private final Integer connectionLimit;            // connection limit set by the Overseer
+    private final Integer connectionLimit;            // the clients that the simulation starts with
+    private final Integer maxClients;                 // the clients that may be connected at once, joiners included
     private final AtomicInteger currentStep;          // the current step in the simulation
     private final AtomicInteger currentConnections;   // current amount of connected sockets
     // when a client has loaded its configurations and env. it will send a "ClientReady:ClientID" to the server
     private final AtomicInteger readyClients;         // the clients that are ready to start simulating
+    // the clients that take part in the steps, the step barrier waits for all of them
+    private final AtomicInteger memberCount = new AtomicInteger(0);
+    // the clients that have left since the Server last told the others about it
+    private final Queue<UUID> departedClients = new ConcurrentLinkedQueue<>();
+    // joining, leaving, losing the connection and resuming the session happen one at a time
+    private final Object membershipLock = new Object();
     private final AtomicBoolean hasSimulationStarted = new AtomicBoolean(false);
+    // steps that an operator has asked for and that the Server hasn't handed to the clients yet
+    private final AtomicInteger requestedSteps = new AtomicInteger(0);
+    private volatile boolean isPaused = false;             // no new step is started while paused
+    private volatile boolean isStopRequested = false;      // the simulation ends once the current step has drained
     private final Logger logger = new Logger();       // to log stuff that goes down
     // the sockets (threadneedle programs) that are connected, along with important information about them
     private final ConcurrentHashMap<UUID, ConnectedSocket> connectedSockets;
-    // keeps track of the pending transactions that are taking place between clients
-    private final ConcurrentHashMap<UUID, AccountTransaction> pendingTransactions;
-    // the finished transactions of the simulation
-    private final ConcurrentHashMap<UUID, AccountTransaction> completedTransactions;
-    private final ConcurrentHashMap<UUID, TouristTransaction> pendingTouristTransactions;
-    private final ConcurrentHashMap<UUID, TouristTransaction> completedTouristTransactions;
+    // the same sockets, indexed by the dense slot that each client gets when it sets its ID
+    private final ClientRegistry clientRegistry;
+    // keeps track of the pending transactions that are taking place between clients, as off-heap records
+    private final PendingTransactionTable pendingTransactions;
+    // the deadlines of the pending transactions, a transaction that is still pending at its deadline gets reverted
+    private final DeadlineWheel transactionDeadlines = new DeadlineWheel("Overseer-Deadlines", this::expirePendingTransaction);
+    // the deadlines of the clients that have lost their connection, a client that hasn't resumed by then has left
+    private final DeadlineWheel sessionDeadlines = new DeadlineWheel("Overseer-Sessions", this::expireDetachedSession);
+    // bounded lag stepping mode: how many transactions are pending per step, to find the oldest unsettled step
+    private final ConcurrentSkipListMap<Integer, Integer> pendingTransactionsPerStep = new ConcurrentSkipListMap<>();
+    // the finished transactions of the simulation, on the heap unless a ledger file has been set
+    private CompletedTransactionStore completedTransactionStore = new InMemoryTransactionStore();
+    private final PendingTransactionTable pendingTouristTransactions;
+    // net settlement mode: the transfers that wait for the end of their step to be netted
+    private final NettingLedger nettingLedger = new NettingLedger();
     // Stores information about all banks that the clients have in their simulation
     private final BankInformation bankInformationHashMap;
+    private final BankInformationLog bankInformationLog;
+    private final AccountDirectory accountDirectory;
+    // the Server waits on this instead of polling the sockets for their steps
+    private final StepBarrier stepBarrier;
+    private final Metrics metrics;
     private boolean isDebugEnabled;
+    private ConnectionMode connectionMode = ConnectionMode.THREAD;
+    // the amount of selector loops used in the NIO connection mode
+    private int ioThreads = Math.min(4, Runtime.getRuntime().availableProcessors());
+    // a client's reads are paused while a message queue it sends to is over the high watermark, until it is down to the low one
+    private int queueHighWatermark = DEFAULT_QUEUE_HIGH_WATERMARK;
+    private int queueLowWatermark = DEFAULT_QUEUE_LOW_WATERMARK;
+    // how long a new connection has to get through the handshake before it is closed, 0 for no limit
+    private int handshakeTimeoutSeconds = DEFAULT_HANDSHAKE_TIMEOUT_SECONDS;
+    // how long a transaction may be pending before it is reverted, 0 for no limit
+    private int transactionTimeoutSeconds = DEFAULT_TRANSACTION_TIMEOUT_SECONDS;
+    // how long the session of a client that lost its connection is kept for it to resume, 0 if it leaves right away
+    private int resumeTimeoutSeconds = DEFAULT_RESUME_TIMEOUT_SECONDS;
+    // how many of the objects written to each client are kept to be sent again when it resumes
+    private int replayBufferSize = DEFAULT_REPLAY_BUFFER_SIZE;
+    // how long the writes to a client may wait for more writes before they are flushed, 0 flushes after every queue drain
+    private long writeLingerNanos = 0;
+    // how many steps a client may be ahead of the slowest client, 0 means that all clients step together
+    private int lagWindow = 0;
+    // transfers are netted per step and settled at the barrier instead of being forwarded one by one
+    private boolean isNetSettlementEnabled = false;
+    // logs every state change so that the simulation can be restored after a crash, null if not enabled
+    private WriteAheadLog writeAheadLog = null;
+    // the step that the clients of a restored simulation pick up at, 0 if the simulation was not restored
+    private int restoredStep = 0;
+    private final Set<UUID> restoredClientIds = ConcurrentHashMap.newKeySet();
 
     ServerData(Integer connectionLimit, Integer portNumber, boolean isDebugEnabled) {
+        this(connectionLimit, connectionLimit, portNumber, isDebugEnabled);
+    }
+
+    ServerData(Integer connectionLimit, Integer maxClients, Integer portNumber, boolean isDebugEnabled) {
+        this.serverId = UUID.randomUUID();
         this.connectionLimit = connectionLimit;
+        this.maxClients = maxClients;
         this.portNumber = portNumber;
         this.isDebugEnabled = isDebugEnabled;
         this.currentStep = new AtomicInteger(1);
         this.totalSteps = new AtomicInteger(1);
         this.currentConnections = new AtomicInteger(0);
         this.connectedSockets = new ConcurrentHashMap<>();
-        this.pendingTransactions = new ConcurrentHashMap<>();
-        this.completedTransactions = new ConcurrentHashMap<>();
-        this.pendingTouristTransactions = new ConcurrentHashMap<>();
-        this.completedTouristTransactions = new ConcurrentHashMap<>();
+        this.clientRegistry = new ClientRegistry(maxClients);
+        this.pendingTransactions = new PendingTransactionTable(this.clientRegistry, PENDING_TRANSACTIONS_INITIAL_CAPACITY);
+        this.pendingTouristTransactions = new PendingTransactionTable(this.clientRegistry, PENDING_TRANSACTIONS_INITIAL_CAPACITY);
         this.bankInformationHashMap = new BankInformation();
+        this.accountDirectory = new AccountDirectory();
+        this.bankInformationLog = new BankInformationLog(this.bankInformationHashMap, this.accountDirectory,
+                BankInformationLog.DEFAULT_CAPACITY);
         this.readyClients = new AtomicInteger(0);
+        this.stepBarrier = new StepBarrier();
+        this.metrics = new Metrics(this);
+    }
+
+    public StepBarrier getStepBarrier() {
+        return stepBarrier;
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
     }
 
     public void incrementReadyClients() {
         this.readyClients.incrementAndGet();
+        if(this.writeAheadLog != null)
+            this.writeAheadLog.logClientReady();
+        this.stepBarrier.signalStateChanged();
     }
 
     public int getReadyClients() {
@@ -58,23 +143,158 @@ public class ServerData {
     }
 
     public void incrementCurrentConnections() {
-        this.currentConnections.incrementAndGet();
-        logger.logCurrentConnections(this.currentConnections.get());
+        var currentConnections = this.currentConnections.incrementAndGet();
+        logger.logCurrentConnections(currentConnections);
+        if(currentConnections == this.maxClients)
+            logger.logConnectionLimitReached(currentConnections);
+        this.stepBarrier.signalStateChanged();
     }
 
     public void decrementCurrentConnections() {
         this.currentConnections.decrementAndGet();
         logger.logCurrentConnections(this.currentConnections.get());
+        this.stepBarrier.signalStateChanged();
+    }
+
+    public boolean canAcceptConnection() {
+        return getCurrentConnections() < this.maxClients;
+    }
+
+    /**
+     * The client only takes part in the steps once the Server has admitted it, see admitClient()
+     * @return the slot that the client got in the ClientRegistry
+     */
+    public int addConnectedSocket(Socket threadneedleSocket, UUID clientId) {
+        synchronized (this.membershipLock) {
+            if(this.connectedSockets.containsKey(clientId))
+                throw new KeyAlreadyExistsException();
+            var slot = this.clientRegistry.register(clientId);
+            var initialStep = isRestored() ? this.restoredStep : 1;
+            var connectedSocket = new ConnectedSocket(threadneedleSocket, clientId, slot, this.clientRegistry, initialStep,
+                    this.queueHighWatermark, this.queueLowWatermark, isSessionResumeEnabled() ? this.replayBufferSize : 0);
+            this.clientRegistry.setConnectedSocket(slot, connectedSocket);
+            this.connectedSockets.putIfAbsent(clientId, connectedSocket);
+            this.stepBarrier.signalStateChanged();
+            return slot;
+        }
+    }
+
+    /**
+     * Hands the client's session to its new connection, the connection that it had before is closed if it is still open
+     * @return the client's socket, null if the client has no session to resume
+     */
+    public ConnectedSocket resumeConnectedSocket(Socket threadneedleSocket, UUID clientId) {
+        if(!isSessionResumeEnabled())
+            return null;
+        Socket previousSocket;
+        ConnectedSocket connectedSocket;
+        synchronized (this.membershipLock) {
+            connectedSocket = this.connectedSockets.get(clientId);
+            if(connectedSocket == null)
+                return null;
+            previousSocket = connectedSocket.attach(threadneedleSocket);
+        }
+        try {
+            if(previousSocket != threadneedleSocket)
+                previousSocket.close();
+        } catch (IOException e) {
+            // the connection was going to be closed anyway
+        }
+        this.stepBarrier.signalStateChanged();
+        return connectedSocket;
+    }
+
+    /**
+     * The connection of a client has been closed. A client that takes part in a running simulation and didn't ask
+     * to leave keeps its session for the resume timeout, everyone else has left
+     * @param threadneedleSocket the connection, nothing happens if the client has resumed on another one since
+     * @param isLeaving the client asked for the connection to be closed
+     */
+    public void disconnectSocket(UUID clientId, Socket threadneedleSocket, boolean isLeaving) {
+        synchronized (this.membershipLock) {
+            var connectedSocket = this.connectedSockets.get(clientId);
+            if(connectedSocket == null) {
+                logger.logErrorSocketNotInSocketList(clientId.toString());
+                return;
+            }
+            if(connectedSocket.getThreadneedleSocket() != threadneedleSocket)
+                return;
+            if(!isLeaving && isSessionResumeEnabled() && connectedSocket.isMember() && getHasSimulationStarted()
+                    && !isStopRequested()) {
+                connectedSocket.detach();
+                this.sessionDeadlines.schedule(clientId,
+                        connectedSocket.getDetachedNanos() + TimeUnit.SECONDS.toNanos(this.resumeTimeoutSeconds));
+                logger.logSessionDetached(clientId.toString(), this.resumeTimeoutSeconds);
+                return;
+            }
+            removeSocketByClientId(clientId);
+        }
+        logger.logSocketClosed(clientId.toString());
+    }
+
+    /**
+     * Called by the session DeadlineWheel, a client that hasn't resumed its session by now has left
+     */
+    void expireDetachedSession(UUID clientId) {
+        synchronized (this.membershipLock) {
+            var connectedSocket = this.connectedSockets.get(clientId);
+            // the client may have resumed, and lost its connection again later on
+            if(connectedSocket == null || !connectedSocket.isDetached() || System.nanoTime()
+                    - connectedSocket.getDetachedNanos() < TimeUnit.SECONDS.toNanos(this.resumeTimeoutSeconds))
+                return;
+            removeSocketByClientId(clientId);
+        }
+        logger.logSessionExpired(clientId.toString(), this.resumeTimeoutSeconds);
+    }
+
+    /**
+     * Lets a client that is ready take part in the steps, the Server only does this at a step boundary. A client that
+     * joins a running simulation starts at the current step
+     * @return false if the client can't be admitted, e.g. because it has left again
+     */
+    public boolean admitClient(ConnectedSocket connectedSocket) {
+        synchronized (this.membershipLock) {
+            if(connectedSocket.isMember() || !connectedSocket.isReady()
+                    || this.connectedSockets.get(connectedSocket.getClientId()) != connectedSocket)
+                return false;
+            if(getHasSimulationStarted()) {
+                this.clientRegistry.setStep(connectedSocket.getSlot(), getCurrentStep());
+                this.clientRegistry.setGrantedStep(connectedSocket.getSlot(), getCurrentStep());
+            }
+            connectedSocket.setMember(true);
+            this.memberCount.incrementAndGet();
+            if(connectedSocket.getCurrentStep() == getCurrentStep())
+                this.stepBarrier.arrive();
+        }
+        this.stepBarrier.signalStateChanged();
+        return true;
+    }
+
+    /**
+     * @return the clients that are ready but don't take part in the steps yet
+     */
+    public List<ConnectedSocket> getJoiningClients() {
+        var joiningClients = new ArrayList<ConnectedSocket>();
+        for (var connectedSocket : this.connectedSockets.values()) {
+            if(connectedSocket.isReady() && !connectedSocket.isMember())
+                joiningClients.add(connectedSocket);
+        }
+        return joiningClients;
     }
 
-    public boolean checkIfAllClientsConnected() {
-        return !Objects.equals(getCurrentConnections(), getConnectionLimit());
+    /**
+     * @return the clients that have left since the last call
+     */
+    public List<UUID> takeDepartedClients() {
+        var departedClients = new ArrayList<UUID>();
+        UUID clientId;
+        while ((clientId = this.departedClients.poll()) != null)
+            departedClients.add(clientId);
+        return departedClients;
     }
 
-    public void addConnectedSocket(Socket threadneedleSocket, UUID clientId) {
-        if(this.connectedSockets.containsKey(clientId))
-            throw new KeyAlreadyExistsException();
-        this.connectedSockets.putIfAbsent(clientId, new ConnectedSocket(threadneedleSocket, clientId, 1));
+    public int getMemberCount() {
+        return this.memberCount.get();
     }
 
     public ConcurrentHashMap<UUID, ConnectedSocket> getConnectedSockets() {
@@ -82,33 +302,109 @@ public class ServerData {
     }
 
     public ConnectedSocket getConnectedSocketByClientId(UUID clientId) {
-        for (var socket : this.connectedSockets.values()) {
-            if(socket.getClientId().equals(clientId))
-                return socket;
-        }
-        throw new NoSuchElementException();
+        return this.clientRegistry.getConnectedSocket(clientId);
     }
 
+    public ConnectedSocket getConnectedSocketBySlot(int slot) {
+        return this.clientRegistry.getConnectedSocket(slot);
+    }
+
+    public ClientRegistry getClientRegistry() {
+        return clientRegistry;
+    }
+
+    /**
+     * The client has left, the step barrier stops waiting for it right away. Its pending transfers are settled
+     * before its slot can be handed to anyone else
+     */
     public ConnectedSocket removeSocketByClientId(UUID clientId) {
-        return this.connectedSockets.remove(clientId);
+        ConnectedSocket connectedSocket;
+        synchronized (this.membershipLock) {
+            connectedSocket = this.connectedSockets.remove(clientId);
+            if(connectedSocket != null) {
+                connectedSocket.close();
+                if(connectedSocket.isMember()) {
+                    // queued before the barrier can let the Server move on, so the others hear of it at this boundary
+                    if(getHasSimulationStarted())
+                        this.departedClients.add(clientId);
+                    connectedSocket.setMember(false);
+                    this.memberCount.decrementAndGet();
+                    if(connectedSocket.getCurrentStep() == getCurrentStep())
+                        this.stepBarrier.depart();
+                }
+                settlePendingTransactionsOf(clientId);
+            }
+            this.clientRegistry.release(clientId);
+        }
+        this.stepBarrier.signalStateChanged();
+        return connectedSocket;
+    }
+
+    /**
+     * The transfers to a client that has left are reverted, and the ones from it are dropped, as there is nobody left
+     * to tell how they ended
+     */
+    private void settlePendingTransactionsOf(UUID clientId) {
+        var revertedTransactions = 0;
+        var droppedTransactions = 0;
+        for (var accountTransaction : this.pendingTransactions.getAccountTransactions()) {
+            var transactionId = accountTransaction.getTransactionId();
+            if(clientId.equals(accountTransaction.getClientIdFrom())) {
+                if(this.pendingTransactions.markSettling(transactionId) != ClientRegistry.NO_SLOT
+                        && removePendingTransaction(transactionId) != null)
+                    droppedTransactions++;
+            }
+            else if(clientId.equals(accountTransaction.getClientIdTo()) && revertPendingTransaction(transactionId))
+                revertedTransactions++;
+        }
+        logger.logClientLeft(clientId.toString(), revertedTransactions, droppedTransactions);
     }
 
     public void incrementStepOfConnectedSocketByClientId(UUID clientId) {
-        for (var socket : this.connectedSockets.values()) {
-            if(socket.getClientId() == clientId) {
-                socket.incrementCurrentStep();
-                return;
-            }
+        incrementStepOfConnectedSocketBySlot(this.clientRegistry.getConnectedSocket(clientId).getSlot());
+    }
+
+    public void incrementStepOfConnectedSocketBySlot(int slot) {
+        var stepStartNanos = isBoundedLagEnabled()
+                ? this.clientRegistry.getGrantedNanos(slot)
+                : this.metrics.getStepStartNanos();
+        if(stepStartNanos != 0)
+            this.metrics.recordStepReportLag(System.nanoTime() - stepStartNanos);
+        updateStepBarrier(this.clientRegistry.incrementStep(slot));
+    }
+
+    /**
+     * Keeps the count of clients at the server's step up to date after a client has taken a step,
+     * and lets the Server know once the last client has arrived
+     * @param clientStep the step that the client is at now
+     */
+    private void updateStepBarrier(int clientStep) {
+        if(isBoundedLagEnabled()) {
+            // every report can open up the window for someone
+            this.stepBarrier.signalStateChanged();
+            return;
         }
-        throw new NoSuchElementException(String.format("Socket with Client ID %s not found%n", clientId));
+        var serverStep = getCurrentStep();
+        if(clientStep - 1 == serverStep)
+            this.stepBarrier.depart();
+        else if(clientStep == serverStep && this.stepBarrier.arrive() >= getMemberCount())
+            this.stepBarrier.signalStateChanged();
+    }
+
+    /**
+     * @return true if every client that takes part in the steps has reported the server's current step, a client that
+     * has lost its connection is waited for until it resumes or its session expires
+     */
+    public boolean areAllClientsAtCurrentStep() {
+        return this.stepBarrier.getArrivedClients() == getMemberCount();
     }
 
     public int getConnectedSockedStepByClientId(UUID clientId) {
-        for (var socket : this.connectedSockets.values()) {
-            if(socket.getClientId() == clientId)
-                return socket.getCurrentStep();
-        }
-        throw new NoSuchElementException(String.format("Socket with Client ID %s not found%n", clientId));
+        return this.clientRegistry.getConnectedSocket(clientId).getCurrentStep();
+    }
+
+    public int getConnectedSocketStepBySlot(int slot) {
+        return this.clientRegistry.getStep(slot);
     }
 
     public void closeAllSockets() {
@@ -122,9 +418,16 @@ public class ServerData {
         });
     }
 
+    /**
+     * @return the IDs of the clients that take part in the simulation, separated by commas
+     */
     public String convertConnectedClientIdToUUID() {
         StringBuilder convertedClientIds = new StringBuilder();
-        ArrayList<UUID> clientIds = new ArrayList<>(connectedSockets.keySet());
+        ArrayList<UUID> clientIds = new ArrayList<>();
+        this.connectedSockets.values().forEach(socket -> {
+            if(socket.isMember())
+                clientIds.add(socket.getClientId());
+        });
 
         clientIds.forEach(key -> convertedClientIds.append(key).append(","));
 
@@ -136,27 +439,223 @@ public class ServerData {
     }
 
     public void incrementCurrentStep() {
-        this.currentStep.incrementAndGet();
+        var step = this.currentStep.incrementAndGet();
+        if(this.writeAheadLog != null)
+            this.writeAheadLog.logStep(step);
+        var arrivedClients = 0;
+        for (var socket : this.connectedSockets.values()) {
+            if(socket.isMember() && socket.getCurrentStep() == step)
+                arrivedClients++;
+        }
+        this.stepBarrier.setArrivedClients(arrivedClients);
+    }
+
+    /**
+     * Bounded lag stepping mode: the server's current step follows the slowest client
+     * @return the step of the slowest client that takes part in the steps
+     */
+    public int updateSlowestClientStep() {
+        var slowestStep = Integer.MAX_VALUE;
+        for (var socket : this.connectedSockets.values()) {
+            if(socket.isMember())
+                slowestStep = Math.min(slowestStep, socket.getCurrentStep());
+        }
+        if(slowestStep == Integer.MAX_VALUE)
+            return getCurrentStep();
+
+        var previousStep = this.currentStep.getAndAccumulate(slowestStep, Math::max);
+        if(slowestStep > previousStep && this.writeAheadLog != null)
+            this.writeAheadLog.logStep(slowestStep);
+        return slowestStep;
+    }
+
+    /**
+     * @return false if a transaction with the same ID is pending already, e.g. because the client has sent it again
+     */
+    public boolean addToPendingTransactions(AccountTransaction accountTransaction) {
+        if(accountTransaction.arrivalNanos == 0)
+            accountTransaction.arrivalNanos = System.nanoTime();
+        if(!this.pendingTransactions.add(accountTransaction))
+            return false;
+        if(this.writeAheadLog != null)
+            this.writeAheadLog.logPendingTransactionAdded(accountTransaction);
+        if(isBoundedLagEnabled() && accountTransaction.getStep() != null)
+            this.pendingTransactionsPerStep.merge(accountTransaction.getStep(), 1, Integer::sum);
+        scheduleDeadline(accountTransaction.getTransactionId(), accountTransaction.arrivalNanos);
+        return true;
+    }
+
+    private void scheduleDeadline(UUID transactionId, long fromNanos) {
+        if(this.transactionTimeoutSeconds > 0)
+            this.transactionDeadlines.schedule(transactionId,
+                    fromNanos + TimeUnit.SECONDS.toNanos(this.transactionTimeoutSeconds));
+    }
+
+    /**
+     * Called by the DeadlineWheel once a transaction's deadline has passed. If it is still pending and not being
+     * settled, its receiver never answered, so it is taken out of the pending transactions for the step to be able
+     * to finish, and its sender is sent a RevertTransaction: to cancel the withdrawal, unless that has been done already.
+     * The receiver may only be slow and still deposit the transfer, so it is sent a RevertTransaction: as well
+     */
+    void expirePendingTransaction(UUID transactionId) {
+        var senderSlot = this.pendingTransactions.markReverting(transactionId);
+        if(!revertPendingTransaction(transactionId, senderSlot, true))
+            return;
+        this.metrics.recordExpiredTransaction();
+        var senderId = senderSlot == ClientRegistry.NO_SLOT ? null : this.clientRegistry.getClientId(senderSlot);
+        logger.logTransactionExpired(transactionId.toString(), String.valueOf(senderId), this.transactionTimeoutSeconds);
+    }
+
+    /**
+     * Takes the transaction out of the pending transactions, and sends its sender a RevertTransaction: to cancel
+     * the withdrawal, e.g. when its receiver has left
+     * @return false if the transaction is no longer pending, or someone else is settling it
+     */
+    public boolean revertPendingTransaction(UUID transactionId) {
+        return revertPendingTransaction(transactionId, this.pendingTransactions.markReverting(transactionId), false);
+    }
+
+    /**
+     * @param senderSlot what marking the transaction as reverting returned, NO_SLOT if the sender has been told already
+     * @param isReceiverReverted the receiver is told to revert its deposit as well
+     */
+    private boolean revertPendingTransaction(UUID transactionId, int senderSlot, boolean isReceiverReverted) {
+        // from here on the transaction is ours to settle, unless its sender is being told that it is done
+        if(this.pendingTransactions.markSettling(transactionId) == ClientRegistry.NO_SLOT)
+            return false;
+
+        // the reverts are queued before the transaction is removed, so they are there before the step can end
+        if(senderSlot != ClientRegistry.NO_SLOT)
+            sendRevertTransaction(this.clientRegistry.getClientId(senderSlot), transactionId);
+        if(isReceiverReverted) {
+            var accountTransaction = this.pendingTransactions.getAccountTransaction(transactionId);
+            if(accountTransaction != null)
+                sendRevertTransaction(accountTransaction.getClientIdTo(), transactionId);
+        }
+
+        removePendingTransaction(transactionId);
+        return true;
+    }
+
+    private void sendRevertTransaction(UUID clientId, UUID transactionId) {
+        var connectedSocket = clientId == null ? null : this.connectedSockets.get(clientId);
+        if(connectedSocket != null)
+            connectedSocket.addToMessageQueue(new Messages(Constant.PREFIX_REVERT_TRANSACTION + transactionId, this.serverId));
+    }
+
+    /**
+     * Takes the transaction out of the pending transactions and adds it to the completed ones
+     * @return the transaction, null if no transaction with the ID was pending
+     */
+    public AccountTransaction completePendingTransaction(UUID transactionId) {
+        var removed = removePendingTransaction(transactionId);
+        if(removed != null)
+            addCompletedTransaction(removed);
+        return removed;
+    }
+
+    /**
+     * @return the transaction that was removed, null if no transaction with the ID was pending
+     */
+    public AccountTransaction removePendingTransaction(UUID transactionId) {
+        var removed = this.pendingTransactions.removeAccountTransaction(transactionId);
+        if(removed != null)
+            onPendingTransactionRemoved(removed);
+        else if(this.pendingTransactions.isEmpty())
+            this.stepBarrier.signalStateChanged();
+        return removed;
+    }
+
+    private void onPendingTransactionRemoved(AccountTransaction removed) {
+        if(this.writeAheadLog != null)
+            this.writeAheadLog.logPendingTransactionRemoved(removed.getTransactionId());
+        if(isBoundedLagEnabled() && removed.getStep() != null) {
+            var remaining = this.pendingTransactionsPerStep.computeIfPresent(removed.getStep(),
+                    (step, count) -> count == 1 ? null : count - 1);
+            if(remaining == null)
+                this.stepBarrier.signalStateChanged(); // the oldest unsettled step may have moved on
+        }
+        if(this.pendingTransactions.isEmpty())
+            this.stepBarrier.signalStateChanged();
+    }
+
+    /**
+     * @return the step of the oldest pending transaction, Integer.MAX_VALUE if nothing is pending
+     */
+    public int getOldestPendingTransactionStep() {
+        var oldest = this.pendingTransactionsPerStep.firstEntry();
+        return oldest == null ? Integer.MAX_VALUE : oldest.getKey();
+    }
+
+    /**
+     * Net settlement mode: holds the transfer back until every client has reported its step
+     * @param clientStep the step that the sending client last reported, used if the transfer has no step of its own
+     */
+    public void addToNettingLedger(AccountTransaction accountTransaction, int clientStep) {
+        var step = accountTransaction.getStep() != null ? accountTransaction.getStep() : clientStep + 1;
+        accountTransaction.arrivalNanos = System.nanoTime();
+        this.nettingLedger.addTransaction(step, accountTransaction);
     }
 
-    public void addToPendingTransactions(AccountTransaction accountTransaction) {
-        this.pendingTransactions.put(accountTransaction.transactionId, accountTransaction);
+    /**
+     * Nets every transfer up to the given step, the netted transfers count as completed
+     * @return the settlement for every client that had a transfer, by client ID
+     */
+    public HashMap<UUID, NetSettlement> settleNetPositions(int upToStep) {
+        return this.nettingLedger.settle(upToStep, this.serverId, this::addCompletedTransaction);
     }
 
-    public void removePendingTransaction(UUID transactionId) {
-        this.pendingTransactions.remove(transactionId);
+    public boolean hasUnsettledTransactions() {
+        return !this.nettingLedger.isEmpty();
     }
 
     public boolean isPendingTransactionEmpty() {
         return this.pendingTransactions.isEmpty();
     }
 
-    public ConcurrentHashMap<UUID, AccountTransaction> getPendingTransactions() {
+    public PendingTransactionTable getPendingTransactions() {
         return pendingTransactions;
     }
 
+    /**
+     * @return a copy of the pending transaction, null if no transaction with the ID is pending
+     */
     public AccountTransaction getPendingTransactionById(UUID transactionId) {
-        return this.pendingTransactions.get(transactionId);
+        return this.pendingTransactions.getAccountTransaction(transactionId);
+    }
+
+    /**
+     * The sender of the pending transaction is about to be told that it is done, nobody else can settle it anymore
+     * @return the slot of the client that sent the pending transaction, ClientRegistry.NO_SLOT if no transaction
+     * with the ID is pending
+     */
+    public int markPendingTransactionSettling(UUID transactionId) {
+        return this.pendingTransactions.markSettling(transactionId);
+    }
+
+    /**
+     * The sender of the pending transaction is about to be told to revert it
+     * @return the slot of the client that sent the pending transaction, ClientRegistry.NO_SLOT if no transaction
+     * with the ID is pending or its sender has been told to revert it already
+     */
+    public int markPendingTransactionReverting(UUID transactionId) {
+        return this.pendingTransactions.markReverting(transactionId);
+    }
+
+    /**
+     * The sender of the pending transaction has been told to revert it, so the transaction is taken out of the
+     * pending transactions without being completed
+     * @return false if the transaction is no longer pending, or someone else is settling it
+     */
+    public boolean removeRevertedPendingTransaction(UUID transactionId) {
+        if(this.pendingTransactions.markSettling(transactionId) == ClientRegistry.NO_SLOT)
+            return false;
+        removePendingTransaction(transactionId);
+        return true;
+    }
+
+    public UUID getServerId() {
+        return serverId;
     }
 
     public Integer getPortNumber() {
@@ -171,49 +670,126 @@ public class ServerData {
         return connectionLimit;
     }
 
+    public Integer getMaxClients() {
+        return maxClients;
+    }
+
     public Integer getCurrentConnections() {
         return currentConnections.get();
     }
 
+    /**
+     * @return true once as many clients as the simulation starts with are connected and ready
+     */
     public boolean haveAllClientsBeenInitialized() {
-        return this.getConnectionLimit().equals(this.getCurrentConnections()) &&
-                this.getConnectionLimit() == this.getConnectedSockets().size() &&
-                this.getConnectionLimit() == this.getReadyClients();
+        var readySockets = 0;
+        for (var connectedSocket : this.connectedSockets.values()) {
+            if(connectedSocket.isReady())
+                readySockets++;
+        }
+        return readySockets >= this.getConnectionLimit();
     }
 
     public BankInformation getBankInformationHashMap() {
         return bankInformationHashMap;
     }
 
+    /**
+     * @return the index of every account in the BankInformation, by owner, bank and account ID
+     */
+    public AccountDirectory getAccountDirectory() {
+        return accountDirectory;
+    }
+
+    /**
+     * @return the version of the BankInformation after the update
+     */
+    public long addBankInformation(BankInformation bankInformation) {
+        var version = this.bankInformationLog.update(bankInformation);
+        if(this.writeAheadLog != null)
+            this.writeAheadLog.logBankInformation(bankInformation);
+        return version;
+    }
+
+    /**
+     * Sends every client that acknowledges BankInformation versions what has changed since the version it has
+     */
+    public void syncBankInformation() {
+        for (var connectedSocket : this.connectedSockets.values()) {
+            if (connectedSocket.getAcknowledgedBankInformationVersion() != ConnectedSocket.NOT_VERSIONED)
+                syncBankInformation(connectedSocket);
+        }
+    }
+
+    /**
+     * Sends the client a BankInformationDelta from the version it has acknowledged to the current version, unless it
+     * has already been sent one that goes up to the current version
+     */
+    public void syncBankInformation(ConnectedSocket connectedSocket) {
+        if (connectedSocket.getSentBankInformationVersion() >= this.bankInformationLog.getVersion())
+            return;
+        var delta = this.bankInformationLog.getDeltaSince(connectedSocket.getAcknowledgedBankInformationVersion());
+        connectedSocket.setSentBankInformationVersion(delta.getToVersion());
+        connectedSocket.addToMessageQueue(delta);
+    }
+
     public void setHasSimulationStarted(boolean hasSimulationStarted) {
-        this.hasSimulationStarted.set(hasSimulationStarted);
+        var wasStarted = this.hasSimulationStarted.getAndSet(hasSimulationStarted);
+        // the clocks of the restored transactions start once their clients have rejoined
+        if(hasSimulationStarted && !wasStarted && isRestored()) {
+            var nowNanos = System.nanoTime();
+            this.pendingTransactions.getAccountTransactions().forEach(accountTransaction ->
+                    scheduleDeadline(accountTransaction.getTransactionId(), nowNanos));
+        }
     }
 
     public boolean getHasSimulationStarted() {
         return this.hasSimulationStarted.get();
     }
 
-    public void addCompletedTransaction(UUID transactionId) {
-        var accountTransaction = this.pendingTransactions.get(transactionId);
-        this.completedTransactions.put(accountTransaction.getTransactionId(), accountTransaction);
+    public void addCompletedTransaction(AccountTransaction accountTransaction) {
+        if(accountTransaction.arrivalNanos != 0)
+            this.metrics.recordTransactionRoundTrip(System.nanoTime() - accountTransaction.arrivalNanos);
+        this.completedTransactionStore.addAccountTransaction(accountTransaction);
+        if(this.writeAheadLog != null)
+            this.writeAheadLog.logCompletedTransaction(accountTransaction);
     }
 
     public AccountTransaction getCompletedTransactionById(UUID transactionId) {
-        return this.completedTransactions.get(transactionId);
+        return this.completedTransactionStore.getAccountTransaction(transactionId);
     }
 
     public void addCompletedTouristTransaction(TouristTransaction touristTransaction) {
-        this.completedTouristTransactions.put(touristTransaction.getTransactionId(), touristTransaction);
+        this.completedTransactionStore.addTouristTransaction(touristTransaction);
+        if(this.writeAheadLog != null)
+            this.writeAheadLog.logCompletedTouristTransaction(touristTransaction);
+    }
+
+    public TouristTransaction getCompletedTouristTransactionById(UUID transactionId) {
+        return this.completedTransactionStore.getTouristTransaction(transactionId);
+    }
+
+    public CompletedTransactionStore getCompletedTransactionStore() {
+        return completedTransactionStore;
+    }
+
+    public void setCompletedTransactionStore(CompletedTransactionStore completedTransactionStore) {
+        this.completedTransactionStore = completedTransactionStore;
     }
 
-    public void addPendingTouristTransaction(TouristTransaction touristTransaction) {
-        this.pendingTouristTransactions.put(touristTransaction.getTransactionId(), touristTransaction);
+    /**
+     * @return false if a tourist transaction with the same ID is pending already
+     */
+    public boolean addPendingTouristTransaction(TouristTransaction touristTransaction) {
+        if(!this.pendingTouristTransactions.add(touristTransaction))
+            return false;
+        if(this.writeAheadLog != null)
+            this.writeAheadLog.logPendingTouristTransactionAdded(touristTransaction);
+        return true;
     }
 
     public TouristTransaction getAndRemovePendingTouristTransaction(UUID transactionId) {
-        var transaction = this.pendingTouristTransactions.get(transactionId);
-        this.pendingTouristTransactions.remove(transactionId);
-        return transaction;
+        return this.pendingTouristTransactions.removeTouristTransaction(transactionId);
     }
 
     public boolean isDebugEnabled() {
@@ -224,7 +800,210 @@ public class ServerData {
         this.isDebugEnabled = value;
     }
 
+    public ConnectionMode getConnectionMode() {
+        return connectionMode;
+    }
+
+    public void setConnectionMode(ConnectionMode connectionMode) {
+        this.connectionMode = connectionMode;
+    }
+
+    public int getIoThreads() {
+        return ioThreads;
+    }
+
+    public void setIoThreads(int ioThreads) {
+        this.ioThreads = ioThreads;
+    }
+
+    public int getQueueHighWatermark() {
+        return queueHighWatermark;
+    }
+
+    public int getQueueLowWatermark() {
+        return queueLowWatermark;
+    }
+
+    /**
+     * Only applies to the clients that connect afterwards
+     * @param highWatermark the queue depth at which the clients that send to the queue are paused
+     * @param lowWatermark the queue depth at which they may carry on, below the high watermark
+     */
+    public void setQueueWatermarks(int highWatermark, int lowWatermark) {
+        if(highWatermark <= 0 || lowWatermark < 0 || lowWatermark >= highWatermark)
+            throw new IllegalArgumentException(String.format("Invalid queue watermarks %s/%s", highWatermark, lowWatermark));
+        this.queueHighWatermark = highWatermark;
+        this.queueLowWatermark = lowWatermark;
+    }
+
+    public int getHandshakeTimeoutSeconds() {
+        return handshakeTimeoutSeconds;
+    }
+
+    public void setHandshakeTimeoutSeconds(int handshakeTimeoutSeconds) {
+        this.handshakeTimeoutSeconds = handshakeTimeoutSeconds;
+    }
+
+    public int getTransactionTimeoutSeconds() {
+        return transactionTimeoutSeconds;
+    }
+
+    public void setTransactionTimeoutSeconds(int transactionTimeoutSeconds) {
+        this.transactionTimeoutSeconds = transactionTimeoutSeconds;
+    }
+
+    public int getResumeTimeoutSeconds() {
+        return resumeTimeoutSeconds;
+    }
+
+    public void setResumeTimeoutSeconds(int resumeTimeoutSeconds) {
+        this.resumeTimeoutSeconds = resumeTimeoutSeconds;
+    }
+
+    public boolean isSessionResumeEnabled() {
+        return this.resumeTimeoutSeconds > 0;
+    }
+
+    public int getReplayBufferSize() {
+        return replayBufferSize;
+    }
+
+    /**
+     * Only applies to the clients that connect afterwards
+     */
+    public void setReplayBufferSize(int replayBufferSize) {
+        this.replayBufferSize = replayBufferSize;
+    }
+
+    public long getWriteLingerNanos() {
+        return writeLingerNanos;
+    }
+
+    public void setWriteLingerMicros(int writeLingerMicros) {
+        this.writeLingerNanos = TimeUnit.MICROSECONDS.toNanos(writeLingerMicros);
+    }
+
+    public int getLagWindow() {
+        return lagWindow;
+    }
+
+    public void setLagWindow(int lagWindow) {
+        this.lagWindow = lagWindow;
+    }
+
+    public boolean isNetSettlementEnabled() {
+        return isNetSettlementEnabled;
+    }
+
+    public void setIsNetSettlementEnabled(boolean value) {
+        this.isNetSettlementEnabled = value;
+    }
+
+    public WriteAheadLog getWriteAheadLog() {
+        return writeAheadLog;
+    }
+
+    public void setWriteAheadLog(WriteAheadLog writeAheadLog) {
+        this.writeAheadLog = writeAheadLog;
+    }
+
+    /**
+     * Hands the write-ahead log a checkpoint of the current step, should only be called at a step boundary
+     */
+    public void checkpoint() {
+        var checkpoint = new Checkpoint(getCurrentStep(), getTotalSteps(),
+                new ArrayList<>(this.connectedSockets.keySet()),
+                this.pendingTransactions.getAccountTransactions(),
+                this.pendingTouristTransactions.getTouristTransactions(),
+                copyBankInformation());
+        this.writeAheadLog.checkpoint(checkpoint);
+    }
+
+    private BankInformation copyBankInformation() {
+        var copy = new BankInformation();
+        copy.setVersion(this.bankInformationHashMap.getVersion());
+        this.bankInformationHashMap.getBankInformationHashMap().forEach((clientId, accounts) ->
+                copy.getBankInformationHashMap().put(clientId, new HashMap<>(accounts)));
+        return copy;
+    }
+
+    /**
+     * Puts the ServerData back in the state of the checkpoint. The clients of the checkpoint can then rejoin with
+     * their client IDs and pick up at the checkpoint's step
+     */
+    public void restore(Checkpoint checkpoint) {
+        this.restoredStep = checkpoint.getStep();
+        this.currentStep.set(checkpoint.getStep());
+        this.totalSteps.set(checkpoint.getTotalSteps());
+        this.restoredClientIds.addAll(checkpoint.getClientIds());
+        // the pending transactions refer to the clients by their slots, so the clients get theirs before they rejoin
+        checkpoint.getClientIds().forEach(this.clientRegistry::register);
+        this.bankInformationLog.restore(checkpoint.getBankInformation());
+        checkpoint.getPendingTransactions().forEach(accountTransaction -> {
+            if(this.pendingTransactions.add(accountTransaction) && isBoundedLagEnabled() && accountTransaction.getStep() != null)
+                this.pendingTransactionsPerStep.merge(accountTransaction.getStep(), 1, Integer::sum);
+        });
+        checkpoint.getPendingTouristTransactions().forEach(this.pendingTouristTransactions::add);
+    }
+
+    public boolean isRestored() {
+        return this.restoredStep > 0;
+    }
+
+    public int getRestoredStep() {
+        return restoredStep;
+    }
+
+    public boolean isRestoredClient(UUID clientId) {
+        return this.restoredClientIds.contains(clientId);
+    }
+
+    public boolean isBoundedLagEnabled() {
+        return this.lagWindow > 0;
+    }
+
+    /**
+     * Asks for more steps without waiting for the Server, which tells the clients about them and adds them to the
+     * total steps from its step loop
+     */
+    public void requestSteps(int steps) {
+        this.requestedSteps.addAndGet(steps);
+        this.stepBarrier.signalStateChanged();
+    }
+
+    /**
+     * @return the steps that have been asked for since the last call, 0 if none
+     */
+    public int takeRequestedSteps() {
+        return this.requestedSteps.getAndSet(0);
+    }
+
+    public int getRequestedSteps() {
+        return this.requestedSteps.get();
+    }
+
+    public boolean isPaused() {
+        return isPaused;
+    }
+
+    public void setIsPaused(boolean value) {
+        this.isPaused = value;
+        this.stepBarrier.signalStateChanged();
+    }
+
+    public boolean isStopRequested() {
+        return isStopRequested;
+    }
+
+    public void requestStop() {
+        this.isStopRequested = true;
+        this.stepBarrier.signalStateChanged();
+    }
+
     public void setTotalSteps(int value) {
         this.totalSteps.set(this.totalSteps.get() + value);
+        if(this.writeAheadLog != null)
+            this.writeAheadLog.logTotalSteps(this.totalSteps.get());
+        this.stepBarrier.signalStateChanged();
     }
 }
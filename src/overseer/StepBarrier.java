@@ -0,0 +1,94 @@
+package overseer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Lets the Server wait for the clients without busy-waiting. ServerData keeps count of how many clients have reported
+ * the server's current step, and signals the barrier whenever something the Server is waiting on changes: the last
+ * client arriving at the step, the last pending transaction settling, clients connecting or getting ready, etc.
+ * The thread that delivers the last report wakes up the Server right away, instead of the Server finding out on its
+ * next poll.
+ */
+public class StepBarrier {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition stateChanged = lock.newCondition();
+    private final AtomicInteger arrivedClients = new AtomicInteger(0); // clients whose step equals the server's step
+    private long version = 0; // bumped on every signal, guarded by the lock
+
+    public int getArrivedClients() {
+        return this.arrivedClients.get();
+    }
+
+    public int arrive() {
+        return this.arrivedClients.incrementAndGet();
+    }
+
+    public int depart() {
+        return this.arrivedClients.decrementAndGet();
+    }
+
+    /**
+     * Used when the server takes a step, at which point the clients that have arrived have to be counted again
+     */
+    public void setArrivedClients(int arrivedClients) {
+        this.arrivedClients.set(arrivedClients);
+    }
+
+    /**
+     * Wakes up everyone waiting on the barrier, so they can re-check whatever they are waiting on
+     */
+    public void signalStateChanged() {
+        this.lock.lock();
+        try {
+            this.version++;
+            this.stateChanged.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public long getVersion() {
+        this.lock.lock();
+        try {
+            return this.version;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until there has been a signal since the version was read, or the timeout runs out
+     * @param observedVersion the version read before checking the state
+     * @param timeoutMillis the longest time to wait
+     */
+    public void awaitStateChange(long observedVersion, long timeoutMillis) throws InterruptedException {
+        var remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        this.lock.lock();
+        try {
+            while (this.version == observedVersion && remaining > 0)
+                remaining = this.stateChanged.awaitNanos(remaining);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until the condition holds. The condition gets re-checked on every signal, and every time the
+     * timeout runs out as a safety net against state that changes without a signal
+     * @param condition what is being waited on
+     * @param recheckMillis how long to wait between checks at most
+     */
+    public void await(BooleanSupplier condition, long recheckMillis) throws InterruptedException {
+        this.lock.lock();
+        try {
+            while (!condition.getAsBoolean())
+                this.stateChanged.await(recheckMillis, TimeUnit.MILLISECONDS);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+}
@@ -4,6 +4,8 @@ import java.io.Serializable;
 import java.util.UUID;
 
 public class TouristTransaction implements Serializable {
+    // pinned to the value of the original class, Threadneedle has its own copy of it and they have to match
+    private static final long serialVersionUID = 4147026647512126792L;
     UUID transactionId;
     UUID clientId; // ID of the Threadneedle client that the Tourist is from
     Integer bankId;
@@ -12,7 +14,14 @@ public class TouristTransaction implements Serializable {
     Integer step;
 
     public TouristTransaction(UUID clientId, Integer bankId, String personId, long amount, Integer step) {
-        this.transactionId = UUID.randomUUID();
+        this(TransactionIds.next(), clientId, bankId, personId, amount, step);
+    }
+
+    /**
+     * Used when the transaction is decoded from the wire, where it already has its ID
+     */
+    TouristTransaction(UUID transactionId, UUID clientId, Integer bankId, String personId, long amount, Integer step) {
+        this.transactionId = transactionId;
         this.clientId = clientId;
         this.bankId = bankId;
         this.personId = personId;
@@ -39,4 +48,8 @@ public class TouristTransaction implements Serializable {
     public long getAmount() {
         return amount;
     }
+
+    public Integer getStep() {
+        return step;
+    }
 }
@@ -0,0 +1,44 @@
+package overseer;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.UUID;
+
+/**
+ * Several AccountTransactions in a single frame. A client can submit all of its transactions for a step at once,
+ * and the Overseer forwards them to each receiving client as one batch per receiver. Batches that the Overseer
+ * forwards have the server's ID as their sender.
+ */
+public class TransactionBatch implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final UUID sender;
+    private final Integer step;
+    private final ArrayList<AccountTransaction> transactions;
+
+    public TransactionBatch(UUID sender, Integer step) {
+        this(sender, step, new ArrayList<>());
+    }
+
+    public TransactionBatch(UUID sender, Integer step, ArrayList<AccountTransaction> transactions) {
+        this.sender = sender;
+        this.step = step;
+        this.transactions = transactions;
+    }
+
+    public UUID getSender() {
+        return sender;
+    }
+
+    public Integer getStep() {
+        return step;
+    }
+
+    public ArrayList<AccountTransaction> getTransactions() {
+        return transactions;
+    }
+
+    public void addTransaction(AccountTransaction accountTransaction) {
+        this.transactions.add(accountTransaction);
+    }
+}
@@ -0,0 +1,26 @@
+package overseer;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out the IDs of new transactions. An ID is a 64-bit number from a counter, and its UUID view, which is what
+ * goes over the wire, has the number as its least significant bits and a prefix that is drawn at random once per
+ * process as its most significant bits. The IDs of different processes don't collide, and unlike UUID.randomUUID()
+ * nothing has to go to the shared SecureRandom for every transaction.
+ */
+public final class TransactionIds {
+    private static final long PREFIX = new SecureRandom().nextLong();
+    private static final AtomicLong nextId = new AtomicLong(1);
+
+    private TransactionIds() {
+    }
+
+    /**
+     * @return the UUID view of the next ID
+     */
+    public static UUID next() {
+        return new UUID(PREFIX, nextId.getAndIncrement());
+    }
+}
@@ -0,0 +1,193 @@
+package overseer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.net.Socket;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A single Threadneedle client in the virtual thread connection mode. Each connection gets two long-lived virtual
+ * threads: one that does blocking reads on the socket's input stream, and one that sleeps until something lands in
+ * the client's message queue, processes it and writes the results out. Nothing is polled and no thread is spawned
+ * per read, which makes it cheap to have hundreds of clients.
+ *
+ * Virtual threads came with Java 21. The method is looked up at runtime so that the Overseer still builds and runs
+ * on older JDKs, where the mode falls back to platform threads. The writes are guarded by a ReentrantLock instead of
+ * synchronized, a virtual thread that blocks on a socket write inside synchronized pins its carrier thread before
+ * Java 24, and a few hundred slow clients would take up every carrier.
+ */
+public class VirtualThreadConnection implements ClientWriter {
+    private static final MethodHandle START_VIRTUAL_THREAD = findStartVirtualThread();
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+    private final Socket threadneedleSocket;
+    private final ClientSession clientSession;
+    private final Logger logger = new Logger();
+    private final Metrics metrics;
+    private InputStream inputStream;
+    private OutputStream outputStream;
+    private Thread queueThread;
+    private volatile Thread readerThread;
+    private volatile boolean isClosed = false;
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    public VirtualThreadConnection(Socket threadneedleSocket, ServerData serverData) {
+        this.threadneedleSocket = threadneedleSocket;
+        this.clientSession = new ClientSession(threadneedleSocket, serverData, this);
+        this.metrics = serverData.getMetrics();
+    }
+
+    public ClientSession getClientSession() {
+        return clientSession;
+    }
+
+    public static boolean isVirtualThreadSupported() {
+        return START_VIRTUAL_THREAD != null;
+    }
+
+    /**
+     * Starts the reader and the message queue threads of the connection
+     */
+    public void start() throws IOException {
+        this.threadneedleSocket.setTcpNoDelay(true); // writes are already coalesced per queue drain, Nagle would only hold them back
+        // the streams stay open for the lifetime of the connection, so they can buffer
+        this.inputStream = new BufferedInputStream(this.threadneedleSocket.getInputStream());
+        this.outputStream = new BufferedOutputStream(this.threadneedleSocket.getOutputStream(), OUTPUT_BUFFER_SIZE);
+        this.queueThread = startThread(this::processMessageQueue);
+        this.clientSession.setMessageListener(() -> LockSupport.unpark(this.queueThread));
+        this.clientSession.setReadResumeListener(() -> LockSupport.unpark(this.readerThread));
+        startThread(this::readObjects);
+    }
+
+    /**
+     * Blocking reads of the objects that the client sends, for as long as the connection is open.
+     * The reader parks while a message queue that the client sends to is over its high watermark
+     */
+    private void readObjects() {
+        this.readerThread = Thread.currentThread();
+        try {
+            while (!this.isClosed && this.clientSession.isConnected()) {
+                while (this.clientSession.isReadPaused() && !this.isClosed)
+                    LockSupport.park(this);
+                var object = this.clientSession.getWireCodec().read(this.inputStream);
+                this.clientSession.onObjectRead(object);
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            if (!this.isClosed)
+                logger.logTransportError(String.valueOf(this.clientSession.getClientId()), e);
+        }
+        close();
+    }
+
+    /**
+     * Processes the client's message queue whenever something is added to it. Parking is safe against lost wake-ups,
+     * an unpark() that comes in before the park() makes the park() return right away. While writes are lingering,
+     * the thread only parks until they are due
+     */
+    private void processMessageQueue() {
+        while (!this.isClosed) {
+            var lingerNanos = this.clientSession.checkMessageQueue();
+            if (!this.clientSession.isConnected()) {
+                close();
+                break;
+            }
+            if (lingerNanos > 0)
+                LockSupport.parkNanos(this, lingerNanos);
+            else
+                LockSupport.park(this);
+        }
+    }
+
+    @Override
+    public void writeObject(Object object) {
+        this.writeLock.lock();
+        try {
+            this.outputStream.write(this.clientSession.getWireCodec().encode(object));
+        } catch (IOException e) {
+            System.err.println("WriteObject error, likely because of a disconnected socket");
+        } finally {
+            this.writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void writeFrame(BroadcastFrame broadcastFrame) {
+        this.writeLock.lock();
+        try {
+            this.outputStream.write(broadcastFrame.getBytes(this.clientSession.getWireCodec()));
+        } catch (IOException e) {
+            System.err.println("WriteObject error, likely because of a disconnected socket");
+        } finally {
+            this.writeLock.unlock();
+            broadcastFrame.release();
+        }
+    }
+
+    @Override
+    public void flush() {
+        this.writeLock.lock();
+        try {
+            this.outputStream.flush();
+            this.metrics.recordSocketWrite();
+        } catch (IOException e) {
+            System.err.println("WriteObject error, likely because of a disconnected socket");
+        } finally {
+            this.writeLock.unlock();
+        }
+    }
+
+    /**
+     * Closes the socket and removes the client from the server data, safe to call from both threads
+     */
+    private void close() {
+        synchronized (this) {
+            if (this.isClosed) return;
+            this.isClosed = true;
+        }
+        try {
+            this.clientSession.closeSocket();
+        } catch (IOException e) {
+            logger.logTransportError(String.valueOf(this.clientSession.getClientId()), e);
+        }
+        LockSupport.unpark(this.queueThread);
+        LockSupport.unpark(this.readerThread);
+    }
+
+    private static Thread startThread(Runnable task) {
+        if (START_VIRTUAL_THREAD != null) {
+            try {
+                return (Thread) START_VIRTUAL_THREAD.invokeExact(task);
+            } catch (Throwable e) {
+                throw new IllegalStateException("Virtual thread could not be started", e);
+            }
+        }
+        var thread = new Thread(task);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * @return Thread.startVirtualThread(Runnable), or null on a JDK that does not have virtual threads
+     */
+    private static MethodHandle findStartVirtualThread() {
+        try {
+            var startVirtualThread = MethodHandles.publicLookup().findStatic(Thread.class, "startVirtualThread",
+                    MethodType.methodType(Thread.class, Runnable.class));
+            // Java 19 and 20 have the method, but it throws unless the preview features are enabled
+            var probeThread = (Thread) startVirtualThread.invokeExact((Runnable) () -> { });
+            probeThread.join();
+            return startVirtualThread;
+        } catch (NoSuchMethodException | IllegalAccessException | UnsupportedOperationException e) {
+            return null;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Virtual threads could not be probed", e);
+        }
+    }
+}
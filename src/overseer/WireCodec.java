@@ -0,0 +1,38 @@
+package overseer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Turns the objects that go between the Overseer and a Threadneedle client into frames on the wire and back.
+ * Every client starts out with the SerializationCodec, and can switch to the BinaryCodec during the SetClientID
+ * handshake (see ClientSession).
+ */
+public interface WireCodec {
+
+    /**
+     * @return the name of the codec, used in the log
+     */
+    String getName();
+
+    /**
+     * @param object the object being sent
+     * @return a complete frame with the encoded object
+     */
+    byte[] encode(Object object) throws IOException;
+
+    /**
+     * Decodes the next frame from the buffer, the position of the buffer is moved past the frame
+     * @param buffer a buffer in read mode, that may hold a partial frame at its end
+     * @return the decoded object, or null if the buffer does not hold a complete frame yet
+     */
+    Object decode(ByteBuffer buffer) throws IOException, ClassNotFoundException;
+
+    /**
+     * A blocking read of the next frame. Never reads past the end of the frame
+     * @param inputStream the stream of the client's socket
+     * @return the decoded object
+     */
+    Object read(InputStream inputStream) throws IOException, ClassNotFoundException;
+}
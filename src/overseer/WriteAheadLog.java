@@ -0,0 +1,312 @@
+package overseer;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Logs the state transitions of the ServerData to a file in the log directory, and writes step-boundary
+ * checkpoints next to it. The threads that change the state only put a record in a queue, a single writer thread
+ * does all of the encoding and writing, so neither the clients' threads nor the Server ever wait on the disk unless
+ * the queue is full.
+ *
+ * Record layout: [byte type] followed by
+ *  - STEP, TOTAL_STEPS: [int step]
+ *  - CLIENT_READY: nothing
+ *  - PENDING_REMOVED: [UUID transactionId]
+ *  - PENDING_ADDED, COMPLETED: an AccountTransaction frame in the BinaryCodec layout
+ *  - TOURIST_PENDING_ADDED, TOURIST_COMPLETED: a TouristTransaction frame
+ *  - BANK_INFORMATION: a BankInformation frame
+ *
+ * A checkpoint holds the byte offset of the log at the moment it was taken. Restoring reads the checkpoint, replays
+ * the completed transactions of the log up to that offset and cuts off whatever came after it.
+ */
+public class WriteAheadLog {
+    static final String LOG_FILE_NAME = "overseer.wal";
+    static final String CHECKPOINT_FILE_NAME = "overseer.checkpoint";
+    private static final int QUEUE_CAPACITY = 64 * 1024;
+    private static final int MAX_BATCH = 1024;
+
+    private static final byte STEP = 1;
+    private static final byte TOTAL_STEPS = 2;
+    private static final byte CLIENT_READY = 3;
+    private static final byte PENDING_ADDED = 4;
+    private static final byte PENDING_REMOVED = 5;
+    private static final byte COMPLETED = 6;
+    private static final byte TOURIST_PENDING_ADDED = 7;
+    private static final byte TOURIST_COMPLETED = 8;
+    private static final byte BANK_INFORMATION = 9;
+    // never written to the log, tells the writer thread to write a checkpoint
+    private static final byte CHECKPOINT = 10;
+
+    private final Path directory;
+    private final int checkpointInterval;
+    private final BlockingQueue<Record> records = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final BinaryCodec binaryCodec = new BinaryCodec();
+    private final Logger logger = new Logger();
+    private FileOutputStream fileOutputStream;
+    private DataOutputStream outputStream;
+    private long offset; // bytes in the log file, only touched by the writer thread
+    private Thread writerThread;
+
+    private static class Record {
+        final byte type;
+        final Object payload;
+
+        Record(byte type, Object payload) {
+            this.type = type;
+            this.payload = payload;
+        }
+    }
+
+    /**
+     * @param directory where the log and the checkpoint are kept
+     * @param checkpointInterval how many steps there are between checkpoints
+     */
+    public WriteAheadLog(Path directory, int checkpointInterval) {
+        this.directory = directory;
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    /**
+     * Opens the log for appending and starts the writer thread. Without a restore the log is started over
+     * @param offset the length that the log is cut to, 0 for a new log
+     */
+    public void start(long offset) throws IOException {
+        Files.createDirectories(this.directory);
+        try (var channel = FileChannel.open(this.directory.resolve(LOG_FILE_NAME),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            channel.truncate(offset);
+        }
+        if (offset == 0)
+            Files.deleteIfExists(this.directory.resolve(CHECKPOINT_FILE_NAME));
+
+        this.offset = offset;
+        this.fileOutputStream = new FileOutputStream(this.directory.resolve(LOG_FILE_NAME).toFile(), true);
+        this.outputStream = new DataOutputStream(new BufferedOutputStream(this.fileOutputStream, 64 * 1024));
+        this.writerThread = new Thread(this::writeRecords, "Overseer-WAL");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    public boolean isCheckpointStep(int step) {
+        return step % this.checkpointInterval == 0;
+    }
+
+    public void logStep(int step) {
+        append(new Record(STEP, step));
+    }
+
+    public void logTotalSteps(int totalSteps) {
+        append(new Record(TOTAL_STEPS, totalSteps));
+    }
+
+    public void logClientReady() {
+        append(new Record(CLIENT_READY, null));
+    }
+
+    public void logPendingTransactionAdded(AccountTransaction accountTransaction) {
+        append(new Record(PENDING_ADDED, accountTransaction));
+    }
+
+    public void logPendingTransactionRemoved(UUID transactionId) {
+        append(new Record(PENDING_REMOVED, transactionId));
+    }
+
+    public void logCompletedTransaction(AccountTransaction accountTransaction) {
+        append(new Record(COMPLETED, accountTransaction));
+    }
+
+    public void logPendingTouristTransactionAdded(TouristTransaction touristTransaction) {
+        append(new Record(TOURIST_PENDING_ADDED, touristTransaction));
+    }
+
+    public void logCompletedTouristTransaction(TouristTransaction touristTransaction) {
+        append(new Record(TOURIST_COMPLETED, touristTransaction));
+    }
+
+    public void logBankInformation(BankInformation bankInformation) {
+        append(new Record(BANK_INFORMATION, bankInformation));
+    }
+
+    /**
+     * Queues the checkpoint behind every record that has been logged so far. The writer thread fills in the log's
+     * offset once those records are on disk, and then writes the checkpoint
+     */
+    public void checkpoint(Checkpoint checkpoint) {
+        append(new Record(CHECKPOINT, checkpoint));
+    }
+
+    private void append(Record record) {
+        try {
+            this.records.put(record);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeRecords() {
+        var batch = new ArrayList<Record>(MAX_BATCH);
+        while (true) {
+            try {
+                batch.add(this.records.take());
+                this.records.drainTo(batch, MAX_BATCH - 1);
+                for (var record : batch) {
+                    if (record.type == CHECKPOINT)
+                        writeCheckpoint((Checkpoint) record.payload);
+                    else
+                        writeRecord(record);
+                }
+                this.outputStream.flush();
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException e) {
+                logger.logWriteAheadLogError(e);
+            }
+            batch.clear();
+        }
+    }
+
+    private void writeRecord(Record record) throws IOException {
+        this.outputStream.writeByte(record.type);
+        this.offset += Byte.BYTES;
+        switch (record.type) {
+            case STEP:
+            case TOTAL_STEPS:
+                this.outputStream.writeInt((Integer) record.payload);
+                this.offset += Integer.BYTES;
+                break;
+            case PENDING_REMOVED:
+                var transactionId = (UUID) record.payload;
+                this.outputStream.writeLong(transactionId.getMostSignificantBits());
+                this.outputStream.writeLong(transactionId.getLeastSignificantBits());
+                this.offset += 2 * Long.BYTES;
+                break;
+            case CLIENT_READY:
+                break;
+            default:
+                var frame = this.binaryCodec.encode(record.payload);
+                this.outputStream.write(frame);
+                this.offset += frame.length;
+        }
+    }
+
+    /**
+     * Everything logged before the checkpoint is forced to disk first, then the checkpoint replaces the
+     * previous one in a single rename
+     */
+    private void writeCheckpoint(Checkpoint checkpoint) throws IOException {
+        this.outputStream.flush();
+        this.fileOutputStream.getFD().sync();
+        checkpoint.setWalOffset(this.offset);
+
+        var checkpointFile = this.directory.resolve(CHECKPOINT_FILE_NAME);
+        var temporaryFile = this.directory.resolve(CHECKPOINT_FILE_NAME + ".tmp");
+        try (var fileOutputStream = new FileOutputStream(temporaryFile.toFile());
+             var outputStream = new DataOutputStream(new BufferedOutputStream(fileOutputStream))) {
+            checkpoint.writeTo(outputStream, this.binaryCodec);
+            outputStream.flush();
+            fileOutputStream.getFD().sync();
+        }
+        Files.move(temporaryFile, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logger.logCheckpointWritten(checkpoint.getStep());
+    }
+
+    /**
+     * Reads the last checkpoint in the directory and replays the completed transactions that were logged before it
+     * @param completedTransactionStore gets the replayed transactions
+     * @return the checkpoint
+     * @throws FileNotFoundException if the directory has no checkpoint
+     */
+    public static Checkpoint recover(Path directory, CompletedTransactionStore completedTransactionStore)
+            throws IOException, ClassNotFoundException {
+        var checkpointFile = directory.resolve(CHECKPOINT_FILE_NAME);
+        if (!Files.exists(checkpointFile))
+            throw new FileNotFoundException(String.format("No checkpoint in %s", directory));
+
+        var binaryCodec = new BinaryCodec();
+        Checkpoint checkpoint;
+        try (var inputStream = new DataInputStream(new BufferedInputStream(Files.newInputStream(checkpointFile)))) {
+            checkpoint = Checkpoint.readFrom(inputStream, binaryCodec);
+        }
+
+        try (var countingStream = new CountingInputStream(new BufferedInputStream(
+                Files.newInputStream(directory.resolve(LOG_FILE_NAME)), 64 * 1024))) {
+            var recordStream = new DataInputStream(countingStream);
+            while (countingStream.getCount() < checkpoint.getWalOffset()) {
+                var type = recordStream.readByte();
+                switch (type) {
+                    case STEP:
+                    case TOTAL_STEPS:
+                        recordStream.readInt();
+                        break;
+                    case PENDING_REMOVED:
+                        recordStream.readLong();
+                        recordStream.readLong();
+                        break;
+                    case CLIENT_READY:
+                        break;
+                    case COMPLETED:
+                        completedTransactionStore.addAccountTransaction((AccountTransaction) binaryCodec.read(recordStream));
+                        break;
+                    case TOURIST_COMPLETED:
+                        completedTransactionStore.addTouristTransaction((TouristTransaction) binaryCodec.read(recordStream));
+                        break;
+                    case PENDING_ADDED:
+                    case TOURIST_PENDING_ADDED:
+                    case BANK_INFORMATION:
+                        binaryCodec.read(recordStream); // part of the checkpoint already
+                        break;
+                    default:
+                        throw new StreamCorruptedException(String.format("Unknown write-ahead log record: %s", type));
+                }
+            }
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Keeps track of how far into the log the replay has got
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private long count = 0;
+
+        CountingInputStream(InputStream inputStream) {
+            super(inputStream);
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            var value = super.read();
+            if (value != -1)
+                this.count++;
+            return value;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            var read = super.read(bytes, offset, length);
+            if (read > 0)
+                this.count += read;
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            var skipped = super.skip(n);
+            this.count += skipped;
+            return skipped;
+        }
+    }
+}
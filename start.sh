@@ -3,8 +3,9 @@ CLASSPATH="src/"
 TOTAL_STEPS=0
 CONNECTION_LIMIT=0
 DEBUG=""
+MODE="thread"
 
-while getopts "c:s:d" OPTION
+while getopts "c:s:m:d" OPTION
 do 
    case $OPTION in
       c)
@@ -13,6 +14,9 @@ do
       s)
          TOTAL_STEPS=$OPTARG
          ;;
+      m)
+         MODE=$OPTARG
+         ;;
       d)
          DEBUG="-d"
          ;;
@@ -34,5 +38,5 @@ mkdir out
 mkdir out/overseer
 mv src/overseer/*.class out/overseer/
 cd out
-java -cp . overseer/Main -s $TOTAL_STEPS -c $CONNECTION_LIMIT $DEBUG
+java -cp . overseer/Main -s $TOTAL_STEPS -c $CONNECTION_LIMIT -m $MODE $DEBUG
 
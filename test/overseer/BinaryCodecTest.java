@@ -0,0 +1,202 @@
+package overseer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryCodecTest {
+    private final BinaryCodec binaryCodec = new BinaryCodec();
+    private final UUID sender = UUID.randomUUID();
+
+    private Object roundTrip(Object object) throws IOException, ClassNotFoundException {
+        var frame = this.binaryCodec.encode(object);
+        var buffer = ByteBuffer.wrap(frame);
+        var decoded = this.binaryCodec.decode(buffer);
+        assertFalse(buffer.hasRemaining());
+        assertEquals(decoded.getClass(), this.binaryCodec.read(new ByteArrayInputStream(frame)).getClass());
+        return decoded;
+    }
+
+    private static AccountTransaction transfer(long amount) {
+        return new AccountTransaction(UUID.randomUUID(), "to", 1, amount, UUID.randomUUID(), 2, "from", 3);
+    }
+
+    private static void assertSameTransfer(AccountTransaction expected, AccountTransaction actual) {
+        assertEquals(expected.getTransactionId(), actual.getTransactionId());
+        assertEquals(expected.getClientIdTo(), actual.getClientIdTo());
+        assertEquals(expected.getPeronIdTo(), actual.getPeronIdTo());
+        assertEquals(expected.getBankIdTo(), actual.getBankIdTo());
+        assertEquals(expected.getAmountTo(), actual.getAmountTo());
+        assertEquals(expected.getClientIdFrom(), actual.getClientIdFrom());
+        assertEquals(expected.getBankIdFrom(), actual.getBankIdFrom());
+        assertEquals(expected.getPersonIdFrom(), actual.getPersonIdFrom());
+        assertEquals(expected.getStep(), actual.getStep());
+    }
+
+    @Test
+    void messagesRoundTrip() throws Exception {
+        var messages = (Messages) roundTrip(new Messages("TransactionDone:x;TransactionId:ü", this.sender));
+        assertEquals("TransactionDone:x;TransactionId:ü", messages.getMessage());
+        assertEquals(this.sender, messages.getSender());
+    }
+
+    @Test
+    void accountTransactionRoundTrips() throws Exception {
+        var transfer = transfer(-25);
+        assertSameTransfer(transfer, (AccountTransaction) roundTrip(transfer));
+
+        var withNulls = new AccountTransaction(UUID.randomUUID(), null, null, 0, UUID.randomUUID(), null, null, null);
+        assertSameTransfer(withNulls, (AccountTransaction) roundTrip(withNulls));
+    }
+
+    @Test
+    void touristTransactionRoundTrips() throws Exception {
+        var touristTransaction = new TouristTransaction(UUID.randomUUID(), 4, "tourist", 7, 5);
+        var decoded = (TouristTransaction) roundTrip(touristTransaction);
+        assertEquals(touristTransaction.getTransactionId(), decoded.getTransactionId());
+        assertEquals(touristTransaction.getClientId(), decoded.getClientId());
+        assertEquals(4, decoded.getBankId());
+        assertEquals("tourist", decoded.getPersonId());
+        assertEquals(7, decoded.getAmount());
+        assertEquals(5, decoded.getStep());
+    }
+
+    @Test
+    void batchesRoundTrip() throws Exception {
+        var transfers = new ArrayList<>(List.of(transfer(1), transfer(2), transfer(3)));
+        var transactionBatch = (TransactionBatch) roundTrip(new TransactionBatch(this.sender, 9, transfers));
+        assertEquals(this.sender, transactionBatch.getSender());
+        assertEquals(9, transactionBatch.getStep());
+        assertEquals(3, transactionBatch.getTransactions().size());
+        for (var i = 0; i < transfers.size(); i++)
+            assertSameTransfer(transfers.get(i), transactionBatch.getTransactions().get(i));
+
+        var ids = new ArrayList<>(List.of(UUID.randomUUID(), UUID.randomUUID()));
+        var acknowledgementBatch = (AcknowledgementBatch) roundTrip(
+                new AcknowledgementBatch(AcknowledgementBatch.REVERT_TRANSACTION, this.sender, ids));
+        assertEquals(AcknowledgementBatch.REVERT_TRANSACTION, acknowledgementBatch.getType());
+        assertEquals(this.sender, acknowledgementBatch.getSender());
+        assertEquals(ids, acknowledgementBatch.getTransactionIds());
+
+        var netSettlement = (NetSettlement) roundTrip(new NetSettlement(this.sender, 4,
+                new ArrayList<>(List.of(new NetPosition(1, "person", -12))), ids));
+        assertEquals(4, netSettlement.getStep());
+        assertEquals("person", netSettlement.getNetPositions().get(0).getPersonId());
+        assertEquals(-12, netSettlement.getNetPositions().get(0).getAmount());
+        assertEquals(ids, netSettlement.getTransactionIds());
+    }
+
+    @Test
+    void bankInformationRoundTrips() throws Exception {
+        var accounts = new HashMap<Integer, AccountInformation>();
+        accounts.put(3, new AccountInformation("owner", 3, 1, 500));
+        var bankInformation = new BankInformation();
+        bankInformation.addAccountInformationByClientId(this.sender, accounts);
+        bankInformation.setVersion(6);
+
+        var decoded = (BankInformation) roundTrip(bankInformation);
+        assertEquals(6, decoded.getVersion());
+        var account = decoded.getBankInformationHashMap().get(this.sender).get(3);
+        assertEquals("owner", account.getOwnerId());
+        assertEquals(1, account.getBankId());
+        assertEquals(500, account.getCurrentBalance());
+
+        var delta = new BankInformationDelta(5, 6, false);
+        delta.addChangedAccount(this.sender, new AccountInformation("owner", 3, 1, 600));
+        delta.addRemovedAccount(this.sender, 4);
+        var decodedDelta = (BankInformationDelta) roundTrip(delta);
+        assertEquals(5, decodedDelta.getFromVersion());
+        assertEquals(6, decodedDelta.getToVersion());
+        assertFalse(decodedDelta.isFullSnapshot());
+        assertEquals(600, decodedDelta.getChangedAccounts().get(this.sender).get(3).getCurrentBalance());
+        assertEquals(List.of(4), decodedDelta.getRemovedAccounts().get(this.sender));
+    }
+
+    @Test
+    void otherObjectsFallBackToSerialization() throws Exception {
+        assertEquals("text", roundTrip("text"));
+    }
+
+    @Test
+    void partialFrameIsLeftInTheBuffer() throws Exception {
+        var first = this.binaryCodec.encode(new Messages("first", this.sender));
+        var second = this.binaryCodec.encode(new Messages("second", this.sender));
+        var buffer = ByteBuffer.allocate(first.length + second.length);
+        buffer.put(first).put(second, 0, 3).flip();
+
+        assertEquals("first", ((Messages) this.binaryCodec.decode(buffer)).getMessage());
+        assertNull(this.binaryCodec.decode(buffer));
+        assertEquals(first.length, buffer.position());
+
+        buffer.compact().put(second, 3, second.length - 3).flip();
+        assertEquals("second", ((Messages) this.binaryCodec.decode(buffer)).getMessage());
+        assertFalse(buffer.hasRemaining());
+    }
+
+    private static ByteBuffer frame(byte opcode, int payloadLength) {
+        var buffer = ByteBuffer.allocate(Integer.BYTES + 1 + payloadLength);
+        buffer.putInt(1 + payloadLength).put(opcode);
+        return buffer;
+    }
+
+    private void assertCorrupt(ByteBuffer frame) {
+        frame.flip();
+        assertThrows(StreamCorruptedException.class, () -> this.binaryCodec.decode(frame));
+        frame.rewind();
+        assertThrows(StreamCorruptedException.class, () -> this.binaryCodec.read(
+                new ByteArrayInputStream(frame.array(), 0, frame.limit())));
+    }
+
+    @Test
+    void stringLengthsThatDoNotFitTheFrameAreCorrupt() {
+        for (var length : new int[]{-2, Integer.MIN_VALUE, 5, Integer.MAX_VALUE}) {
+            var frame = frame(BinaryCodec.OPCODE_MESSAGES, 16 + 4 + 4);
+            frame.putLong(1).putLong(2).putInt(length).putInt(0);
+            assertCorrupt(frame);
+        }
+    }
+
+    @Test
+    void listCountsThatDoNotFitTheFrameAreCorrupt() {
+        for (var count : new int[]{-1, 2, Integer.MAX_VALUE}) {
+            var frame = frame(BinaryCodec.OPCODE_ACKNOWLEDGEMENT_BATCH, 1 + 16 + 4 + 16);
+            frame.put(AcknowledgementBatch.TRANSACTION_DONE).putLong(1).putLong(2).putInt(count).putLong(3).putLong(4);
+            assertCorrupt(frame);
+        }
+        var frame = frame(BinaryCodec.OPCODE_TRANSACTION_BATCH, 16 + 4 + 4 + 16);
+        frame.putLong(1).putLong(2).putInt(0).putInt(1).putLong(3).putLong(4);
+        assertCorrupt(frame);
+    }
+
+    @Test
+    void truncatedPayloadIsCorrupt() {
+        var frame = frame(BinaryCodec.OPCODE_ACCOUNT_TRANSACTION, 20);
+        frame.put(new byte[20]);
+        assertCorrupt(frame);
+    }
+
+    @Test
+    void unknownOpcodeIsCorrupt() {
+        var frame = frame((byte) 42, 4);
+        frame.putInt(0);
+        assertCorrupt(frame);
+    }
+
+    @Test
+    void invalidFrameLengthIsCorrupt() {
+        for (var length : new int[]{0, -1, Integer.MAX_VALUE}) {
+            var frame = ByteBuffer.allocate(8);
+            frame.putInt(length).putInt(0);
+            assertCorrupt(frame);
+        }
+    }
+}
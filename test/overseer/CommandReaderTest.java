@@ -0,0 +1,101 @@
+package overseer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommandReaderTest {
+    private final CommandReader commandReader = new CommandReader();
+
+    private Command read(String message) {
+        assertTrue(this.commandReader.reset(message).next());
+        return this.commandReader.getCommand();
+    }
+
+    @Test
+    void commandsWithACommonStartAreToldApart() {
+        var id = UUID.randomUUID().toString();
+        assertEquals(Command.TRANSACTION_ID, read("TransactionId:" + id));
+        assertEquals(Command.TRANSACTION_DONE, read("TransactionDone:" + id));
+        assertEquals(Command.TRANSACTION_FAILED, read("TransactionFailed:" + id));
+        assertEquals(Command.TOURIST_TRANSACTION_DONE, read("TouristTransactionDone:" + id));
+        assertEquals(Command.TAKE_STEP, read("TakeStep:3"));
+        assertEquals(Command.REVERT_TRANSACTION, read("RevertTransaction:" + id));
+        assertEquals(Command.RESTORE_STEP, read("RestoreStep:3"));
+        assertEquals(Command.RESUME_SESSION, read("ResumeSession:" + id));
+        assertEquals(Command.RECEIVED_CLIENT_ID, read("ReceivedClientID:" + id));
+        assertEquals(Command.CURRENT_STEP, read("CurrentStep:3"));
+        assertEquals(Command.CLIENT_READY, read("ClientReady:" + id));
+        assertEquals(Command.SET_CLIENT_ID, read("SetClientID:" + id));
+        assertEquals(Command.SERVER_ID, read("ServerID:" + id));
+        assertEquals(Command.WIRE_PROTOCOL, read("WireProtocol:1"));
+        assertEquals(Command.BANK_INFORMATION_VERSION, read("BankInformationVersion:2"));
+    }
+
+    @Test
+    void unfinishedOrUnknownPrefixesAreUnknown() {
+        assertEquals(Command.UNKNOWN, read("Transaction:1"));
+        assertEquals(Command.UNKNOWN, read("TransactionDon:1"));
+        assertEquals(Command.UNKNOWN, read("transactionDone:1"));
+        assertEquals(Command.UNKNOWN, read("Nonsense"));
+        assertEquals(Command.UNKNOWN, read(""));
+    }
+
+    @Test
+    void bareCommandIsTheWholeWord() {
+        assertEquals(Command.TERMINATE, read("terminate"));
+        assertTrue(this.commandReader.isBareCommand());
+        // commands are found by their prefix, like the startsWith() checks they replaced
+        assertEquals(Command.TERMINATE, read("terminate_connection"));
+        assertFalse(this.commandReader.isBareCommand());
+        assertEquals(Command.TAKE_STEP, read("TakeStep:"));
+        assertTrue(this.commandReader.isBareCommand());
+    }
+
+    @Test
+    void commandsOfAMessageAreReadInOrder() {
+        var id = UUID.randomUUID();
+        this.commandReader.reset("TransactionFailed:insufficient;TransactionId:" + id + ";");
+        assertTrue(this.commandReader.next());
+        assertEquals(Command.TRANSACTION_FAILED, this.commandReader.getCommand());
+        assertTrue(this.commandReader.isValue("insufficient"));
+        assertFalse(this.commandReader.isValue("insufficien"));
+        assertTrue(this.commandReader.next());
+        assertEquals(Command.TRANSACTION_ID, this.commandReader.getCommand());
+        assertEquals(id, this.commandReader.getUuidValue());
+        assertFalse(this.commandReader.next());
+
+        this.commandReader.reset("TakeStep:1;CurrentStep:-12;TransactionId:x");
+        assertTrue(this.commandReader.next(Command.CURRENT_STEP));
+        assertEquals(-12, this.commandReader.getIntValue());
+        assertEquals("-12", this.commandReader.getValue());
+        assertFalse(this.commandReader.next(Command.TAKE_STEP));
+    }
+
+    @Test
+    void numbersAreParsedOutOfTheMessage() {
+        read("BankInformationVersion:9876543210");
+        assertEquals(9876543210L, this.commandReader.getLongValue());
+        assertThrows(NumberFormatException.class, this.commandReader::getIntValue);
+
+        read("TakeStep:12a");
+        assertThrows(NumberFormatException.class, this.commandReader::getIntValue);
+        read("TakeStep:");
+        assertThrows(NumberFormatException.class, this.commandReader::getIntValue);
+    }
+
+    @Test
+    void uuidHasToBeInItsCanonicalForm() {
+        var id = UUID.randomUUID();
+        read("TransactionId:" + id.toString().toUpperCase());
+        assertEquals(id, this.commandReader.getUuidValue());
+
+        for (var value : new String[]{"", "not-a-uuid", id.toString().substring(1), id.toString().replace('-', ':'),
+                id.toString().replaceFirst("[0-9a-f]", "g")}) {
+            read("TransactionId:" + value);
+            assertThrows(IllegalArgumentException.class, this.commandReader::getUuidValue, value);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package overseer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeadlineWheelTest {
+
+    @Test
+    void idsExpireOnceTheirDeadlineHasPassed() throws InterruptedException {
+        var expiries = new ConcurrentHashMap<UUID, Long>();
+        var latch = new CountDownLatch(3);
+        var wheel = new DeadlineWheel("Test-Wheel", id -> {
+            expiries.put(id, System.nanoTime());
+            latch.countDown();
+        });
+
+        var now = System.nanoTime();
+        var past = UUID.randomUUID();
+        var soon = UUID.randomUUID();
+        var later = UUID.randomUUID();
+        wheel.schedule(later, now + TimeUnit.MILLISECONDS.toNanos(700));
+        wheel.schedule(soon, now + TimeUnit.MILLISECONDS.toNanos(250));
+        wheel.schedule(past, now - TimeUnit.SECONDS.toNanos(1));
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(expiries.get(soon) >= now + TimeUnit.MILLISECONDS.toNanos(250));
+        assertTrue(expiries.get(later) >= now + TimeUnit.MILLISECONDS.toNanos(700));
+        assertTrue(expiries.get(soon) < expiries.get(later));
+    }
+
+    @Test
+    void deadlinesBeyondOneTurnWaitForTheirTurn() throws InterruptedException {
+        var latch = new CountDownLatch(1);
+        var wheel = new DeadlineWheel("Test-Wheel", id -> latch.countDown());
+        // a whole turn of the wheel away lands in the bucket that comes up next
+        wheel.schedule(UUID.randomUUID(), System.nanoTime() + TimeUnit.SECONDS.toNanos(60));
+        assertFalse(latch.await(3 * DeadlineWheel.TICK_MILLIS, TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,52 @@
+package overseer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongIntMapTest {
+
+    @Test
+    void valuesAreStoredOverwrittenAndRemoved() {
+        var map = new LongIntMap(0);
+        assertEquals(LongIntMap.NO_VALUE, map.get(7));
+
+        map.put(7, 1);
+        map.put(0, 2);
+        map.put(-7, 3);
+        assertEquals(1, map.get(7));
+        assertEquals(2, map.get(0));
+        assertEquals(3, map.get(-7));
+
+        map.put(7, 4);
+        assertEquals(4, map.get(7));
+        assertEquals(3, map.size());
+
+        assertEquals(4, map.remove(7));
+        assertEquals(LongIntMap.NO_VALUE, map.remove(7));
+        assertEquals(LongIntMap.NO_VALUE, map.get(7));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    void removalsLeaveCollidingKeysFindable() {
+        var map = new LongIntMap(0);
+        var count = 20_000;
+        // keys that only differ in their high bits end up in the same runs without a good hash
+        for (var i = 0; i < count; i++)
+            map.put((long) i << 40, i);
+        for (var i = 0; i < count; i += 2)
+            assertEquals(i, map.remove((long) i << 40));
+
+        for (var i = 0; i < count; i++)
+            assertEquals(i % 2 == 0 ? LongIntMap.NO_VALUE : i, map.get((long) i << 40), "key " + i);
+        assertEquals(count / 2, map.size());
+    }
+
+    @Test
+    void negativeValueIsRefused() {
+        var map = new LongIntMap(16);
+        assertThrows(IllegalArgumentException.class, () -> map.put(1, -1));
+        assertEquals(0, map.size());
+    }
+}
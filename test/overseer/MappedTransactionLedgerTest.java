@@ -0,0 +1,87 @@
+package overseer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedTransactionLedgerTest {
+    @TempDir
+    Path directory;
+    private MappedTransactionLedger ledger;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        this.ledger = new MappedTransactionLedger(this.directory.resolve("ledger"));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        this.ledger.close();
+    }
+
+    @Test
+    void transactionsComeBackFromTheLedger() {
+        var transfer = new AccountTransaction(UUID.randomUUID(), "to", 1, 25, UUID.randomUUID(), 2, "from", 3);
+        var touristTransaction = new TouristTransaction(UUID.randomUUID(), 4, "tourist", -7, 5);
+        this.ledger.addAccountTransaction(transfer);
+        this.ledger.addTouristTransaction(touristTransaction);
+        assertEquals(2, this.ledger.getRecordCount());
+
+        var stored = this.ledger.getAccountTransaction(transfer.getTransactionId());
+        assertEquals(transfer.getTransactionId(), stored.getTransactionId());
+        assertEquals(transfer.getClientIdTo(), stored.getClientIdTo());
+        assertEquals("to", stored.getPeronIdTo());
+        assertEquals(1, stored.getBankIdTo());
+        assertEquals(25, stored.getAmountTo());
+        assertEquals(transfer.getClientIdFrom(), stored.getClientIdFrom());
+        assertEquals(2, stored.getBankIdFrom());
+        assertEquals("from", stored.getPersonIdFrom());
+        assertEquals(3, stored.getStep());
+
+        var storedTourist = this.ledger.getTouristTransaction(touristTransaction.getTransactionId());
+        assertEquals(touristTransaction.getClientId(), storedTourist.getClientId());
+        assertEquals(4, storedTourist.getBankId());
+        assertEquals("tourist", storedTourist.getPersonId());
+        assertEquals(-7, storedTourist.getAmount());
+        assertEquals(5, storedTourist.getStep());
+
+        // an ID is only found as the kind of transaction it was stored as
+        assertNull(this.ledger.getAccountTransaction(touristTransaction.getTransactionId()));
+        assertNull(this.ledger.getTouristTransaction(transfer.getTransactionId()));
+        assertNull(this.ledger.getAccountTransaction(UUID.randomUUID()));
+    }
+
+    @Test
+    void personIdThatDoesNotFitTheRecordIsKept() {
+        var longPersonId = "p".repeat(MappedTransactionLedger.RECORD_SIZE);
+        var transfer = new AccountTransaction(UUID.randomUUID(), longPersonId, null, 25, UUID.randomUUID(), null,
+                "from", null);
+        this.ledger.addAccountTransaction(transfer);
+
+        var stored = this.ledger.getAccountTransaction(transfer.getTransactionId());
+        assertEquals(longPersonId, stored.getPeronIdTo());
+        assertNull(stored.getBankIdTo());
+        assertNull(stored.getStep());
+    }
+
+    @Test
+    void transactionsPastTheFirstSegmentAreFound() {
+        var count = MappedTransactionLedger.SEGMENT_SIZE / MappedTransactionLedger.RECORD_SIZE + 10;
+        var ids = new UUID[count];
+        for (var i = 0; i < count; i++) {
+            var transfer = new AccountTransaction(UUID.randomUUID(), "to", 1, i, UUID.randomUUID(), 2, "from", 3);
+            ids[i] = transfer.getTransactionId();
+            this.ledger.addAccountTransaction(transfer);
+        }
+        for (var i = 0; i < count; i += 997)
+            assertEquals(i, this.ledger.getAccountTransaction(ids[i]).getAmountTo());
+        assertEquals(count - 1, this.ledger.getAccountTransaction(ids[count - 1]).getAmountTo());
+    }
+}
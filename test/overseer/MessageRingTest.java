@@ -0,0 +1,78 @@
+package overseer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageRingTest {
+
+    @Test
+    void capacityIsRoundedUpToAPowerOfTwo() {
+        assertEquals(8, new MessageRing(5).getCapacity());
+        assertEquals(8, new MessageRing(8).getCapacity());
+        assertEquals(2, new MessageRing(0).getCapacity());
+    }
+
+    @Test
+    void messagesComeOutInOrderThroughTheOverflow() {
+        var ring = new MessageRing(4);
+        for (var i = 0; i < 4; i++)
+            assertTrue(ring.offer(i));
+        for (var i = 4; i < 10; i++)
+            assertFalse(ring.offer(i));
+
+        var batch = new Object[3];
+        assertEquals(3, ring.drainTo(batch));
+        assertArrayEquals(new Object[]{0, 1, 2}, batch);
+        // the ring has room again, but what is offered now has to wait for the overflow
+        assertFalse(ring.offer(10));
+
+        var drained = new ArrayList<>();
+        for (int count; (count = ring.drainTo(batch)) > 0; ) {
+            for (var i = 0; i < count; i++)
+                drained.add(batch[i]);
+        }
+        assertEquals(List.of(3, 4, 5, 6, 7, 8, 9, 10), drained);
+
+        // once the overflow is empty the ring takes the messages again
+        assertTrue(ring.offer(11));
+        assertEquals(1, ring.drainTo(batch));
+        assertEquals(11, batch[0]);
+    }
+
+    @Test
+    void everyProducerKeepsItsOrder() throws InterruptedException {
+        var producers = 4;
+        var messagesPerProducer = 50_000;
+        var ring = new MessageRing(64);
+        var threads = new ArrayList<Thread>();
+        for (var producer = 0; producer < producers; producer++) {
+            var id = producer;
+            var thread = new Thread(() -> {
+                for (var i = 0; i < messagesPerProducer; i++)
+                    ring.offer(new long[]{id, i});
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        var next = new int[producers];
+        var received = 0;
+        var batch = new Object[32];
+        while (received < producers * messagesPerProducer) {
+            var count = ring.drainTo(batch);
+            for (var i = 0; i < count; i++) {
+                var message = (long[]) batch[i];
+                var producer = (int) message[0];
+                assertEquals(next[producer]++, message[1], "producer " + producer);
+            }
+            received += count;
+        }
+        for (var thread : threads)
+            thread.join();
+        assertEquals(0, ring.drainTo(batch));
+    }
+}
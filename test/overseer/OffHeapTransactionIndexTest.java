@@ -0,0 +1,43 @@
+package overseer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapTransactionIndexTest {
+    private static final long ID_PREFIX = 0x5DEECE66DL;
+
+    @Test
+    void sequentialIdsAreFoundAcrossSegments() {
+        var index = new OffHeapTransactionIndex(16);
+        // more than one segment's worth once the table has grown past the load factor
+        var count = 1_000_000;
+        for (var i = 1; i <= count; i++)
+            index.put(new UUID(ID_PREFIX, i), i * 3L);
+
+        assertEquals(count, index.size());
+        for (var i = 1; i <= count; i++)
+            assertEquals(i * 3L, index.get(new UUID(ID_PREFIX, i)));
+        assertEquals(OffHeapTransactionIndex.NOT_FOUND, index.get(new UUID(ID_PREFIX, count + 1)));
+        assertEquals(OffHeapTransactionIndex.NOT_FOUND, index.get(new UUID(ID_PREFIX + 1, 1)));
+    }
+
+    @Test
+    void puttingAnIdAgainOverwritesItsRecordNumber() {
+        var index = new OffHeapTransactionIndex(16);
+        var id = UUID.randomUUID();
+        index.put(id, 1);
+        index.put(id, 2);
+        assertEquals(2, index.get(id));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void allZeroIdIsRefused() {
+        var index = new OffHeapTransactionIndex(16);
+        assertThrows(IllegalArgumentException.class, () -> index.put(new UUID(0, 0), 1));
+        assertEquals(OffHeapTransactionIndex.NOT_FOUND, index.get(new UUID(0, 0)));
+    }
+}
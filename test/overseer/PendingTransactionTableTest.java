@@ -0,0 +1,137 @@
+package overseer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PendingTransactionTableTest {
+    private static final long ID_PREFIX = 0x5DEECE66DL;
+
+    private final ClientRegistry clientRegistry = new ClientRegistry(4);
+    private final UUID sender = UUID.randomUUID();
+    private final UUID receiver = UUID.randomUUID();
+    private int senderSlot;
+    private PendingTransactionTable table;
+
+    @BeforeEach
+    void setUp() {
+        this.senderSlot = this.clientRegistry.register(this.sender);
+        this.clientRegistry.register(this.receiver);
+        // starts out as small as it gets, so the tests run into collisions and growth
+        this.table = new PendingTransactionTable(this.clientRegistry, 0);
+    }
+
+    private AccountTransaction transfer(long counter, long amount) {
+        return new AccountTransaction(new UUID(ID_PREFIX, counter), this.receiver, "to", 1, amount,
+                this.sender, 2, "from", 3);
+    }
+
+    @Test
+    void addedTransactionComesBackOut() {
+        var transfer = transfer(1, 25);
+        assertTrue(this.table.add(transfer));
+
+        var pending = this.table.getAccountTransaction(transfer.getTransactionId());
+        assertEquals(transfer.getTransactionId(), pending.getTransactionId());
+        assertEquals(this.receiver, pending.getClientIdTo());
+        assertEquals(this.sender, pending.getClientIdFrom());
+        assertEquals("to", pending.getPeronIdTo());
+        assertEquals("from", pending.getPersonIdFrom());
+        assertEquals(1, pending.getBankIdTo());
+        assertEquals(2, pending.getBankIdFrom());
+        assertEquals(25, pending.getAmountTo());
+        assertEquals(3, pending.getStep());
+        assertEquals(1, this.table.size());
+
+        assertNotNull(this.table.removeAccountTransaction(transfer.getTransactionId()));
+        assertNull(this.table.removeAccountTransaction(transfer.getTransactionId()));
+        assertTrue(this.table.isEmpty());
+    }
+
+    @Test
+    void nullFieldsSurviveTheRecord() {
+        var transfer = new AccountTransaction(new UUID(ID_PREFIX, 1), this.receiver, null, null, 5,
+                this.sender, null, null, null);
+        this.table.add(transfer);
+
+        var pending = this.table.getAccountTransaction(transfer.getTransactionId());
+        assertNull(pending.getPeronIdTo());
+        assertNull(pending.getBankIdTo());
+        assertNull(pending.getBankIdFrom());
+        assertNull(pending.getPersonIdFrom());
+        assertNull(pending.getStep());
+    }
+
+    @Test
+    void touristTransactionIsKeptApart() {
+        var touristTransaction = new TouristTransaction(new UUID(ID_PREFIX, 1), this.sender, 4, "tourist", 7, 2);
+        assertTrue(this.table.add(touristTransaction));
+
+        assertNull(this.table.getAccountTransaction(touristTransaction.getTransactionId()));
+        assertEquals(ClientRegistry.NO_SLOT, this.table.markSettling(touristTransaction.getTransactionId()));
+        var removed = this.table.removeTouristTransaction(touristTransaction.getTransactionId());
+        assertEquals("tourist", removed.getPersonId());
+        assertEquals(7, removed.getAmount());
+        assertTrue(this.table.isEmpty());
+    }
+
+    @Test
+    void addingAPendingIdAgainLeavesItsRecordAlone() {
+        var transfer = transfer(1, 25);
+        this.table.add(transfer);
+        assertEquals(this.senderSlot, this.table.markSettling(transfer.getTransactionId()));
+
+        assertFalse(this.table.add(transfer(1, 99)));
+
+        assertEquals(ClientRegistry.NO_SLOT, this.table.markSettling(transfer.getTransactionId()));
+        assertEquals(25, this.table.getAccountTransaction(transfer.getTransactionId()).getAmountTo());
+        assertEquals(1, this.table.size());
+    }
+
+    @Test
+    void transactionIsOnlySettledOrRevertedOnce() {
+        var settled = transfer(1, 25);
+        var reverted = transfer(2, 25);
+        this.table.add(settled);
+        this.table.add(reverted);
+
+        assertEquals(this.senderSlot, this.table.markSettling(settled.getTransactionId()));
+        assertEquals(ClientRegistry.NO_SLOT, this.table.markSettling(settled.getTransactionId()));
+        assertEquals(ClientRegistry.NO_SLOT, this.table.markReverting(settled.getTransactionId()));
+
+        assertEquals(this.senderSlot, this.table.markReverting(reverted.getTransactionId()));
+        assertEquals(ClientRegistry.NO_SLOT, this.table.markReverting(reverted.getTransactionId()));
+        // the one who reverts still has to take the transaction on to settle it
+        assertEquals(this.senderSlot, this.table.markSettling(reverted.getTransactionId()));
+
+        assertEquals(ClientRegistry.NO_SLOT, this.table.markSettling(new UUID(ID_PREFIX, 3)));
+    }
+
+    @Test
+    void removalsLeaveTheRestOfTheProbeRunsFindable() {
+        var count = 20_000;
+        for (var i = 1; i <= count; i++)
+            assertTrue(this.table.add(transfer(i, i)));
+        for (var i = 1; i <= count; i += 3)
+            assertEquals(i, this.table.removeAccountTransaction(new UUID(ID_PREFIX, i)).getAmountTo());
+
+        for (var i = 1; i <= count; i++) {
+            var pending = this.table.getAccountTransaction(new UUID(ID_PREFIX, i));
+            if (i % 3 == 1)
+                assertNull(pending, "removed " + i);
+            else
+                assertEquals(i, pending.getAmountTo(), "kept " + i);
+        }
+        assertEquals(count - (count + 2) / 3, this.table.size());
+        assertEquals(this.table.size(), this.table.getAccountTransactions().size());
+    }
+
+    @Test
+    void allZeroIdIsRefused() {
+        assertThrows(IllegalArgumentException.class, () -> this.table.add(
+                new AccountTransaction(new UUID(0, 0), this.receiver, "to", 1, 5, this.sender, 2, "from", 3)));
+    }
+}
@@ -0,0 +1,99 @@
+package overseer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.FileNotFoundException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteAheadLogTest {
+    @TempDir
+    Path directory;
+
+    private static AccountTransaction transfer(long amount) {
+        return new AccountTransaction(UUID.randomUUID(), "to", 1, amount, UUID.randomUUID(), 2, "from", 3);
+    }
+
+    private void awaitCheckpoint() throws InterruptedException {
+        // the writer thread writes the checkpoint after everything that was logged before it
+        var checkpointFile = this.directory.resolve(WriteAheadLog.CHECKPOINT_FILE_NAME);
+        for (var i = 0; i < 500 && !Files.exists(checkpointFile); i++)
+            Thread.sleep(10);
+        assertTrue(Files.exists(checkpointFile));
+    }
+
+    @Test
+    void recoveryReplaysWhatWasLoggedBeforeTheCheckpoint() throws Exception {
+        var writeAheadLog = new WriteAheadLog(this.directory, 5);
+        writeAheadLog.start(0);
+
+        var pending = transfer(5);
+        var completed = transfer(10);
+        var touristTransaction = new TouristTransaction(UUID.randomUUID(), 4, "tourist", 7, 5);
+        var afterCheckpoint = transfer(20);
+        var clientIds = new ArrayList<>(List.of(UUID.randomUUID()));
+
+        writeAheadLog.logTotalSteps(10);
+        writeAheadLog.logClientReady();
+        writeAheadLog.logStep(5);
+        writeAheadLog.logPendingTransactionAdded(pending);
+        writeAheadLog.logPendingTransactionAdded(completed);
+        writeAheadLog.logPendingTransactionRemoved(completed.getTransactionId());
+        writeAheadLog.logCompletedTransaction(completed);
+        writeAheadLog.logPendingTouristTransactionAdded(touristTransaction);
+        writeAheadLog.logCompletedTouristTransaction(touristTransaction);
+        writeAheadLog.logBankInformation(new BankInformation());
+        writeAheadLog.checkpoint(new Checkpoint(5, 10, clientIds, new ArrayList<>(List.of(pending)),
+                new ArrayList<>(), new BankInformation()));
+        awaitCheckpoint();
+        writeAheadLog.logCompletedTransaction(afterCheckpoint);
+
+        var completedTransactionStore = new InMemoryTransactionStore();
+        var checkpoint = WriteAheadLog.recover(this.directory, completedTransactionStore);
+
+        assertEquals(5, checkpoint.getStep());
+        assertEquals(10, checkpoint.getTotalSteps());
+        assertEquals(clientIds, checkpoint.getClientIds());
+        assertEquals(1, checkpoint.getPendingTransactions().size());
+        assertEquals(pending.getTransactionId(), checkpoint.getPendingTransactions().get(0).getTransactionId());
+        assertTrue(checkpoint.getWalOffset() > 0);
+
+        assertEquals(10, completedTransactionStore.getAccountTransaction(completed.getTransactionId()).getAmountTo());
+        assertEquals(7, completedTransactionStore.getTouristTransaction(touristTransaction.getTransactionId()).getAmount());
+        assertNull(completedTransactionStore.getAccountTransaction(pending.getTransactionId()));
+        assertNull(completedTransactionStore.getAccountTransaction(afterCheckpoint.getTransactionId()));
+    }
+
+    @Test
+    void restartCutsTheLogBackToTheCheckpoint() throws Exception {
+        var writeAheadLog = new WriteAheadLog(this.directory, 5);
+        writeAheadLog.start(0);
+        var completed = transfer(10);
+        writeAheadLog.logCompletedTransaction(completed);
+        writeAheadLog.checkpoint(new Checkpoint(5, 10, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(),
+                new BankInformation()));
+        awaitCheckpoint();
+
+        var checkpoint = WriteAheadLog.recover(this.directory, new InMemoryTransactionStore());
+        var restarted = new WriteAheadLog(this.directory, 5);
+        restarted.start(checkpoint.getWalOffset());
+        assertEquals(checkpoint.getWalOffset(), Files.size(this.directory.resolve(WriteAheadLog.LOG_FILE_NAME)));
+
+        var completedTransactionStore = new InMemoryTransactionStore();
+        WriteAheadLog.recover(this.directory, completedTransactionStore);
+        assertEquals(10, completedTransactionStore.getAccountTransaction(completed.getTransactionId()).getAmountTo());
+    }
+
+    @Test
+    void recoveryWithoutACheckpointFails() throws Exception {
+        new WriteAheadLog(this.directory, 5).start(0);
+        assertThrows(FileNotFoundException.class,
+                () -> WriteAheadLog.recover(this.directory, new InMemoryTransactionStore()));
+    }
+}